@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+/**
+ * Record of the Cache-Control decision taken for a request, kept for live inspection.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheDecision {
+
+    private final long timestamp;
+    private final String method;
+    private final String uri;
+    private final String rule;
+    private final float rulePriority;
+    private final String presetValue;
+    private final String finalValue;
+    private final boolean forced;
+    private final long elapsed;
+
+    /**
+     * @param timestamp the request end time in milliseconds
+     * @param method the request method
+     * @param uri the request URI
+     * @param rule the matched rule (priority;methods;url;header), null if no rule matched
+     * @param rulePriority the matched rule priority, 0 if no rule matched
+     * @param presetValue the Cache-Control value preset by the filter, null if none
+     * @param finalValue the Cache-Control value of the response, null if none
+     * @param forced true if a cache header was applied using the Force- prefix
+     * @param elapsed the request processing time in nanoseconds
+     */
+    public ClientCacheDecision(long timestamp, String method, String uri, String rule, float rulePriority, String presetValue, String finalValue,
+            boolean forced, long elapsed) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.rule = rule;
+        this.rulePriority = rulePriority;
+        this.presetValue = presetValue;
+        this.finalValue = finalValue;
+        this.forced = forced;
+        this.elapsed = elapsed;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public float getRulePriority() {
+        return rulePriority;
+    }
+
+    public String getPresetValue() {
+        return presetValue;
+    }
+
+    public String getFinalValue() {
+        return finalValue;
+    }
+
+    /**
+     * @return true if the preset Cache-Control value was overridden or removed
+     */
+    public boolean isOverridden() {
+        return presetValue != null && !presetValue.equals(finalValue);
+    }
+
+    public boolean isForced() {
+        return forced;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    @Override public String toString() {
+        return "ClientCacheDecision{" + "method='" + method + '\'' + ", uri='" + uri + '\'' + ", rule='" + rule + '\'' + ", presetValue='"
+                + presetValue + '\'' + ", finalValue='" + finalValue + '\'' + ", forced=" + forced + ", elapsed=" + elapsed + '}';
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+/**
+ * Thrown by a ClientCacheInvalidationProvider when a purge failed.
+ * A retryable failure (throttling, timeout) is retried with an increasing delay, other failures drop the purge.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheInvalidationException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retryable;
+
+    public ClientCacheInvalidationException(String message) {
+        this(message, null, true);
+    }
+
+    public ClientCacheInvalidationException(String message, Throwable cause) {
+        this(message, cause, true);
+    }
+
+    public ClientCacheInvalidationException(String message, Throwable cause, boolean retryable) {
+        super(message, cause);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+import java.util.List;
+
+/**
+ * A provider purging URLs from an intermediate cache, like a CDN.
+ * Providers are registered as OSGi services, the invalidation pipeline of the client cache service sends them the URLs of
+ * the published pages, deduplicated and batched, in the limits they declare. Calls to a provider are never concurrent.
+ *
+ * @author Jerome Blanchard
+ */
+public interface ClientCacheInvalidationProvider {
+
+    /**
+     * @return the provider name, used in logs
+     */
+    String getName();
+
+    /**
+     * Whether the provider accepts path prefixes ending with a wildcard (like /cms/render/live/en/sites/digitall/*).
+     * When a batch holds too many paths, the pipeline collapses them into such prefixes.
+     *
+     * @return true if wildcard paths are supported
+     */
+    default boolean supportsWildcards() {
+        return true;
+    }
+
+    /**
+     * @return the maximum number of paths sent in a single call to invalidate, 0 for no limit
+     */
+    default int getMaxPathsPerRequest() {
+        return 0;
+    }
+
+    /**
+     * @return the minimum time in milliseconds between two calls to invalidate, 0 for no limit
+     */
+    default long getMinRequestInterval() {
+        return 0;
+    }
+
+    /**
+     * Purge the given paths.
+     *
+     * @param paths the URL paths to purge, some may end with a wildcard if the provider supports them
+     * @throws ClientCacheInvalidationException if the purge failed, the call is retried later if the exception is retryable
+     */
+    void invalidate(List<String> paths) throws ClientCacheInvalidationException;
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+/**
+ * Outcome of the final Cache-Control header of a response.
+ *
+ * @author Jerome Blanchard
+ */
+public enum ClientCacheOutcome {
+
+    /**
+     * The response is private or must not be stored, every request goes to the origin
+     */
+    PRIVATE,
+    /**
+     * The response can be stored by intermediates
+     */
+    PUBLIC,
+    /**
+     * No rule matched the request and the default header was kept
+     */
+    DEFAULT
+
+}
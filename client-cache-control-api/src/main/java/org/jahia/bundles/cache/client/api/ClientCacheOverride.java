@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+/**
+ * Number of changes of a cache header made by a caller on the responses of the URLs matching a rule, collected on sampled requests.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheOverride {
+
+    private final String urlPattern;
+    private final String header;
+    private final String caller;
+    private final long count;
+    private final String lastUri;
+    private final String lastValue;
+
+    /**
+     * @param urlPattern the URL expression of the rule matching the requests, "default" for requests matching no rule
+     * @param header the changed header name
+     * @param caller the frame that changed the header (class.method:line), "unknown" if not found
+     * @param count the number of sampled changes
+     * @param lastUri the URI of the last sampled change
+     * @param lastValue the header value set by the last sampled change
+     */
+    public ClientCacheOverride(String urlPattern, String header, String caller, long count, String lastUri, String lastValue) {
+        this.urlPattern = urlPattern;
+        this.header = header;
+        this.caller = caller;
+        this.count = count;
+        this.lastUri = lastUri;
+        this.lastValue = lastValue;
+    }
+
+    public String getUrlPattern() {
+        return urlPattern;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public String getCaller() {
+        return caller;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public String getLastUri() {
+        return lastUri;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    @Override public String toString() {
+        return "ClientCacheOverride{" + "urlPattern='" + urlPattern + '\'' + ", header='" + header + '\'' + ", caller='" + caller + '\''
+                + ", count=" + count + '}';
+    }
+}
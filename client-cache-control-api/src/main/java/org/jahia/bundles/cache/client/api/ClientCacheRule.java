@@ -43,6 +43,25 @@ public abstract class ClientCacheRule {
      */
     public abstract String getUrlRegexp();
 
+    /**
+     * The type of URL matching of the rule: regex, prefix, exact or glob.
+     *
+     * @return the match type
+     */
+    public String getMatchType() {
+        return "regex";
+    }
+
+    /**
+     * The URL expression as configured, interpreted according to the match type.
+     * For other match types than regex, the URL regexp is the equivalent regular expression.
+     *
+     * @return the URL expression
+     */
+    public String getUrlExpression() {
+        return getUrlRegexp();
+    }
+
     /**
      * A cache control header
      * The header can be either a reference to a ClientCacheTemplate (template:{name})
@@ -16,6 +16,7 @@
 package org.jahia.bundles.cache.client.api;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -40,4 +41,62 @@ public interface ClientCacheService {
     Optional<String> getCacheControlHeader(String method, String uri, Map<String, String> templateParams);
 
     Optional<String> getCacheControlHeader(String template, Map<String, String> templateParams);
+
+    /**
+     * Resolve the CDN facing headers (Surrogate-Control, CDN-Cache-Control) defined by a template.
+     *
+     * @param template the template name
+     * @param templateParams the template parameters
+     * @return the header values by header name, empty if the template does not define any
+     */
+    default Map<String, String> getCdnCacheHeaders(String template, Map<String, String> templateParams) {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * The factor applied to the intermediates cache durations (s-maxage, stale-while-revalidate) of the public templates while
+     * the origin is under pressure.
+     *
+     * @return the current stretch factor, 1 when durations are not stretched
+     */
+    default int getLoadStretchFactor() {
+        return 1;
+    }
+
+    /**
+     * @return the runtime statistics of the service, empty if not available
+     */
+    default Optional<ClientCacheStatistics> getStatistics() {
+        return Optional.empty();
+    }
+
+    /**
+     * List the recorded decisions of the sampled requests, most recent first.
+     *
+     * @param uriRegexp a regular expression the request URI must match, null for all decisions
+     * @return the recorded decisions, empty if decisions are not recorded
+     */
+    default List<ClientCacheDecision> listDecisions(String uriRegexp) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * List the cache headers changes made by other components on sampled requests, aggregated by rule URL and caller.
+     *
+     * @return the changes, most frequent first, empty if changes are not sampled
+     */
+    default List<ClientCacheOverride> listOverrides() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * List the most requested URLs whose response had the given outcome, with the rule matching them.
+     *
+     * @param outcome the response outcome
+     * @param limit the maximum number of URLs
+     * @return the URLs, most requested first, empty if not tracked
+     */
+    default List<ClientCacheTopUrl> listTopUrls(ClientCacheOutcome outcome, int limit) {
+        return Collections.emptyList();
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+import java.util.Map;
+
+/**
+ * Runtime statistics of the client cache service, counted since the service started.
+ *
+ * @author Jerome Blanchard
+ */
+public interface ClientCacheStatistics {
+
+    /**
+     * @return the number of Cache-Control header resolutions by request method and URI
+     */
+    long getResolutionCount();
+
+    /**
+     * @return the number of resolutions answered by the resolution cache
+     */
+    long getCachedResolutionCount();
+
+    /**
+     * @return the number of resolutions for which no rule matched
+     */
+    long getNoMatchCount();
+
+    /**
+     * @return the average number of rules evaluated by resolutions not answered by the resolution cache
+     */
+    double getEvaluatedRulesAverage();
+
+    /**
+     * @return the number of resolutions that exceeded the rule match budget
+     */
+    long getMatchBudgetExceededCount();
+
+    /**
+     * @return the number of responses for which the default header was preset, as no rule matched
+     */
+    long getDefaultPresetCount();
+
+    /**
+     * @return the number of responses whose preset Cache-Control header was overridden by another component
+     */
+    long getOverrideCount();
+
+    /**
+     * @return the number of responses whose preset Cache-Control header was overridden or removed whereas strict mode is configured
+     */
+    long getStrictViolationCount();
+
+    /**
+     * @return the number of requests served with a fresh response of the origin response cache
+     */
+    long getResponseCacheHitCount();
+
+    /**
+     * @return the number of requests served with a stale response while another request refreshes it
+     */
+    long getResponseCacheStaleHitCount();
+
+    /**
+     * @return the number of requests that went through the chain to store or refresh a response of the origin response cache
+     */
+    long getResponseCacheMissCount();
+
+    /**
+     * @return the number of failed requests served with a last-good response
+     */
+    long getStaleIfErrorCount();
+
+    /**
+     * @return the number of requests served with the replay of an identical request in progress
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return the number of coalesced requests that went through the chain after waiting for the request in progress
+     */
+    long getCoalescingTimeoutCount();
+
+    /**
+     * @return the mean resolution latency in nanoseconds
+     */
+    double getResolutionLatencyMean();
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the resolution latency in nanoseconds at the percentile, with a precision of 12.5%
+     */
+    long getResolutionLatency(double percentile);
+
+    /**
+     * @return the number of resolutions matching each rule, by rule (priority;methods;url;header)
+     */
+    Map<String, Long> getRuleHits();
+
+    /**
+     * @return the number of resolutions matching a rule using each template, by template name
+     */
+    Map<String, Long> getTemplateHits();
+}
@@ -34,4 +34,22 @@ public abstract class ClientCacheTemplate {
      */
     public abstract String getTemplate();
 
+    /**
+     * The Surrogate-Control value sent along with the template value, only intended for surrogates (CDN) that remove it.
+     *
+     * @return the Surrogate-Control value, or null if the template does not define one
+     */
+    public String getSurrogateControl() {
+        return null;
+    }
+
+    /**
+     * The CDN-Cache-Control value sent along with the template value, only intended for CDNs.
+     *
+     * @return the CDN-Cache-Control value, or null if the template does not define one
+     */
+    public String getCdnCacheControl() {
+        return null;
+    }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.api;
+
+/**
+ * URL among the most requested ones for an outcome, with its estimated number of requests.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheTopUrl {
+
+    private final String method;
+    private final String uri;
+    private final long count;
+    private final long error;
+    private final String rule;
+
+    /**
+     * @param method the method of the last request
+     * @param uri the request URI
+     * @param count the estimated number of requests, decayed over time
+     * @param error the maximum overestimation of the count
+     * @param rule the rule currently matching the request (priority;methods;url;header), null if none
+     */
+    public ClientCacheTopUrl(String method, String uri, long count, long error, String rule) {
+        this.method = method;
+        this.uri = uri;
+        this.count = count;
+        this.error = error;
+        this.rule = rule;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    @Override public String toString() {
+        return "ClientCacheTopUrl{" + "method='" + method + '\'' + ", uri='" + uri + '\'' + ", count=" + count + ", error=" + error + ", rule='"
+                + rule + '\'' + '}';
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.benchmarks;
+
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRuleSetFactory;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Build the rulesets, services and request URIs used by the benchmarks, outside of any OSGi or Jahia runtime.
+ * Everything is generated from a fixed seed so that runs are comparable.
+ *
+ * @author Jerome Blanchard
+ */
+final class ClientCacheBenchmarkSupport {
+
+    static final String DEFAULT_RULESET = "default";
+    static final String DEFAULT_RULESET_RESOURCE = "META-INF/configurations/org.jahia.bundles.cache.client.ruleset-default.yml";
+    static final int SITES = 64;
+    static final int PAGES = 500;
+    static final int MODULES = 200;
+    static final long SEED = 42L;
+
+    private static final Pattern YAML_RULE = Pattern.compile("^\\s*-\\s*\"(.*)\"\\s*$");
+    private static final String[] LANGUAGES = { "en", "fr", "de" };
+
+    private ClientCacheBenchmarkSupport() {
+    }
+
+    /**
+     * @return the rules of the default ruleset shipped with the bundle, in their serialized form
+     */
+    static List<String> defaultRules() {
+        InputStream input = ClientCacheServiceImpl.class.getClassLoader().getResourceAsStream(DEFAULT_RULESET_RESOURCE);
+        if (input == null) {
+            throw new IllegalStateException("Default ruleset not found: " + DEFAULT_RULESET_RESOURCE);
+        }
+        List<String> rules = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = YAML_RULE.matcher(line);
+                if (matcher.matches()) {
+                    // Only backslashes are escaped in the double-quoted rules of the default ruleset
+                    rules.add(matcher.group(1).replace("\\\\", "\\"));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rules;
+    }
+
+    /**
+     * Generate site specific rules evaluated before the default ones, mixing the four match types. Only some of them match the
+     * URIs produced by {@link #uris(int)}, like in a real platform where most rules target a few pages of a single site.
+     *
+     * @param count the number of generated rules
+     * @return the generated rules followed by the default ruleset, in their serialized form
+     */
+    static List<String> generatedRules(int count) {
+        List<String> rules = new ArrayList<>(count + 16);
+        for (int i = 0; i < count; i++) {
+            // Priorities below the first default rule, all distinct
+            String priority = Float.toString((float) i / count);
+            int site = i % SITES;
+            switch (i % 4) {
+                case 0:
+                    rules.add(priority + ";GET|HEAD;(?:/[^/]+)?/cms/render/live/[a-z]{2}/sites/site" + site + "/campaign-" + i + "/.*;template:private");
+                    break;
+                case 1:
+                    rules.add(priority + ";GET|HEAD;glob:/files/live/sites/site" + site + "/files/private-" + i + "/**;template:private");
+                    break;
+                case 2:
+                    rules.add(priority + ";GET|HEAD;prefix:/modules/module-" + (i % MODULES) + "/javascript/;template:immutable");
+                    break;
+                default:
+                    rules.add(priority + ";GET|HEAD;exact:/cms/render/live/en/sites/site" + site + "/home/page-" + (i % PAGES) + ".html;template:public-medium");
+                    break;
+            }
+        }
+        rules.addAll(defaultRules());
+        return rules;
+    }
+
+    /**
+     * @param ruleSet {@link #DEFAULT_RULESET} or a number of generated rules
+     * @return the rules in their serialized form
+     */
+    static List<String> rules(String ruleSet) {
+        return DEFAULT_RULESET.equals(ruleSet) ? defaultRules() : generatedRules(Integer.parseInt(ruleSet));
+    }
+
+    /**
+     * @return the ruleset configuration as flattened by the configuration admin from a yml file
+     */
+    static Dictionary<String, Object> dictionary(String name, List<String> rules) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("name", name);
+        properties.put("description", name);
+        for (int i = 0; i < rules.size(); i++) {
+            properties.put("rules[" + i + "]", rules.get(i));
+        }
+        return properties;
+    }
+
+    /**
+     * @return a service configuration using the default values of the component, except the given ones
+     */
+    static ClientCacheServiceImpl.Config config(Map<String, String> overrides) {
+        return (ClientCacheServiceImpl.Config) Proxy.newProxyInstance(ClientCacheServiceImpl.Config.class.getClassLoader(),
+                new Class<?>[] { ClientCacheServiceImpl.Config.class }, (proxy, method, args) -> {
+                    if (method.getDefaultValue() == null) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return overrides.getOrDefault(method.getName(), (String) method.getDefaultValue());
+                });
+    }
+
+    /**
+     * @return a service set up like the component would be, with the given ruleset and configuration
+     */
+    static ClientCacheServiceImpl service(String ruleSet, Map<String, String> overrides) throws ConfigurationException {
+        ClientCacheFilterRuleSetFactory factory = new ClientCacheFilterRuleSetFactory();
+        factory.updated("org.jahia.bundles.cache.client.ruleset-" + ruleSet, dictionary(ruleSet, rules(ruleSet)));
+        ClientCacheServiceImpl service = new ClientCacheServiceImpl();
+        service.setRuleSetFactory(factory);
+        service.setup(config(overrides));
+        return service;
+    }
+
+    /**
+     * Generate request URIs following the traffic of a multi-site platform: mostly live pages and files, where a few pages of
+     * each site get most of the hits, some static resources and a small share of edit mode requests.
+     *
+     * @param count the number of URIs
+     * @return the URIs, in request order
+     */
+    static String[] uris(int count) {
+        Random random = new Random(SEED);
+        String[] uris = new String[count];
+        for (int i = 0; i < count; i++) {
+            int site = skewed(random, SITES);
+            int page = skewed(random, PAGES);
+            int kind = random.nextInt(100);
+            if (kind < 60) {
+                uris[i] = "/cms/render/live/" + LANGUAGES[random.nextInt(LANGUAGES.length)] + "/sites/site" + site + "/home/page-" + page + ".html";
+            } else if (kind < 80) {
+                uris[i] = "/files/live/sites/site" + site + "/files/images/image-" + page + ".jpg";
+            } else if (kind < 90) {
+                uris[i] = "/modules/module-" + skewed(random, MODULES) + "/javascript/main.js";
+            } else if (kind < 96) {
+                uris[i] = "/generated-resources/" + Integer.toHexString(site * PAGES + page) + ".min.js";
+            } else {
+                uris[i] = "/cms/edit/default/en/sites/site" + site + "/home/page-" + page + ".html";
+            }
+        }
+        return uris;
+    }
+
+    private static int skewed(Random random, int bound) {
+        double value = random.nextDouble();
+        return (int) (value * value * value * bound);
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.benchmarks;
+
+import org.apache.http.HttpHeaders;
+import org.jahia.bundles.cache.client.filter.ClientCacheFilter;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.service.cm.ConfigurationException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The servlet filter presetting the Cache-Control header of a request going through a chain that only sets the status, except for
+ * one request out of sixteen where a component overrides the header. The mock request and response are reused between
+ * invocations so that the allocations reported by <code>-prof gc</code> are the ones of the filter.
+ *
+ * @author Jerome Blanchard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientCacheFilterBenchmark {
+
+    private static final int URIS = 16384;
+
+    @Param({ "overrides", "strict" })
+    public String mode;
+
+    @Param({ ClientCacheBenchmarkSupport.DEFAULT_RULESET, "1000" })
+    public String ruleSet;
+
+    private ClientCacheServiceImpl service;
+    private ClientCacheFilter filter;
+    private String[] uris;
+
+    @State(Scope.Thread)
+    public static class Exchange {
+        private final MockRequest request = new MockRequest();
+        private final MockResponse response = new MockResponse();
+        private int position;
+
+        MockRequest nextRequest(String[] uris) {
+            request.reset("GET", uris[position++ & (URIS - 1)]);
+            response.reset();
+            return request;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ConfigurationException {
+        service = ClientCacheBenchmarkSupport.service(ruleSet, Map.of("mode", mode));
+        filter = new ClientCacheFilter();
+        filter.setService(service);
+        filter.activate();
+        uris = ClientCacheBenchmarkSupport.uris(URIS);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        service.teardown();
+    }
+
+    @Benchmark
+    public String doFilter(Exchange exchange) throws IOException, ServletException {
+        MockRequest request = exchange.nextRequest(uris);
+        filter.doFilter(request, exchange.response, CHAIN);
+        return exchange.response.getHeader(HttpHeaders.CACHE_CONTROL);
+    }
+
+    private static final FilterChain CHAIN = (request, response) -> {
+        HttpServletResponse hResponse = (HttpServletResponse) response;
+        hResponse.setStatus(HttpServletResponse.SC_OK);
+        if ((((MockRequest) request).getSequence() & 15) == 0) {
+            hResponse.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+    };
+
+    /**
+     * @return an implementation of the interface failing on any call, the wrappers below override the methods used by the filter
+     */
+    private static <T> T unsupported(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+        }));
+    }
+
+    static final class MockRequest extends HttpServletRequestWrapper {
+        private final Map<String, Object> attributes = new HashMap<>();
+        private String method;
+        private String uri;
+        private long sequence;
+
+        MockRequest() {
+            super(unsupported(HttpServletRequest.class));
+        }
+
+        void reset(String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+            this.sequence++;
+            attributes.clear();
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        @Override public String getMethod() {
+            return method;
+        }
+
+        @Override public String getRequestURI() {
+            return uri;
+        }
+
+        @Override public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+    }
+
+    static final class MockResponse extends HttpServletResponseWrapper {
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private int status;
+
+        MockResponse() {
+            super(unsupported(HttpServletResponse.class));
+        }
+
+        @Override public void reset() {
+            headers.clear();
+            status = SC_OK;
+        }
+
+        @Override public boolean isCommitted() {
+            return false;
+        }
+
+        @Override public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override public int getStatus() {
+            return status;
+        }
+
+        @Override public void setHeader(String name, String value) {
+            headers.put(name, value);
+        }
+
+        @Override public void addHeader(String name, String value) {
+            headers.putIfAbsent(name, value);
+        }
+
+        @Override public void setDateHeader(String name, long date) {
+            setHeader(name, Long.toString(date));
+        }
+
+        @Override public void setIntHeader(String name, int value) {
+            setHeader(name, Integer.toString(value));
+        }
+
+        @Override public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        @Override public Collection<String> getHeaders(String name) {
+            String value = headers.get(name);
+            return value == null ? Collections.emptyList() : Collections.singletonList(value);
+        }
+
+        @Override public Collection<String> getHeaderNames() {
+            return new ArrayList<>(headers.keySet());
+        }
+    }
+
+}
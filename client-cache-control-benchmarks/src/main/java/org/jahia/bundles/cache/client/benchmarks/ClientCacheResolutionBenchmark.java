@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.benchmarks;
+
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache-Control header resolution of request URIs, on the default ruleset and on generated rulesets evaluated before it,
+ * with and without the resolution cache.
+ *
+ * @author Jerome Blanchard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientCacheResolutionBenchmark {
+
+    private static final int URIS = 16384;
+
+    @Param({ ClientCacheBenchmarkSupport.DEFAULT_RULESET, "100", "1000" })
+    public String ruleSet;
+
+    @Param({ "0", "10000" })
+    public String resolutionCacheSize;
+
+    private ClientCacheServiceImpl service;
+    private String[] uris;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        int next() {
+            return position++ & (URIS - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ConfigurationException {
+        service = ClientCacheBenchmarkSupport.service(ruleSet, Map.of("resolution_cache_size", resolutionCacheSize));
+        uris = ClientCacheBenchmarkSupport.uris(URIS);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        service.teardown();
+    }
+
+    @Benchmark
+    public Optional<String> getCacheControlHeader(Cursor cursor) {
+        return service.getCacheControlHeader("GET", uris[cursor.next()], Collections.emptyMap());
+    }
+
+    @Benchmark
+    public String resolve(Cursor cursor) {
+        return service.getResolver().resolve("GET", uris[cursor.next()]);
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.benchmarks;
+
+import org.jahia.bundles.cache.client.impl.ClientCacheCompiledRuleSet;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRuleSetFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.util.Dictionary;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuild of the rules snapshot when a ruleset configuration is updated: parsing, compilation of the url matchers and sorting
+ * of all the rulesets rules.
+ *
+ * @author Jerome Blanchard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientCacheRuleSetBenchmark {
+
+    private static final String PID = "org.jahia.bundles.cache.client.ruleset-generated";
+
+    @Param({ ClientCacheBenchmarkSupport.DEFAULT_RULESET, "100", "1000" })
+    public String ruleSet;
+
+    private ClientCacheFilterRuleSetFactory factory;
+    private Dictionary<String, Object> properties;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        factory = new ClientCacheFilterRuleSetFactory();
+        properties = ClientCacheBenchmarkSupport.dictionary(ruleSet, ClientCacheBenchmarkSupport.rules(ruleSet));
+    }
+
+    @Benchmark
+    public ClientCacheCompiledRuleSet updated() throws ConfigurationException {
+        factory.updated(PID, properties);
+        return factory.getCompiledRules();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.benchmarks;
+
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the header templates with the parameters given by the render chain: the custom template with a few distinct TTL
+ * values, as set by page components, a template with two placeholders and a template without any.
+ *
+ * @author Jerome Blanchard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientCacheTemplateBenchmark {
+
+    private static final String CUSTOM_TEMPLATE = "public, must-revalidate, max-age=1, s-maxage=%%" + ClientCacheService.CC_CUSTOM_TTL_ATTR
+            + "%%, stale-while-revalidate=15, stale-if-error=86400";
+    private static final String MAX_AGE_PARAM = "maxAge";
+    private static final String[] TTLS = { "60", "120", "300", "600", "900", "1800", "3600", "7200" };
+
+    private ClientCacheFilterTemplate custom;
+    private ClientCacheFilterTemplate multiple;
+    private ClientCacheFilterTemplate plain;
+    private Map<String, String>[] params;
+    private int position;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void setup() {
+        custom = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.CUSTOM, CUSTOM_TEMPLATE);
+        multiple = new ClientCacheFilterTemplate("multiple", "public, max-age=%%" + MAX_AGE_PARAM + "%%, s-maxage=%%"
+                + ClientCacheService.CC_CUSTOM_TTL_ATTR + "%%");
+        plain = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PRIVATE, "private, no-cache, no-store, must-revalidate");
+        params = new Map[TTLS.length];
+        for (int i = 0; i < TTLS.length; i++) {
+            params[i] = Map.of(ClientCacheService.CC_CUSTOM_TTL_ATTR, TTLS[i], MAX_AGE_PARAM, TTLS[TTLS.length - 1 - i]);
+        }
+    }
+
+    private Map<String, String> nextParams() {
+        return params[position++ & (TTLS.length - 1)];
+    }
+
+    @Benchmark
+    public String customTemplate() {
+        return custom.getFilteredTemplate(nextParams());
+    }
+
+    @Benchmark
+    public String multiplePlaceholdersTemplate() {
+        return multiple.getFilteredTemplate(nextParams());
+    }
+
+    @Benchmark
+    public String plainTemplate() {
+        return plain.getFilteredTemplate(nextParams());
+    }
+
+}
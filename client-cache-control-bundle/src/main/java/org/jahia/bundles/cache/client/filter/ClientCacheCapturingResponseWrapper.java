@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.filter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Response wrapper keeping a copy of the response body for the response cache.
+ * The body is written through to the response as usual, the copy is abandoned as soon as it exceeds the maximum entry size or
+ * when the response can not be stored anyway (error, redirect, cookie).
+ * When a last-good response is available to replace it, a server error (5xx) set before the response is committed is
+ * suppressed: the status is not set and the remaining body is discarded, the caller is then expected to reset the response
+ * and serve the last-good copy.
+ * The body of a conditional request can also be held instead of written through, up to the maximum entry size, so that the
+ * request is answered from the stored response (see release).
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheCapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final int maxBodySize;
+    private final boolean suppressServerErrors;
+    private boolean holding;
+    private int suppressedError = 0;
+    private byte[] buffer = new byte[0];
+    private int count = 0;
+    private boolean abandoned = false;
+    private boolean finishing = false;
+    private CapturingOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * @param response the response
+     * @param maxBodySize the maximum size of the body copy
+     * @param suppressServerErrors true if server errors must be suppressed
+     * @param holdBody true if the body must be held until it is released instead of written through
+     */
+    public ClientCacheCapturingResponseWrapper(HttpServletResponse response, int maxBodySize, boolean suppressServerErrors, boolean holdBody) {
+        super(response);
+        this.maxBodySize = maxBodySize;
+        this.suppressServerErrors = suppressServerErrors;
+        this.holding = holdBody;
+    }
+
+    @Override public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+        }
+        return writer;
+    }
+
+    @Override public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (suppressedError == 0 && !holding) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override public void setStatus(int sc) {
+        if (!suppress(sc)) {
+            super.setStatus(sc);
+        }
+    }
+
+    @Override public void resetBuffer() {
+        count = 0;
+        super.resetBuffer();
+    }
+
+    @Override public void reset() {
+        count = 0;
+        super.reset();
+    }
+
+    @Override public void addCookie(Cookie cookie) {
+        abandon();
+        super.addCookie(cookie);
+    }
+
+    @Override public void sendError(int sc, String msg) throws IOException {
+        drop();
+        if (!suppress(sc)) {
+            super.sendError(sc, msg);
+        }
+    }
+
+    @Override public void sendError(int sc) throws IOException {
+        drop();
+        if (!suppress(sc)) {
+            super.sendError(sc);
+        }
+    }
+
+    @Override public void sendRedirect(String location) throws IOException {
+        drop();
+        super.sendRedirect(location);
+    }
+
+    /**
+     * Write the characters still held by the writer, if any, to the response and to the body copy. It must be called once the
+     * chain is done: the container only flushes its own writer. The response itself is not flushed, so that it can still be reset
+     * to serve a last-good copy.
+     */
+    public void finish() {
+        if (writer != null) {
+            finishing = true;
+            try {
+                writer.flush();
+            } finally {
+                finishing = false;
+            }
+        }
+    }
+
+    /**
+     * Finish the response and return the body copy.
+     *
+     * @return the complete response body, or null if it has not been captured
+     */
+    public byte[] getCapturedBody() {
+        finish();
+        return abandoned ? null : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * @return true if the body is held and must be released, or replaced by the stored response, once the chain is done
+     */
+    public boolean isHolding() {
+        return holding;
+    }
+
+    /**
+     * Finish the response and write the held body, if any, to the response. The following writes go through.
+     */
+    public void release() throws IOException {
+        finish();
+        if (!holding) {
+            return;
+        }
+        holding = false;
+        if (count > 0) {
+            outputStream.delegate.write(buffer, 0, count);
+        }
+        if (abandoned) {
+            buffer = null;
+            count = 0;
+        }
+    }
+
+    /**
+     * @return the server error status that has been suppressed, 0 if none
+     */
+    public int getSuppressedError() {
+        return suppressedError;
+    }
+
+    private boolean suppress(int sc) {
+        if (suppressedError == 0 && suppressServerErrors && sc >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR && !isCommitted()) {
+            suppressedError = sc;
+            drop();
+        }
+        return suppressedError != 0;
+    }
+
+    /**
+     * The body copy can not be stored, a held body is still kept to be released.
+     */
+    private void abandon() {
+        abandoned = true;
+        if (!holding) {
+            buffer = null;
+            count = 0;
+        }
+    }
+
+    /**
+     * The body copy can not be stored and a held body is discarded.
+     */
+    private void drop() {
+        holding = false;
+        abandoned = true;
+        buffer = null;
+        count = 0;
+    }
+
+    private void capture(byte[] bytes, int offset, int length) throws IOException {
+        if (holding && count + length > maxBodySize) {
+            release();
+        }
+        if (!holding) {
+            outputStream.delegate.write(bytes, offset, length);
+            if (abandoned) {
+                return;
+            }
+        }
+        if (count + length > maxBodySize) {
+            abandon();
+            return;
+        }
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(maxBodySize, Math.max(count + length, Math.max(INITIAL_BUFFER_SIZE, buffer.length * 2))));
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final byte[] single = new byte[1];
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public void write(int b) throws IOException {
+            if (suppressedError != 0) {
+                return;
+            }
+            single[0] = (byte) b;
+            capture(single, 0, 1);
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            if (suppressedError != 0) {
+                return;
+            }
+            capture(b, off, len);
+        }
+
+        @Override public void flush() throws IOException {
+            if (suppressedError == 0 && !finishing && !holding) {
+                delegate.flush();
+            }
+        }
+
+        @Override public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override public void setWriteListener(WriteListener writeListener) {
+            try {
+                release();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            drop();
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
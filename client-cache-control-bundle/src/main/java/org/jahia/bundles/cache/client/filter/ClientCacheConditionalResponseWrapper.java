@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.filter;
+
+import org.apache.http.HttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Response wrapper computing a strong ETag from the response body of a GET request.
+ * The body is hashed while it is written. Headers cannot be changed once the response is committed, so the body is held
+ * until the end of the request, up to a maximum size: a larger body is streamed as is, without ETag.
+ * When the request ends (see finish), a successful response without ETag gets the computed one and a request with a matching
+ * If-None-Match header gets a 304 Not Modified response without body. A response written with a write listener (non blocking
+ * output) is streamed as is, without ETag.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheConditionalResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheConditionalResponseWrapper.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int ETAG_BYTES = 16;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final int maxBodySize;
+    private MessageDigest digest;
+    private byte[] buffer = new byte[0];
+    private int count = 0;
+    private boolean streaming = false;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * @param response the response
+     * @param maxBodySize the maximum size of the body held to compute the ETag
+     */
+    public ClientCacheConditionalResponseWrapper(HttpServletResponse response, int maxBodySize) {
+        super(response);
+        this.maxBodySize = maxBodySize;
+        try {
+            this.digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Unable to compute ETag, {} is not available", DIGEST_ALGORITHM);
+            this.streaming = true;
+        }
+    }
+
+    @Override public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new HashingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            outputStream = new HashingOutputStream();
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+        }
+        return writer;
+    }
+
+    @Override public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (streaming) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override public void resetBuffer() {
+        discard();
+        super.resetBuffer();
+    }
+
+    @Override public void reset() {
+        discard();
+        super.reset();
+    }
+
+    @Override public void sendError(int sc, String msg) throws IOException {
+        stream(false);
+        super.sendError(sc, msg);
+    }
+
+    @Override public void sendError(int sc) throws IOException {
+        stream(false);
+        super.sendError(sc);
+    }
+
+    @Override public void sendRedirect(String location) throws IOException {
+        stream(false);
+        super.sendRedirect(location);
+    }
+
+    /**
+     * Complete the response: set the ETag and answer 304 if it matches the request, then write the held body if any.
+     *
+     * @param request the request
+     * @return true if a 304 Not Modified response has been sent
+     */
+    public boolean finish(HttpServletRequest request) throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (streaming) {
+            return false;
+        }
+        if (request.isAsyncStarted() || getStatus() != HttpServletResponse.SC_OK || containsHeader(HttpHeaders.ETAG)) {
+            stream(true);
+            return false;
+        }
+        String etag = '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), ETAG_BYTES)) + '"';
+        super.setHeader(HttpHeaders.ETAG, etag);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            LOGGER.debug("[{}] ETag {} matches, sending 304", request.getRequestURI(), etag);
+            discard();
+            super.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        stream(true);
+        return false;
+    }
+
+    /**
+     * Weak comparison of the If-None-Match header entity tags with the given ETag (RFC 7232 section 3.2)
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void discard() {
+        if (!streaming) {
+            count = 0;
+            digest.reset();
+        }
+    }
+
+    /**
+     * Stop holding the body: write what has been held so far and write the remaining body directly to the response.
+     */
+    private void stream(boolean writeHeld) throws IOException {
+        if (streaming) {
+            return;
+        }
+        streaming = true;
+        if (writeHeld && count > 0) {
+            super.getOutputStream().write(buffer, 0, count);
+        }
+        buffer = null;
+        count = 0;
+    }
+
+    private void hold(byte[] bytes, int offset, int length) throws IOException {
+        if (!streaming && count + length > maxBodySize) {
+            LOGGER.debug("Response body exceeds {} bytes, streaming without ETag", maxBodySize);
+            stream(true);
+        }
+        if (streaming) {
+            super.getOutputStream().write(bytes, offset, length);
+            return;
+        }
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(maxBodySize, Math.max(count + length, Math.max(INITIAL_BUFFER_SIZE, buffer.length * 2))));
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+        digest.update(bytes, offset, length);
+    }
+
+    private final class HashingOutputStream extends ServletOutputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            hold(single, 0, 1);
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            hold(b, off, len);
+        }
+
+        @Override public void flush() throws IOException {
+            if (streaming) {
+                ClientCacheConditionalResponseWrapper.super.getOutputStream().flush();
+            }
+        }
+
+        @Override public boolean isReady() {
+            if (streaming) {
+                try {
+                    return ClientCacheConditionalResponseWrapper.super.getOutputStream().isReady();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Non blocking writes can not be held until the end of the request, the response is streamed without ETag.
+         */
+        @Override public void setWriteListener(WriteListener writeListener) {
+            try {
+                stream(true);
+                ClientCacheConditionalResponseWrapper.super.getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -17,8 +17,16 @@ package org.jahia.bundles.cache.client.filter;
 
 import org.apache.http.HttpHeaders;
 import org.jahia.bin.filters.AbstractServletFilter;
-import org.jahia.bundles.cache.client.api.ClientCacheMode;
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
 import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.impl.ClientCacheDecisionTrace;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRule;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterTemplate;
+import org.jahia.bundles.cache.client.impl.ClientCacheLoadMonitor;
+import org.jahia.bundles.cache.client.impl.ClientCacheOverrideAttribution;
+import org.jahia.bundles.cache.client.impl.ClientCacheResolver;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.jahia.bundles.cache.client.impl.ClientCacheTopUrls;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -29,8 +37,7 @@ import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Rules to apply preset Client Cache Control Policies based on URL patterns.
@@ -48,11 +55,33 @@ public class ClientCacheFilter extends AbstractServletFilter {
     public static final float FILTER_ORDER = -3f;
     public static final boolean FILTER_MATCH_ALL_URLS = true;
 
-    private ClientCacheService service;
+    /**
+     * Request attribute set when the response is wrapped to protect the preset cache headers, components that must enforce
+     * a Cache-Control value whatever the mode is can then use the Force- header prefix.
+     */
+    public static final String CC_PROTECTED_ATTR = "jahiaCacheControlProtected";
 
+    /**
+     * Request attribute set by the render chain when the page has a private client cache policy, the response is then never
+     * stored in the response cache whatever its final Cache-Control header is.
+     */
+    public static final String CC_PRIVATE_ATTR = "jahiaCacheControlPrivate";
+
+    /**
+     * Request attribute holding the Cache-Control value preset from the adaptive template, so that the render chain keeps the TTL
+     * estimated for the URL when the page has a public client cache policy.
+     */
+    public static final String CC_ADAPTIVE_ATTR = "jahiaCacheControlAdaptive";
+
+    private ClientCacheServiceImpl service;
+    private final AtomicReference<ClientCacheResponseCache> responseCache = new AtomicReference<>();
+
+    /**
+     * The service of this bundle is bound through its API, its configuration snapshot is then read directly.
+     */
     @Reference(service = ClientCacheService.class)
     public void setService(ClientCacheService service) {
-        this.service = service;
+        this.service = (ClientCacheServiceImpl) service;
     }
 
     @Activate
@@ -63,41 +92,253 @@ public class ClientCacheFilter extends AbstractServletFilter {
         this.setMatchAllUrls(FILTER_MATCH_ALL_URLS);
     }
 
+    /**
+     * The configuration snapshot is read and the rules are resolved once per request. When the response cache is enabled, a
+     * stored response is served without going through the chain nor resolving the rules, otherwise the response is captured
+     * to be stored once its final headers are known.
+     * When request coalescing is enabled, a request resolved to a public template waits for an identical request in progress
+     * and gets a replay of its response. A request failing with an exception or a server error is answered with the last-good
+     * copy of its response if it is still within its stale-if-error window. A conditional request going through the chain to
+     * be stored gets a complete response from the chain, and is then answered from the stored response.
+     */
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest hRequest = (HttpServletRequest) request;
-        ClientCacheResponseWrapper hResponseWrapper = new ClientCacheResponseWrapper((HttpServletResponse) response);
-        LOGGER.debug("{} {} Entering Cache Control preset filter", hRequest.getMethod(), hRequest.getRequestURI());
-        hRequest.setAttribute(ClientCacheService.CC_ORIGINAL_REQUEST_URI_ATTR, hRequest.getRequestURI());
-        boolean defaultPreset = false;
-        Optional<String> presetCacheControlValue = service.getCacheControlHeader(hRequest.getMethod(), hRequest.getRequestURI(), Collections.emptyMap());
-        if (presetCacheControlValue.isPresent()) {
-            hResponseWrapper.setHeader(HttpHeaders.CACHE_CONTROL, presetCacheControlValue.get());
-            if (service.getMode().equals(ClientCacheMode.STRICT)) {
-                // Strict mode prevent any further modification of cache headers, even if response.reset() is called).
-                hResponseWrapper.setReadOnlyFilteredHeaders(true);
-                hRequest.setAttribute(ClientCacheService.CC_SET_ATTR, "done"); // Most legacy rewrite rules use that attribute as condition.
+        HttpServletResponse hResponse = (HttpServletResponse) response;
+        ClientCacheResolver resolver = service.getResolver();
+        ClientCacheResponseCache cache = getResponseCache(resolver);
+        String cacheKey = cache.isActive() ? cache.key(hRequest) : null;
+        if (cacheKey == null) {
+            int ruleIndex = resolver.resolveIndex(hRequest.getMethod(), hRequest.getRequestURI());
+            applyPreset(hRequest, hResponse, chain, resolver, ruleIndex, resolver.getHeader(ruleIndex, hRequest.getRequestURI()));
+            return;
+        }
+        ClientCacheResponseCache.Entry entry = cache.lookup(cacheKey);
+        if (entry != null) {
+            LOGGER.debug("[{}] Serving stored response", hRequest.getRequestURI());
+            cache.serve(entry, hRequest, hResponse);
+            return;
+        }
+        int ruleIndex = resolver.resolveIndex(hRequest.getMethod(), hRequest.getRequestURI());
+        String presetCacheControlValue = resolver.getHeader(ruleIndex, hRequest.getRequestURI());
+        ClientCacheResponseCache.Flight flight = null;
+        if (cache.isCoalescing() && resolver.isPublic(presetCacheControlValue)) {
+            flight = cache.join(cacheKey);
+            if (!flight.isLeader()) {
+                entry = cache.await(flight);
+                if (entry != null) {
+                    LOGGER.debug("[{}] Serving replay of identical request", hRequest.getRequestURI());
+                    cache.serve(entry, hRequest, hResponse);
+                    return;
+                }
+                // The identical request is too long or its response can not be shared, go through the chain independently
+                flight = null;
             }
-            LOGGER.debug("[{}] Predefining Cache-Control: [{}]", hRequest.getRequestURI(), presetCacheControlValue);
-        } else if (!hResponseWrapper.containsHeader(HttpHeaders.CACHE_CONTROL)) {
-            // Using the default preset when service did not find rule for that request.
-            String defaultCacheControlValue = service.getDefaultCacheControlHeader();
-            hResponseWrapper.setHeader(HttpHeaders.CACHE_CONTROL, defaultCacheControlValue);
-            defaultPreset = true;
-            LOGGER.debug("[{}] Predefining DEFAULT Cache-Control: [{}]", hRequest.getRequestURI(), defaultCacheControlValue);
-        } else {
-            LOGGER.warn("[{}] Cache-Control header unchanged: [{}]", hRequest.getRequestURI(), hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL));
         }
-        chain.doFilter(request, hResponseWrapper);
-        if (!defaultPreset && presetCacheControlValue.isPresent() && !(presetCacheControlValue.get()).equals(hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL))) {
-            String currentCacheControlValue = hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL) != null ? hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL) : "Header Not Set";
-            if (service.getMode().equals(ClientCacheMode.ALLOW_OVERRIDES)) {
-                LOGGER.debug("[{}] Cache-Control header overridden by other component, current value: [{}] was preset to value: [{}]", hRequest.getRequestURI(), currentCacheControlValue, presetCacheControlValue);
+        ClientCacheResponseCache.Entry lastGood = cache.lookupLastGood(cacheKey);
+        boolean conditional = cache.isEnabled() && hRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        ClientCacheCapturingResponseWrapper capturingResponse = new ClientCacheCapturingResponseWrapper(hResponse, cache.getMaxEntrySize(),
+                lastGood != null, conditional);
+        ClientCacheResponseCache.Entry shared = null;
+        try {
+            boolean failed;
+            try {
+                applyPreset(conditional ? new ClientCacheUnconditionalRequestWrapper(hRequest) : hRequest, capturingResponse, chain, resolver,
+                        ruleIndex, presetCacheControlValue);
+                capturingResponse.finish();
+                failed = capturingResponse.getSuppressedError() != 0;
+            } catch (IOException | ServletException | RuntimeException e) {
+                if (lastGood == null || hResponse.isCommitted()) {
+                    capturingResponse.finish();
+                    throw e;
+                }
+                LOGGER.debug("[{}] Request failed", hRequest.getRequestURI(), e);
+                failed = true;
+            }
+            if (failed) {
+                LOGGER.warn("[{}] Request failed (status: {}), serving last-good response stored {}s ago", hRequest.getRequestURI(),
+                        capturingResponse.getSuppressedError(), (System.currentTimeMillis() - lastGood.getStoredAt()) / 1000);
+                cache.serveLastGood(lastGood, hRequest, hResponse);
+                shared = lastGood;
             } else {
-                LOGGER.error("[{}] Cache-Control header overridden/removed by other component whereas strict mode configured, current value: [{}] was preset to value: [{}]", hRequest.getRequestURI(), currentCacheControlValue, presetCacheControlValue);
+                shared = entry = cache.complete(cacheKey, hRequest, capturingResponse);
+                if (capturingResponse.isHolding()) {
+                    if (entry != null) {
+                        cache.serve(entry, hRequest, hResponse);
+                    } else {
+                        capturingResponse.release();
+                    }
+                }
+            }
+        } finally {
+            if (entry == null) {
+                cache.abort(cacheKey);
+            }
+            if (flight != null) {
+                cache.land(flight, shared);
+            }
+        }
+    }
+
+    /**
+     * Requests going through the chain are recorded by the load monitor of the service, the decision trace of the service is
+     * only passed along for sampled requests.
+     */
+    private void applyPreset(HttpServletRequest hRequest, HttpServletResponse hResponse, FilterChain chain, ClientCacheResolver resolver,
+            int ruleIndex, String presetCacheControlValue) throws IOException, ServletException {
+        ClientCacheLoadMonitor monitor = service.getLoadMonitor();
+        long start = monitor.enter();
+        try {
+            ClientCacheDecisionTrace trace = service.getTrace();
+            preset(hRequest, hResponse, chain, resolver, ruleIndex, presetCacheControlValue, monitor, trace != null && trace.sample() ? trace : null,
+                    start);
+        } finally {
+            monitor.exit(start);
+        }
+    }
+
+    /**
+     * The response is always wrapped, so that the Force- prefix of cache headers is translated whatever the mode is, strict mode
+     * additionally sets the preset header read only, and wrapped again when an ETag must be computed. Overrides detection reads
+     * the final header from the wrapper.
+     * The preset header is stretched when the origin is under pressure, the resolved value is still used for the checks by identity.
+     * Default presets, overrides and strict mode violations are counted in the service metrics, and the decision is recorded
+     * in the trace if the request is sampled. The outcome of the final header is counted for the most requested URLs.
+     */
+    private void preset(HttpServletRequest hRequest, HttpServletResponse hResponse, FilterChain chain, ClientCacheResolver resolver,
+            int ruleIndex, String presetCacheControlValue, ClientCacheLoadMonitor monitor, ClientCacheDecisionTrace trace, long start)
+            throws IOException, ServletException {
+        String method = hRequest.getMethod();
+        String uri = hRequest.getRequestURI();
+        LOGGER.debug("{} {} Entering Cache Control preset filter", method, uri);
+        hRequest.setAttribute(ClientCacheService.CC_ORIGINAL_REQUEST_URI_ATTR, uri);
+        String appliedCacheControlValue = null;
+        boolean defaultPreset = false;
+        ClientCacheResponseWrapper hResponseWrapper = new ClientCacheResponseWrapper(hResponse);
+        if (presetCacheControlValue == null) {
+            if (!hResponse.containsHeader(HttpHeaders.CACHE_CONTROL)) {
+                // Using the default preset when service did not find rule for that request.
+                hResponseWrapper.setHeader(HttpHeaders.CACHE_CONTROL, resolver.getDefaultHeader());
+                presetCdnHeaders(hResponseWrapper, resolver, resolver.getDefaultHeader(), null);
+                LOGGER.debug("[{}] Predefining DEFAULT Cache-Control: [{}]", uri, resolver.getDefaultHeader());
+                service.getMetrics().recordDefaultPreset();
+                appliedCacheControlValue = resolver.getDefaultHeader();
+                defaultPreset = true;
+                attribute(hResponseWrapper, resolver, ruleIndex, uri);
+                proceed(hRequest, hResponseWrapper, chain, resolver, resolver.getDefaultHeader());
+            } else {
+                LOGGER.warn("[{}] Cache-Control header unchanged: [{}]", uri, hResponse.getHeader(HttpHeaders.CACHE_CONTROL));
+                chain.doFilter(hRequest, hResponseWrapper);
+            }
+        } else if (resolver.isStrict()) {
+            appliedCacheControlValue = resolver.isStretchable(presetCacheControlValue) ? monitor.stretch(presetCacheControlValue) : presetCacheControlValue;
+            if (resolver.isAdaptive(presetCacheControlValue)) {
+                hRequest.setAttribute(CC_ADAPTIVE_ATTR, appliedCacheControlValue);
+            }
+            // Strict mode prevent any further modification of cache headers, even if response.reset() is called).
+            hResponseWrapper.setHeader(HttpHeaders.CACHE_CONTROL, appliedCacheControlValue);
+            presetCdnHeaders(hResponseWrapper, resolver, presetCacheControlValue, resolver.isStretchable(presetCacheControlValue) ? monitor : null);
+            hResponseWrapper.setReadOnlyFilteredHeaders(true);
+            hRequest.setAttribute(ClientCacheService.CC_SET_ATTR, "done"); // Most legacy rewrite rules use that attribute as condition.
+            hRequest.setAttribute(CC_PROTECTED_ATTR, Boolean.TRUE);
+            LOGGER.debug("[{}] Predefining Cache-Control: [{}]", uri, appliedCacheControlValue);
+            attribute(hResponseWrapper, resolver, ruleIndex, uri);
+            proceed(hRequest, hResponseWrapper, chain, resolver, presetCacheControlValue);
+            String currentCacheControlValue = hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL);
+            if (!appliedCacheControlValue.equals(currentCacheControlValue)) {
+                service.getMetrics().recordStrictViolation();
+                LOGGER.error("[{}] Cache-Control header overridden/removed by other component whereas strict mode configured, current value: [{}] was preset to value: [{}]",
+                        uri, currentCacheControlValue != null ? currentCacheControlValue : "Header Not Set", appliedCacheControlValue);
+            }
+        } else {
+            appliedCacheControlValue = resolver.isStretchable(presetCacheControlValue) ? monitor.stretch(presetCacheControlValue) : presetCacheControlValue;
+            if (resolver.isAdaptive(presetCacheControlValue)) {
+                hRequest.setAttribute(CC_ADAPTIVE_ATTR, appliedCacheControlValue);
+            }
+            hResponseWrapper.setHeader(HttpHeaders.CACHE_CONTROL, appliedCacheControlValue);
+            presetCdnHeaders(hResponseWrapper, resolver, presetCacheControlValue, resolver.isStretchable(presetCacheControlValue) ? monitor : null);
+            LOGGER.debug("[{}] Predefining Cache-Control: [{}]", uri, appliedCacheControlValue);
+            attribute(hResponseWrapper, resolver, ruleIndex, uri);
+            proceed(hRequest, hResponseWrapper, chain, resolver, presetCacheControlValue);
+            String currentCacheControlValue = hResponseWrapper.getHeader(HttpHeaders.CACHE_CONTROL);
+            if (!appliedCacheControlValue.equals(currentCacheControlValue)) {
+                service.getMetrics().recordOverride();
+                LOGGER.debug("[{}] Cache-Control header overridden by other component, current value: [{}] was preset to value: [{}]",
+                        uri, currentCacheControlValue != null ? currentCacheControlValue : "Header Not Set", appliedCacheControlValue);
             }
         }
+        boolean forced = hResponseWrapper.isForced();
+        String finalCacheControlValue = hResponse.getHeader(HttpHeaders.CACHE_CONTROL);
+        ClientCacheTopUrls topUrls = service.getTopUrls();
+        ClientCacheOutcome outcome;
+        if (topUrls != null && (outcome = ClientCacheTopUrls.outcome(appliedCacheControlValue, defaultPreset, finalCacheControlValue)) != null) {
+            topUrls.record(outcome, method, uri);
+        }
+        if (trace != null) {
+            trace.record(method, uri, resolver.getRule(ruleIndex), appliedCacheControlValue, finalCacheControlValue, forced, System.nanoTime() - start);
+        }
         if (LOGGER.isDebugEnabled()) {
-            hResponseWrapper.getHeaderNames().forEach(headerName -> LOGGER.debug("[{}]  Final Header: [{}] Value: [{}]", hRequest.getRequestURI(), headerName, hResponseWrapper.getHeader(headerName)));
+            hResponse.getHeaderNames().forEach(headerName -> LOGGER.debug("[{}]  Final Header: [{}] Value: [{}]", uri, headerName, hResponse.getHeader(headerName)));
+        }
+    }
+
+    /**
+     * Attribute the following cache header changes of sampled requests, once the cache headers are preset, to the component that
+     * made them. Attribution only observes the response wrapper, sampled or not a response gets the same headers.
+     */
+    private void attribute(ClientCacheResponseWrapper wrapper, ClientCacheResolver resolver, int ruleIndex, String uri) {
+        ClientCacheOverrideAttribution attribution = service.getAttribution();
+        if (attribution != null && attribution.sample()) {
+            ClientCacheFilterRule rule = resolver.getRule(ruleIndex);
+            wrapper.setAttribution(attribution, rule != null ? rule.getUrlExpression() : ClientCacheOverrideAttribution.DEFAULT_PATTERN, uri);
+        }
+    }
+
+    /**
+     * Set the Surrogate-Control and CDN-Cache-Control headers defined by the template the preset header comes from, if any,
+     * stretched like the Cache-Control header when a load monitor is given.
+     */
+    private static void presetCdnHeaders(HttpServletResponse response, ClientCacheResolver resolver, String header, ClientCacheLoadMonitor monitor) {
+        ClientCacheFilterTemplate template = resolver.getCdnTemplate(header);
+        if (template != null) {
+            if (template.getSurrogateControl() != null) {
+                response.setHeader(ClientCacheHeaders.SURROGATE_CONTROL,
+                        monitor != null ? monitor.stretchCdn(template.getSurrogateControl()) : template.getSurrogateControl());
+            }
+            if (template.getCdnCacheControl() != null) {
+                response.setHeader(ClientCacheHeaders.CDN_CACHE_CONTROL,
+                        monitor != null ? monitor.stretchCdn(template.getCdnCacheControl()) : template.getCdnCacheControl());
+            }
+        }
+    }
+
+    /**
+     * @return the response cache of the resolver, a new one is created when the resolver has been relinked
+     */
+    private ClientCacheResponseCache getResponseCache(ClientCacheResolver resolver) {
+        ClientCacheResponseCache current = responseCache.get();
+        if (current != null && current.getResolver() == resolver) {
+            return current;
+        }
+        ClientCacheResponseCache updated = new ClientCacheResponseCache(resolver, service.getMetrics());
+        if (responseCache.compareAndSet(current, updated) && current != null && current.isEnabled()) {
+            LOGGER.info("Response cache reset, previous size: {} ({} bytes)", current.size(), current.getWeight());
+        }
+        return updated;
+    }
+
+    /**
+     * Continue the chain, computing an ETag from the response body of GET requests when the preset header comes from a template
+     * configured for it.
+     */
+    private void proceed(HttpServletRequest request, HttpServletResponse response, FilterChain chain, ClientCacheResolver resolver, String header)
+            throws IOException, ServletException {
+        int maxBodySize = resolver.getSettings().getEtagMaxBodySize();
+        if (maxBodySize > 0 && resolver.isEtagEnabled(header) && "GET".equals(request.getMethod())) {
+            ClientCacheConditionalResponseWrapper conditionalResponse = new ClientCacheConditionalResponseWrapper(response, maxBodySize);
+            chain.doFilter(request, conditionalResponse);
+            conditionalResponse.finish(request);
+        } else {
+            chain.doFilter(request, response);
         }
     }
 
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.filter;
+
+import org.apache.http.HttpHeaders;
+
+import java.util.List;
+
+/**
+ * Case-insensitive classification of response header names.
+ * Classification is called for every header set on a response, it only compares the name length and first character before
+ * doing a single case-insensitive comparison against the candidate name.
+ *
+ * @author Jerome Blanchard
+ */
+public final class ClientCacheHeaders {
+
+    /**
+     * Prefix of a header name used to force a filtered header value even if filtered headers are read only
+     */
+    public static final String FORCE_PREFIX = "Force-";
+
+    public static final String SURROGATE_CONTROL = "Surrogate-Control";
+    public static final String CDN_CACHE_CONTROL = "CDN-Cache-Control";
+
+    /**
+     * Headers that control caching of the response and are protected in strict mode
+     */
+    public static final List<String> FILTERED_HEADERS = List.of(HttpHeaders.CACHE_CONTROL, HttpHeaders.EXPIRES, HttpHeaders.PRAGMA,
+            SURROGATE_CONTROL, CDN_CACHE_CONTROL);
+
+    private ClientCacheHeaders() {
+    }
+
+    /**
+     * @param name the header name
+     * @return true if the header is one of the filtered headers, whatever the case
+     */
+    public static boolean isFiltered(String name) {
+        switch (name.length()) {
+            case 6:
+                return matches(name, 'p', HttpHeaders.PRAGMA);
+            case 7:
+                return matches(name, 'e', HttpHeaders.EXPIRES);
+            case 13:
+                return matches(name, 'c', HttpHeaders.CACHE_CONTROL);
+            case 17:
+                return matches(name, 's', SURROGATE_CONTROL) || matches(name, 'c', CDN_CACHE_CONTROL);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param name the header name
+     * @return true if the header name starts with the Force- prefix, whatever the case
+     */
+    public static boolean isForced(String name) {
+        return name.length() > FORCE_PREFIX.length() && (name.charAt(0) | 0x20) == 'f'
+                && name.regionMatches(true, 0, FORCE_PREFIX, 0, FORCE_PREFIX.length());
+    }
+
+    /**
+     * @param name a forced header name
+     * @return the header name without the Force- prefix
+     */
+    public static String unforce(String name) {
+        return name.substring(FORCE_PREFIX.length());
+    }
+
+    private static boolean matches(String name, char lowerFirst, String candidate) {
+        return (name.charAt(0) | 0x20) == lowerFirst && name.regionMatches(true, 0, candidate, 0, candidate.length());
+    }
+}
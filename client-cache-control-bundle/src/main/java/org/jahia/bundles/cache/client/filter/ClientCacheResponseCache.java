@@ -0,0 +1,549 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.filter;
+
+import org.apache.http.HttpHeaders;
+import org.jahia.bundles.cache.client.impl.ClientCacheMetrics;
+import org.jahia.bundles.cache.client.impl.ClientCacheResolver;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte bounded in-memory cache of public GET responses, used by the ClientCacheFilter to serve anonymous requests without
+ * going through the render chain.
+ * A response is stored only when its final Cache-Control header is public with a positive s-maxage (or max-age), it has a 200
+ * status, it does not set any cookie, it only varies on the configured request headers and it has not been marked private by
+ * the render chain. Requests carrying credentials or a session id never use the cache.
+ * An entry is served as is while fresh, then within its stale-while-revalidate window it is still served to all requests but
+ * one, which goes through the chain to refresh it. Entries are then retained as last-good copies during their stale-if-error
+ * window: when the chain fails or returns a server error, the last-good copy is served instead. The proxy-revalidate directive
+ * disables stale serving, must-revalidate is considered as targeting browsers (max-age) like in the default templates.
+ * Concurrent identical requests resolved to a public template can also be coalesced: the first one goes through the chain
+ * while the others wait for it, up to a bounded time, and get a replay of its response if it can be shared. Otherwise they go
+ * through the chain independently.
+ * An instance belongs to a ClientCacheResolver: when the rules or the templates change, a new cache is created and the stored
+ * responses are dropped, its hits, misses, stale serves and coalesced requests are counted in the service metrics that outlive it.
+ * Eviction uses the CLOCK algorithm, expired entries are evicted first.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheResponseCache.class);
+
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final Set<String> UNSTORED_HEADERS = Set.of("set-cookie", "date", "age", "content-length", "content-type",
+            "transfer-encoding", "connection", "keep-alive");
+
+    private final ClientCacheResolver resolver;
+    private final long capacity;
+    private final int maxEntrySize;
+    private final String[] vary;
+    private final long coalescingWait;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final LinkedHashSet<Entry> ring = new LinkedHashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ClientCacheMetrics metrics;
+    private volatile long weight = 0;
+
+    /**
+     * @param resolver the resolver whose settings dimension the cache
+     * @param metrics the service metrics
+     */
+    public ClientCacheResponseCache(ClientCacheResolver resolver, ClientCacheMetrics metrics) {
+        ClientCacheSettings settings = resolver.getSettings();
+        this.resolver = resolver;
+        this.metrics = metrics;
+        this.capacity = settings.getResponseCacheSize();
+        this.maxEntrySize = settings.getResponseCacheMaxEntrySize();
+        this.vary = settings.getResponseCacheVary().toArray(new String[0]);
+        this.coalescingWait = settings.getCoalescingWait();
+    }
+
+    public ClientCacheResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * @return true if responses are stored
+     */
+    public boolean isEnabled() {
+        return capacity > 0 && maxEntrySize > 0;
+    }
+
+    /**
+     * @return true if concurrent identical public requests are coalesced
+     */
+    public boolean isCoalescing() {
+        return coalescingWait > 0 && maxEntrySize > 0;
+    }
+
+    /**
+     * @return true if requests must be keyed, either to use stored responses or to be coalesced
+     */
+    public boolean isActive() {
+        return isEnabled() || isCoalescing();
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of bytes held by the cache
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param request the request
+     * @return the cache key of the request: server name, uri, query string and values of the configured vary headers, or
+     * null if the request must not use the cache
+     */
+    public String key(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) || request.getHeader(HttpHeaders.AUTHORIZATION) != null || request.getRequestedSessionId() != null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(128).append(request.getServerName()).append(request.getRequestURI());
+        String query = request.getQueryString();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        for (String header : vary) {
+            key.append('\n');
+            String value = request.getHeader(header);
+            if (value != null) {
+                key.append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key the request cache key
+     * @return the entry to serve, or null if the request must go through the chain to store or refresh the response
+     */
+    public Entry lookup(String key) {
+        return lookup(key, System.currentTimeMillis());
+    }
+
+    /**
+     * @param key the request cache key
+     * @param now the current time in milliseconds
+     * @return the entry to serve, or null if the request must go through the chain to store or refresh the response
+     */
+    public Entry lookup(String key, long now) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            metrics.recordResponseCacheMiss();
+            return null;
+        }
+        if (now < entry.freshUntil) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            metrics.recordResponseCacheHit();
+            return entry;
+        }
+        if (now < entry.staleUntil && !entry.refreshing.compareAndSet(false, true)) {
+            // Another request is refreshing the entry
+            metrics.recordResponseCacheStaleHit();
+            return entry;
+        }
+        metrics.recordResponseCacheMiss();
+        return null;
+    }
+
+    /**
+     * @param key the request cache key
+     * @return the stored entry that can replace a failed response, or null if none
+     */
+    public Entry lookupLastGood(String key) {
+        return lookupLastGood(key, System.currentTimeMillis());
+    }
+
+    /**
+     * @param key the request cache key
+     * @param now the current time in milliseconds
+     * @return the stored entry that can replace a failed response, or null if none
+     */
+    public Entry lookupLastGood(String key, long now) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        return entry != null && now < entry.errorUntil ? entry : null;
+    }
+
+    /**
+     * Replace a failed response that has not been committed with a last-good copy.
+     */
+    public void serveLastGood(Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.reset();
+        serve(entry, request, response);
+        metrics.recordStaleIfError();
+    }
+
+    /**
+     * Write a stored response, answering 304 if the request If-None-Match header matches the stored ETag.
+     */
+    public void serve(Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        for (int i = 0; i < entry.headerNames.length; i++) {
+            if (i > 0 && entry.headerNames[i].equals(entry.headerNames[i - 1])) {
+                response.addHeader(entry.headerNames[i], entry.headerValues[i]);
+            } else {
+                response.setHeader(entry.headerNames[i], entry.headerValues[i]);
+            }
+        }
+        response.setHeader(HttpHeaders.AGE, Long.toString(Math.max(0, (System.currentTimeMillis() - entry.storedAt) / 1000)));
+        if (entry.etag != null && ClientCacheConditionalResponseWrapper.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (entry.contentType != null) {
+            response.setContentType(entry.contentType);
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(entry.body.length);
+        response.getOutputStream().write(entry.body);
+    }
+
+    /**
+     * Store the response captured for the key, or drop the stored entry if the response can no longer be stored. A server error
+     * or a 304 Not Modified answer keeps the stored entry: neither tells if the response can still be stored.
+     *
+     * @return the captured response if it can be shared with other requests, null otherwise
+     */
+    public Entry complete(String key, HttpServletRequest request, ClientCacheCapturingResponseWrapper response) {
+        Entry entry = toEntry(key, request, response);
+        if (!isEnabled() || (entry == null && (response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED || response.getSuppressedError() != 0))) {
+            // A server error does not replace the last-good copy, a conditional answer does not replace the stored response
+            return entry;
+        }
+        boolean store = entry != null && entry.weight <= capacity;
+        lock.lock();
+        try {
+            Entry previous = store ? entries.put(key, entry) : entries.remove(key);
+            if (previous != null) {
+                ring.remove(previous);
+                weight -= previous.weight;
+            }
+            if (store) {
+                ring.add(entry);
+                weight += entry.weight;
+                evict();
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("[{}] Response {}", request.getRequestURI(), store ? "stored" : "not stored");
+        return entry;
+    }
+
+    /**
+     * Join the flight of the identical request in progress, or start a new one.
+     *
+     * @param key the request cache key
+     * @return the flight, led by the caller if it has been started by the current thread
+     */
+    public Flight join(String key) {
+        Flight flight = new Flight(key);
+        Flight current = flights.putIfAbsent(key, flight);
+        return current != null ? current : flight;
+    }
+
+    /**
+     * Complete a flight led by the caller, waking up the waiting requests.
+     *
+     * @param flight the flight
+     * @param entry the captured response to replay, null if the waiting requests must go through the chain
+     */
+    public void land(Flight flight, Entry entry) {
+        flight.entry = entry;
+        flight.landed.countDown();
+        flights.remove(flight.key, flight);
+    }
+
+    /**
+     * Wait for the leader of a flight.
+     *
+     * @param flight a flight joined by the caller
+     * @return the response to replay, or null if the request must go through the chain
+     */
+    public Entry await(Flight flight) {
+        try {
+            if (!flight.landed.await(coalescingWait, TimeUnit.MILLISECONDS)) {
+                metrics.recordCoalescingTimeout();
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (flight.entry != null) {
+            metrics.recordCoalesced();
+        }
+        return flight.entry;
+    }
+
+    /**
+     * Release the refresh of the entry for the key after the request failed, another request can try to refresh it.
+     */
+    public void abort(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = ring.iterator();
+        List<Entry> referenced = new ArrayList<>();
+        while (weight > capacity) {
+            if (!iterator.hasNext()) {
+                // Second chance given to every entry, sweep again
+                ring.addAll(referenced);
+                referenced.clear();
+                iterator = ring.iterator();
+            }
+            Entry victim = iterator.next();
+            iterator.remove();
+            if (victim.referenced && now < victim.retainUntil) {
+                victim.referenced = false;
+                referenced.add(victim);
+            } else {
+                entries.remove(victim.key, victim);
+                weight -= victim.weight;
+            }
+        }
+        ring.addAll(referenced);
+    }
+
+    private Entry toEntry(String key, HttpServletRequest request, ClientCacheCapturingResponseWrapper response) {
+        if (request.isAsyncStarted() || request.getAttribute(ClientCacheFilter.CC_PRIVATE_ATTR) != null || response.getSuppressedError() != 0
+                || response.getStatus() != HttpServletResponse.SC_OK || response.containsHeader("Set-Cookie")
+                || !isVaryCovered(response.getHeaders(HttpHeaders.VARY))) {
+            return null;
+        }
+        long[] lifetimes = lifetimes(response.getHeader(HttpHeaders.CACHE_CONTROL));
+        byte[] body = response.getCapturedBody();
+        if (lifetimes == null || body == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(response.getHeaderNames())) {
+            if (!UNSTORED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                for (String value : response.getHeaders(name)) {
+                    names.add(name);
+                    values.add(value);
+                }
+            }
+        }
+        long now = System.currentTimeMillis();
+        return new Entry(key, names.toArray(new String[0]), values.toArray(new String[0]), response.getContentType(), response.getHeader(HttpHeaders.ETAG),
+                body, now, now + lifetimes[0] * 1000, now + (lifetimes[0] + lifetimes[1]) * 1000, now + (lifetimes[0] + lifetimes[2]) * 1000);
+    }
+
+    private boolean isVaryCovered(Collection<String> varyHeaders) {
+        for (String varyHeader : varyHeaders) {
+            for (String name : varyHeader.split(",")) {
+                name = name.trim();
+                if (!name.isEmpty() && !isConfiguredVary(name)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isConfiguredVary(String name) {
+        for (String header : vary) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param cacheControl the final Cache-Control header value
+     * @return the shared cache freshness lifetime, stale-while-revalidate and stale-if-error windows in seconds, or null if the
+     * response must not be stored in a shared cache
+     */
+    public static long[] lifetimes(String cacheControl) {
+        if (cacheControl == null) {
+            return null;
+        }
+        boolean isPublic = false;
+        boolean revalidate = false;
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        long staleWhileRevalidate = 0;
+        long staleIfError = 0;
+        for (String directive : cacheControl.split(",")) {
+            int separator = directive.indexOf('=');
+            String name = (separator < 0 ? directive : directive.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+            String value = separator < 0 ? "" : directive.substring(separator + 1).trim();
+            switch (name) {
+                case "public":
+                    isPublic = true;
+                    break;
+                case "private":
+                case "no-store":
+                case "no-cache":
+                    return null;
+                case "proxy-revalidate":
+                    revalidate = true;
+                    break;
+                case "max-age":
+                    maxAge = seconds(value);
+                    break;
+                case "s-maxage":
+                    sharedMaxAge = seconds(value);
+                    break;
+                case "stale-while-revalidate":
+                    staleWhileRevalidate = Math.max(0, seconds(value));
+                    break;
+                case "stale-if-error":
+                    staleIfError = Math.max(0, seconds(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+        long ttl = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        if (!isPublic || ttl <= 0) {
+            return null;
+        }
+        return new long[] { ttl, revalidate ? 0 : staleWhileRevalidate, revalidate ? 0 : staleIfError };
+    }
+
+    private static long seconds(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A request in progress that identical requests can wait for
+     */
+    public static final class Flight {
+
+        private final String key;
+        private final Thread leader = Thread.currentThread();
+        private final CountDownLatch landed = new CountDownLatch(1);
+        private volatile Entry entry;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return true if the current thread started the flight and must land it
+         */
+        public boolean isLeader() {
+            return leader == Thread.currentThread();
+        }
+    }
+
+    /**
+     * A stored response
+     */
+    public static final class Entry {
+
+        private final String key;
+        private final String[] headerNames;
+        private final String[] headerValues;
+        private final String contentType;
+        private final String etag;
+        private final byte[] body;
+        private final long storedAt;
+        private final long freshUntil;
+        private final long staleUntil;
+        private final long errorUntil;
+        private final long retainUntil;
+        private final long weight;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile boolean referenced;
+
+        Entry(String key, String[] headerNames, String[] headerValues, String contentType, String etag, byte[] body, long storedAt,
+                long freshUntil, long staleUntil, long errorUntil) {
+            this.key = key;
+            this.headerNames = headerNames;
+            this.headerValues = headerValues;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.body = body;
+            this.storedAt = storedAt;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+            this.errorUntil = errorUntil;
+            this.retainUntil = Math.max(staleUntil, errorUntil);
+            long headersWeight = 0;
+            for (int i = 0; i < headerNames.length; i++) {
+                headersWeight += 2L * (headerNames[i].length() + headerValues[i].length());
+            }
+            this.weight = ENTRY_OVERHEAD + 2L * key.length() + headersWeight + body.length;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public long getFreshUntil() {
+            return freshUntil;
+        }
+
+        public long getStaleUntil() {
+            return staleUntil;
+        }
+
+        public long getErrorUntil() {
+            return errorUntil;
+        }
+    }
+}
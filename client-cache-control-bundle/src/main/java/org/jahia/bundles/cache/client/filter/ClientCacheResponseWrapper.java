@@ -15,17 +15,19 @@
  */
 package org.jahia.bundles.cache.client.filter;
 
-import org.apache.http.HttpHeaders;
+import org.jahia.bundles.cache.client.impl.ClientCacheOverrideAttribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
+ * Response wrapper protecting the cache headers (see ClientCacheHeaders) once they are set read only.
+ * Every header setter is covered (string, date and int variants) and header names are compared case-insensitively. A header
+ * name prefixed by Force- sets the header even when cache headers are read only.
+ * When an override attribution is set, each change of a cache header value is attributed to the component that made it.
+ *
  * @author Jerome Blanchard
  */
 public class ClientCacheResponseWrapper extends HttpServletResponseWrapper {
@@ -33,7 +35,10 @@ public class ClientCacheResponseWrapper extends HttpServletResponseWrapper {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheResponseWrapper.class);
 
     private boolean readOnlyFilteredHeaders = false;
-    private final List<String> filteredHeadersNames = List.of(HttpHeaders.CACHE_CONTROL, HttpHeaders.EXPIRES, HttpHeaders.PRAGMA);
+    private boolean forced = false;
+    private ClientCacheOverrideAttribution attribution;
+    private String urlPattern;
+    private String uri;
 
     public ClientCacheResponseWrapper(HttpServletResponse response) {
         super(response);
@@ -43,13 +48,36 @@ public class ClientCacheResponseWrapper extends HttpServletResponseWrapper {
         this.readOnlyFilteredHeaders = readOnlyFilteredHeaders;
     }
 
+    /**
+     * Attribute the following changes of cache headers to their caller.
+     *
+     * @param attribution the override attribution
+     * @param urlPattern the URL expression of the rule matching the request
+     * @param uri the request URI
+     */
+    public void setAttribution(ClientCacheOverrideAttribution attribution, String urlPattern, String uri) {
+        this.attribution = attribution;
+        this.urlPattern = urlPattern;
+        this.uri = uri;
+    }
+
+    /**
+     * @return true if a header has been set using the Force- prefix
+     */
+    public boolean isForced() {
+        return forced;
+    }
+
     @Override public void addHeader(String name, String value) {
-        if (filteredHeadersNames.contains(name)) {
-            if (!readOnlyFilteredHeaders) {
-                LOGGER.debug("Setting filtered header {} with value {}", name, value);
+        if (ClientCacheHeaders.isForced(name)) {
+            LOGGER.debug("Overriding header {} with value {}", name, value);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), value);
+            super.setHeader(ClientCacheHeaders.unforce(name), value);
+        } else if (ClientCacheHeaders.isFiltered(name)) {
+            if (acceptFiltered(name, value)) {
+                attribute(name, value);
                 super.setHeader(name, value);
-            } else {
-                LOGGER.debug("Ignoring filtered header {} with value {}", name, value);
             }
         } else {
             super.addHeader(name, value);
@@ -57,31 +85,118 @@ public class ClientCacheResponseWrapper extends HttpServletResponseWrapper {
     }
 
     @Override public void setHeader(String name, String value) {
-        if (name.startsWith("Force-")) {
+        if (ClientCacheHeaders.isForced(name)) {
             LOGGER.debug("Overriding header {} with value {}", name, value);
-            super.setHeader(name.substring("Force-".length()), value);
-        } else if (filteredHeadersNames.contains(name)) {
-            if (!readOnlyFilteredHeaders) {
-                LOGGER.debug("Setting filtered header {} with value {}", name, value);
-                super.setHeader(name, value);
-            } else {
-                LOGGER.debug("Ignoring filtered header {} with value {}", name, value);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), value);
+            super.setHeader(ClientCacheHeaders.unforce(name), value);
+        } else if (!ClientCacheHeaders.isFiltered(name)) {
+            super.setHeader(name, value);
+        } else if (acceptFiltered(name, value)) {
+            attribute(name, value);
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override public void addDateHeader(String name, long date) {
+        if (ClientCacheHeaders.isForced(name)) {
+            LOGGER.debug("Overriding header {} with date {}", name, date);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), date);
+            super.setDateHeader(ClientCacheHeaders.unforce(name), date);
+        } else if (ClientCacheHeaders.isFiltered(name)) {
+            if (acceptFiltered(name, date)) {
+                attribute(name, date);
+                super.setDateHeader(name, date);
             }
         } else {
-            super.setHeader(name, value);
+            super.addDateHeader(name, date);
+        }
+    }
+
+    @Override public void setDateHeader(String name, long date) {
+        if (ClientCacheHeaders.isForced(name)) {
+            LOGGER.debug("Overriding header {} with date {}", name, date);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), date);
+            super.setDateHeader(ClientCacheHeaders.unforce(name), date);
+        } else if (!ClientCacheHeaders.isFiltered(name)) {
+            super.setDateHeader(name, date);
+        } else if (acceptFiltered(name, date)) {
+            attribute(name, date);
+            super.setDateHeader(name, date);
+        }
+    }
+
+    @Override public void addIntHeader(String name, int value) {
+        if (ClientCacheHeaders.isForced(name)) {
+            LOGGER.debug("Overriding header {} with value {}", name, value);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), value);
+            super.setIntHeader(ClientCacheHeaders.unforce(name), value);
+        } else if (ClientCacheHeaders.isFiltered(name)) {
+            if (acceptFiltered(name, value)) {
+                attribute(name, value);
+                super.setIntHeader(name, value);
+            }
+        } else {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override public void setIntHeader(String name, int value) {
+        if (ClientCacheHeaders.isForced(name)) {
+            LOGGER.debug("Overriding header {} with value {}", name, value);
+            forced = true;
+            attribute(ClientCacheHeaders.unforce(name), value);
+            super.setIntHeader(ClientCacheHeaders.unforce(name), value);
+        } else if (!ClientCacheHeaders.isFiltered(name)) {
+            super.setIntHeader(name, value);
+        } else if (acceptFiltered(name, value)) {
+            attribute(name, value);
+            super.setIntHeader(name, value);
         }
     }
 
     @Override public void reset() {
-        Map<String, String> readOnlyHeaders = new HashMap<>();
+        String[] readOnlyValues = null;
         if (readOnlyFilteredHeaders) {
-            filteredHeadersNames.stream().filter(super::containsHeader)
-                    .map(name -> Map.entry(name, super.getHeader(name)))
-                    .forEach(entry -> readOnlyHeaders.put(entry.getKey(), entry.getValue()));
+            readOnlyValues = new String[ClientCacheHeaders.FILTERED_HEADERS.size()];
+            for (int i = 0; i < readOnlyValues.length; i++) {
+                readOnlyValues[i] = super.getHeader(ClientCacheHeaders.FILTERED_HEADERS.get(i));
+            }
         }
         super.reset();
+        if (readOnlyValues != null) {
+            for (int i = 0; i < readOnlyValues.length; i++) {
+                if (readOnlyValues[i] != null) {
+                    super.setHeader(ClientCacheHeaders.FILTERED_HEADERS.get(i), readOnlyValues[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Attribute the change of a cache header to its caller if the value actually changes, a date value is always a change.
+     */
+    private void attribute(String name, Object value) {
+        if (attribution != null) {
+            String updated = String.valueOf(value);
+            if (!updated.equals(super.getHeader(name))) {
+                attribution.record(urlPattern, uri, name, updated);
+            }
+        }
+    }
+
+    /**
+     * Filtered headers always replace the previous value, they are ignored once read only.
+     */
+    private boolean acceptFiltered(String name, Object value) {
         if (readOnlyFilteredHeaders) {
-            readOnlyHeaders.forEach(super::setHeader);
+            LOGGER.debug("Ignoring filtered header {} with value {}", name, value);
+            return false;
         }
+        LOGGER.debug("Setting filtered header {} with value {}", name, value);
+        return true;
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.filter;
+
+import org.apache.http.HttpHeaders;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Request wrapper hiding the If-None-Match header from the chain, so that a response captured for the response cache is always
+ * a complete one. The conditional request is then answered from the stored response.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheUnconditionalRequestWrapper extends HttpServletRequestWrapper {
+
+    /**
+     * @param request the conditional request
+     */
+    public ClientCacheUnconditionalRequestWrapper(HttpServletRequest request) {
+        super(request);
+    }
+
+    @Override public String getHeader(String name) {
+        return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? null : super.getHeader(name);
+    }
+
+    @Override public Enumeration<String> getHeaders(String name) {
+        return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+    }
+
+    @Override public Enumeration<String> getHeaderNames() {
+        Enumeration<String> headerNames = super.getHeaderNames();
+        if (headerNames == null) {
+            return null;
+        }
+        List<String> names = Collections.list(headerNames);
+        names.removeIf(HttpHeaders.IF_NONE_MATCH::equalsIgnoreCase);
+        return Collections.enumeration(names);
+    }
+}
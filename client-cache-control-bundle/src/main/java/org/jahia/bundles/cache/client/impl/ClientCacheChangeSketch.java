@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded memory history of the changes of URLs, used to compute the TTL of the adaptive template.
+ * A count-min sketch holds the number of changes of each URL, halved every decay period so that old changes weigh less,
+ * along with the time of the last change in each cell. The counts are halved lazily, by the first record or read after a decay
+ * period ends, once for each period elapsed since the previous decay. A URL is read as the minimum over its cells: hash collisions can
+ * only make a URL look more often or more recently changed than it is, giving it a shorter TTL, never a longer one.
+ * Memory is fixed by the width, whatever the number of URLs: 4 rows of an int count and an int timestamp per cell.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheChangeSketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+    // Part of the time since the last change used as TTL, like the HTTP heuristic freshness of 10% of the Last-Modified age
+    private static final int AGE_FRACTION = 10;
+    private static final long MIN_DECAY_PERIOD = 1000;
+
+    private final int width;
+    private final int mask;
+    private final long decayPeriod;
+    private final long origin;
+    private final AtomicIntegerArray counts;
+    private final AtomicIntegerArray changes;
+    private final AtomicLong nextDecay;
+
+    /**
+     * @param width the number of cells per row, rounded up to a power of two
+     * @param decayPeriod the period in milliseconds after which the change counts are halved
+     */
+    public ClientCacheChangeSketch(int width, long decayPeriod) {
+        this(width, decayPeriod, System.currentTimeMillis());
+    }
+
+    /**
+     * @param width the number of cells per row, rounded up to a power of two
+     * @param decayPeriod the period in milliseconds after which the change counts are halved
+     * @param origin the time the history starts at, URLs never changed are considered changed at that time
+     */
+    public ClientCacheChangeSketch(int width, long decayPeriod, long origin) {
+        this.width = roundWidth(width);
+        this.mask = this.width - 1;
+        this.decayPeriod = Math.max(MIN_DECAY_PERIOD, decayPeriod);
+        this.origin = origin;
+        this.counts = new AtomicIntegerArray(this.width * DEPTH);
+        this.changes = new AtomicIntegerArray(this.width * DEPTH);
+        this.nextDecay = new AtomicLong(origin + this.decayPeriod);
+    }
+
+    private static int roundWidth(int width) {
+        return Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+    }
+
+    /**
+     * @return true if the sketch has been created with the given width and decay period, so that it can be kept on a
+     * configuration update
+     */
+    public boolean hasSize(int width, long decayPeriod) {
+        return this.width == roundWidth(width) && this.decayPeriod == Math.max(MIN_DECAY_PERIOD, decayPeriod);
+    }
+
+    /**
+     * Record a change of a URL.
+     *
+     * @param key the URL
+     * @param now the change time
+     */
+    public void record(String key, long now) {
+        decay(now);
+        int time = toSeconds(now);
+        int hash = key.hashCode();
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            counts.incrementAndGet(index);
+            changes.accumulateAndGet(index, time, Math::max);
+        }
+    }
+
+    /**
+     * @return the decayed number of changes of the URL, possibly overestimated
+     */
+    public int getCount(String key) {
+        return getCount(key, System.currentTimeMillis());
+    }
+
+    /**
+     * @param key the URL
+     * @param now the current time
+     * @return the decayed number of changes of the URL, possibly overestimated
+     */
+    public int getCount(String key, long now) {
+        decay(now);
+        int hash = key.hashCode();
+        int count = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            count = Math.min(count, counts.get(index(hash, row)));
+        }
+        return count;
+    }
+
+    /**
+     * @return the time of the last change of the URL, possibly more recent than the actual one, or the origin if the URL never
+     * changed
+     */
+    public long getLastChange(String key) {
+        int hash = key.hashCode();
+        int time = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            time = Math.min(time, changes.get(index(hash, row)));
+        }
+        return time == 0 ? origin : origin + (time - 1) * 1000L;
+    }
+
+    /**
+     * The TTL is a tenth of the shortest of the time since the last change and the mean interval between changes, the latter
+     * being roughly the decay period divided by the decayed changes count.
+     *
+     * @param key the URL
+     * @param now the current time
+     * @return the estimated TTL of the URL in seconds, not bounded
+     */
+    public long estimateTtl(String key, long now) {
+        long age = Math.max(0, now - getLastChange(key));
+        int count = getCount(key, now);
+        long interval = count > 0 ? decayPeriod / count : Long.MAX_VALUE;
+        return Math.min(age, interval) / AGE_FRACTION / 1000;
+    }
+
+    /**
+     * Halve the counts once for each decay period elapsed, counts are cleared after 31 periods.
+     */
+    private void decay(long now) {
+        long next = nextDecay.get();
+        if (now < next) {
+            return;
+        }
+        long periods = 1 + (now - next) / decayPeriod;
+        if (!nextDecay.compareAndSet(next, next + periods * decayPeriod)) {
+            return;
+        }
+        int shift = (int) Math.min(Integer.SIZE - 1, periods);
+        for (int i = 0; i < counts.length(); i++) {
+            counts.updateAndGet(i, count -> count >>> shift);
+        }
+    }
+
+    private int toSeconds(long time) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, time - origin) / 1000 + 1);
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) & (DEPTH - 1)];
+        h ^= h >>> 15;
+        h *= 0x2C1B3C6D;
+        h ^= h >>> 12;
+        return row * width + (h & mask);
+    }
+}
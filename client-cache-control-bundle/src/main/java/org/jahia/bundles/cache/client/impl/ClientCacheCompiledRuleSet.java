@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the sorted rules, compiled for request resolution.
+ * A new snapshot is published by the ruleset factory on each update with an increasing generation number, readers never see
+ * a partially updated ruleset.
+ * Rules are partitioned by HTTP method: an array indexed by standard method and an overflow map for non-standard ones, so a
+ * request only scans the rules that can apply to its method. In each partition, rules with a literal path prefix are indexed in a path trie so that only
+ * the candidates for a request URI get evaluated, other regex rules are resolved by a single ClientCacheFilterRuleMatcher.
+ * Candidates are evaluated with the dedicated matcher of their match type (see ClientCacheFilterUrlMatcher).
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheCompiledRuleSet {
+
+    public static final ClientCacheCompiledRuleSet EMPTY = new ClientCacheCompiledRuleSet(0, new ClientCacheFilterRule[0],
+            new Partition[ClientCacheHttpMethod.count()], Collections.emptyMap());
+
+    private final long generation;
+    private final ClientCacheFilterRule[] rules;
+    private final List<ClientCacheFilterRule> rulesList;
+    private final Partition[] partitions;
+    private final Map<String, Partition> overflowPartitions;
+
+    private ClientCacheCompiledRuleSet(long generation, ClientCacheFilterRule[] rules, Partition[] partitions, Map<String, Partition> overflowPartitions) {
+        this.generation = generation;
+        this.rules = rules;
+        this.rulesList = List.of(rules);
+        this.partitions = partitions;
+        this.overflowPartitions = overflowPartitions;
+    }
+
+    /**
+     * @param rules the rules sorted by priority
+     * @return the compiled ruleset
+     */
+    public static ClientCacheCompiledRuleSet compile(List<ClientCacheFilterRule> rules) {
+        return compile(0, rules);
+    }
+
+    /**
+     * @param generation the generation number of the snapshot
+     * @param rules the rules sorted by priority
+     * @return the compiled ruleset
+     */
+    public static ClientCacheCompiledRuleSet compile(long generation, List<ClientCacheFilterRule> rules) {
+        Partition[] partitions = new Partition[ClientCacheHttpMethod.count()];
+        for (int m = 0; m < partitions.length; m++) {
+            int mask = ClientCacheHttpMethod.get(m).mask();
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < rules.size(); i++) {
+                if ((rules.get(i).getMethodsMask() & mask) != 0) {
+                    indexes.add(i);
+                }
+            }
+            if (!indexes.isEmpty()) {
+                partitions[m] = new Partition(rules, indexes);
+            }
+        }
+        Map<String, List<Integer>> byOverflowMethod = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            for (String method : rules.get(i).getMethods()) {
+                if (ClientCacheHttpMethod.of(method) == null) {
+                    byOverflowMethod.computeIfAbsent(method, k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        Map<String, Partition> overflowPartitions = new HashMap<>();
+        byOverflowMethod.forEach((method, indexes) -> overflowPartitions.put(method, new Partition(rules, indexes)));
+        return new ClientCacheCompiledRuleSet(generation, rules.toArray(new ClientCacheFilterRule[0]), partitions, overflowPartitions);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the immutable list of rules sorted by priority
+     */
+    public List<ClientCacheFilterRule> getRules() {
+        return rulesList;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @param method the request method
+     * @param uri the request uri
+     * @return the first rule (by priority) matching the method and uri, or null if none
+     */
+    public ClientCacheFilterRule match(String method, String uri) {
+        int index = matchIndex(method, uri);
+        return index == ClientCacheFilterRuleMatcher.NO_MATCH ? null : rules[index];
+    }
+
+    /**
+     * @param method the request method
+     * @param uri the request uri, a ClientCacheMatchContext to bound the matching cost
+     * @return the index in the rules list of the first rule (by priority) matching the method and uri, or NO_MATCH if none
+     * @throws ClientCacheMatchBudgetExceededException if the uri is a ClientCacheMatchContext whose budget is exhausted
+     */
+    public int matchIndex(String method, CharSequence uri) {
+        ClientCacheHttpMethod standard = ClientCacheHttpMethod.of(method);
+        Partition partition = standard != null ? partitions[standard.ordinal()] : overflowPartitions.get(method);
+        if (partition == null) {
+            return ClientCacheFilterRuleMatcher.NO_MATCH;
+        }
+        return partition.match(uri);
+    }
+
+    public ClientCacheFilterRule getRule(int index) {
+        return rules[index];
+    }
+
+    private static final class Partition {
+
+        private static final int UNKNOWN = -2;
+
+        private final ClientCacheFilterRule[] rules;
+        private final int[] ruleIndexes;
+        private final ClientCacheFilterRulePathIndex index;
+        private final ClientCacheFilterRuleMatcher fallback;
+        private final int[] fallbackRules;
+        private final long[] unindexed;
+
+        Partition(List<ClientCacheFilterRule> allRules, List<Integer> indexes) {
+            this.rules = indexes.stream().map(allRules::get).toArray(ClientCacheFilterRule[]::new);
+            this.ruleIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+            List<ClientCacheFilterRule> rules = List.of(this.rules);
+            boolean[] indexed = new boolean[this.rules.length];
+            this.index = ClientCacheFilterRulePathIndex.build(rules.stream().map(ClientCacheFilterRule::getUrlRegexp).collect(Collectors.toList()), indexed);
+            List<ClientCacheFilterRule> fallbackList = new ArrayList<>();
+            List<Integer> fallbackIndexes = new ArrayList<>();
+            this.unindexed = new long[(this.rules.length + 63) >>> 6];
+            for (int i = 0; i < indexed.length; i++) {
+                if (indexed[i]) {
+                    continue;
+                }
+                ClientCacheFilterUrlMatcher matcher = this.rules[i].getUrlMatcher();
+                if (matcher == null || matcher.usesRegexp()) {
+                    fallbackList.add(this.rules[i]);
+                    fallbackIndexes.add(i);
+                } else {
+                    // Rules with a dedicated matcher are cheaper to evaluate alone than merged in the fallback regexp
+                    unindexed[i >>> 6] |= 1L << i;
+                }
+            }
+            this.fallback = new ClientCacheFilterRuleMatcher(fallbackList);
+            this.fallbackRules = fallbackIndexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int match(CharSequence uri) {
+            int index = matchIndex(uri);
+            return index == ClientCacheFilterRuleMatcher.NO_MATCH ? index : ruleIndexes[index];
+        }
+
+        /**
+         * Evaluate indexed candidates in priority order, the fallback regex rules (that have no literal prefix) are evaluated lazily
+         * in a single pass as soon as a candidate with a lower priority than the first fallback rule is reached.
+         */
+        private int matchIndex(CharSequence uri) {
+            long[] candidates = index.candidates(uri);
+            int fallbackMatch = UNKNOWN;
+            for (int word = 0; word < candidates.length; word++) {
+                long bits = candidates[word] | unindexed[word];
+                while (bits != 0) {
+                    int candidate = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (fallbackRules.length > 0 && fallbackRules[0] < candidate) {
+                        if (fallbackMatch == UNKNOWN) {
+                            fallbackMatch = matchFallback(uri);
+                        }
+                        if (fallbackMatch != ClientCacheFilterRuleMatcher.NO_MATCH && fallbackMatch < candidate) {
+                            return fallbackMatch;
+                        }
+                    }
+                    countEvaluated(uri, 1);
+                    if (rules[candidate].matches(uri)) {
+                        return candidate;
+                    }
+                }
+            }
+            return fallbackMatch == UNKNOWN ? matchFallback(uri) : fallbackMatch;
+        }
+
+        private static void countEvaluated(CharSequence uri, int count) {
+            if (uri instanceof ClientCacheMatchContext) {
+                ((ClientCacheMatchContext) uri).addEvaluatedRules(count);
+            }
+        }
+
+        private int matchFallback(CharSequence uri) {
+            countEvaluated(uri, fallbackRules.length);
+            int match = fallback.match(uri);
+            return match == ClientCacheFilterRuleMatcher.NO_MATCH ? match : fallbackRules[match];
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheDecision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Fixed size ring of the Cache-Control decisions of sampled requests, replacing the debug logs of the filter for live inspection.
+ * Requests are sampled at random, one out of the sample rate, a request not sampled only pays a random number draw. Recording a
+ * decision claims a slot with a single atomic increment and never blocks, the oldest decisions are overwritten. Readers get
+ * a snapshot that may miss a decision being written.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheDecisionTrace {
+
+    private final AtomicReferenceArray<ClientCacheDecision> ring;
+    private final int mask;
+    private final int size;
+    private final int sampleRate;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param size the number of decisions kept, rounded up to a power of two
+     * @param sampleRate one out of sampleRate requests is recorded
+     */
+    public ClientCacheDecisionTrace(int size, int sampleRate) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.size = size;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * @return true if the trace has been built with the given size and sample rate
+     */
+    public boolean hasSize(int size, int sampleRate) {
+        return this.size == size && this.sampleRate == Math.max(1, sampleRate);
+    }
+
+    /**
+     * @return true if the current request must be recorded
+     */
+    public boolean sample() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * @param method the request method
+     * @param uri the request URI
+     * @param rule the matched rule, null if none
+     * @param presetValue the Cache-Control value preset by the filter, null if none
+     * @param finalValue the Cache-Control value of the response, null if none
+     * @param forced true if a cache header was applied using the Force- prefix
+     * @param elapsed the request processing time in nanoseconds
+     */
+    public void record(String method, String uri, ClientCacheFilterRule rule, String presetValue, String finalValue, boolean forced, long elapsed) {
+        ClientCacheDecision decision = new ClientCacheDecision(System.currentTimeMillis(), method, uri, rule != null ? rule.getKey() : null,
+                rule != null ? rule.getPriority() : 0, presetValue, finalValue, forced, elapsed);
+        ring.lazySet((int) (cursor.getAndIncrement() & mask), decision);
+    }
+
+    /**
+     * @param filter the pattern the request URI must match, null for all decisions
+     * @return the recorded decisions, most recent first
+     */
+    public List<ClientCacheDecision> list(Pattern filter) {
+        long last = cursor.get();
+        List<ClientCacheDecision> decisions = new ArrayList<>();
+        for (long i = last - 1; i >= 0 && i >= last - ring.length(); i--) {
+            ClientCacheDecision decision = ring.get((int) (i & mask));
+            if (decision != null && (filter == null || filter.matcher(decision.getUri()).find())) {
+                decisions.add(decision);
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * @return the number of decisions recorded since the trace was created
+     */
+    public long getRecorded() {
+        return cursor.get();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+/**
+ * Type of URL matching of a rule, given by an optional marker at the beginning of the rule URL part
+ * (like <code>prefix:/files/</code>). Rules without marker use a regular expression.
+ *
+ * @author Jerome Blanchard
+ */
+public enum ClientCacheFilterMatchType {
+
+    REGEX("regex"),
+    PREFIX("prefix"),
+    EXACT("exact"),
+    GLOB("glob");
+
+    private static final char MARKER_SEPARATOR = ':';
+
+    private final String marker;
+
+    ClientCacheFilterMatchType(String marker) {
+        this.marker = marker;
+    }
+
+    public String getMarker() {
+        return marker;
+    }
+
+    /**
+     * @param url the rule URL part
+     * @return the match type given by the marker of the URL part, REGEX if there is no marker
+     */
+    public static ClientCacheFilterMatchType of(String url) {
+        int separator = url.indexOf(MARKER_SEPARATOR);
+        if (separator > 0) {
+            for (ClientCacheFilterMatchType type : values()) {
+                if (type.marker.length() == separator && url.startsWith(type.marker)) {
+                    return type;
+                }
+            }
+        }
+        return REGEX;
+    }
+
+    /**
+     * @param url the rule URL part
+     * @return the URL expression without the match type marker
+     */
+    public String strip(String url) {
+        return url.startsWith(marker) && url.length() > marker.length() && url.charAt(marker.length()) == MARKER_SEPARATOR ?
+                url.substring(marker.length() + 1) : url;
+    }
+}
@@ -20,6 +20,7 @@ import org.jahia.bundles.cache.client.api.ClientCacheRule;
 
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 /**
@@ -33,9 +34,12 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
     private float priority = 0;
     private String ruleSetKey;
     private Set<String> methods;
+    private int methodsMask;
     private String urlRegexp;
     private Pattern urlPattern;
+    private ClientCacheFilterUrlMatcher urlMatcher;
     private String header;
+    private String headerTemplate;
 
     public ClientCacheFilterRule() {
         super();
@@ -64,6 +68,22 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
 
     public void setMethods(Set<String> methods) {
         this.methods = methods;
+        this.methodsMask = 0;
+        if (methods != null) {
+            for (String method : methods) {
+                ClientCacheHttpMethod standard = ClientCacheHttpMethod.of(method);
+                if (standard != null) {
+                    this.methodsMask |= standard.mask();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the bitmask of the standard methods of the rule (see ClientCacheHttpMethod)
+     */
+    public int getMethodsMask() {
+        return methodsMask;
     }
 
     @Override public String getUrlRegexp() {
@@ -82,6 +102,35 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
         this.urlPattern = urlPattern;
     }
 
+    public ClientCacheFilterUrlMatcher getUrlMatcher() {
+        return urlMatcher;
+    }
+
+    /**
+     * Set the URL matcher, the URL regexp and pattern are set to the matcher equivalent regexp.
+     */
+    public void setUrlMatcher(ClientCacheFilterUrlMatcher urlMatcher) {
+        this.urlMatcher = urlMatcher;
+        this.urlRegexp = urlMatcher.getRegexp();
+        this.urlPattern = urlMatcher.getPattern();
+    }
+
+    @Override public String getMatchType() {
+        return urlMatcher != null ? urlMatcher.getType().getMarker() : super.getMatchType();
+    }
+
+    @Override public String getUrlExpression() {
+        return urlMatcher != null ? urlMatcher.getExpression() : urlRegexp;
+    }
+
+    /**
+     * @param uri the request URI
+     * @return true if the URI matches the rule URL, using the dedicated matcher of the rule match type
+     */
+    public boolean matches(CharSequence uri) {
+        return urlMatcher != null ? urlMatcher.matches(uri) : urlPattern.matcher(uri).matches();
+    }
+
     @Override
     public String getHeader() {
         return header;
@@ -89,22 +138,23 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
 
     public void setHeader(String header) {
         this.header = header;
+        this.headerTemplate = header != null && header.startsWith(TEMPLATE_PREFIX) ? header.substring(TEMPLATE_PREFIX.length()) : null;
     }
 
     public String getHeaderTemplate() {
-        return isHeaderTemplate()?getHeaderTemplateName():null;
+        return headerTemplate;
     }
 
     public String getHeaderValue() {
-        return isHeaderTemplate()?null:header;
-    }
-
-    private boolean isHeaderTemplate() {
-        return header.startsWith(TEMPLATE_PREFIX);
+        return headerTemplate == null ? header : null;
     }
 
-    private String getHeaderTemplateName() {
-        return header.substring(TEMPLATE_PREFIX.length());
+    /**
+     * @return the rule definition in the ruleset format (priority;methods;url;header), identifying the rule
+     */
+    public String getKey() {
+        return priority + RULE_PART_SEPARATOR + (methods == null ? "" : String.join("|", new TreeSet<>(methods))) + RULE_PART_SEPARATOR
+                + (urlMatcher != null ? urlMatcher.toString() : urlRegexp) + RULE_PART_SEPARATOR + header;
     }
 
     public boolean isValid() {
@@ -112,8 +162,8 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
     }
 
     @Override public String toString() {
-        return "RuleEntry{" + "priority='" + priority + '\'' + ", methods=" + methods + ", urlPattern=" + urlPattern
-                + ", header='" + header + '\'' + '}';
+        return "RuleEntry{" + "priority='" + priority + '\'' + ", methods=" + methods + ", matchType=" + getMatchType()
+                + ", urlPattern=" + urlPattern + ", header='" + header + '\'' + '}';
     }
 
     @Override public boolean equals(Object o) {
@@ -138,8 +188,7 @@ public class ClientCacheFilterRule extends ClientCacheRule implements Comparable
         }
         entry.setPriority(Float.parseFloat(parts[0]));
         entry.setMethods(Set.of(StringUtils.split(parts[1], '|')));
-        entry.setUrlRegexp(parts[2]);
-        entry.setUrlPattern(Pattern.compile(entry.getUrlRegexp()));
+        entry.setUrlMatcher(ClientCacheFilterUrlMatcher.parse(parts[2]));
         entry.setHeader(parts[3]);
         return entry;
     }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Static analysis of rule regexps to detect shapes that lead to catastrophic backtracking.
+ * A group containing an unbounded quantifier that is itself repeated by an unbounded quantifier, like <code>(a+)+</code> or
+ * <code>(?:/.*)*</code>, can take an exponential time on a non matching input and is rejected.
+ *
+ * @author Jerome Blanchard
+ */
+public final class ClientCacheFilterRuleAnalyzer {
+
+    private ClientCacheFilterRuleAnalyzer() {
+    }
+
+    /**
+     * @param regexp the regexp to analyze
+     * @return true if the regexp contains a nested unbounded quantifier
+     */
+    public static boolean hasNestedQuantifier(String regexp) {
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        boolean[] current = new boolean[1];
+        int i = 0;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipCharClass(regexp, i);
+                continue;
+            }
+            if (c == '(') {
+                groups.push(current);
+                current = new boolean[1];
+                i = skipGroupConstruct(regexp, i + 1);
+                continue;
+            }
+            if (c == ')') {
+                boolean repeatedContent = current[0];
+                current = groups.isEmpty() ? new boolean[1] : groups.pop();
+                int quantifierEnd = unboundedQuantifierEnd(regexp, i + 1);
+                if (quantifierEnd > 0) {
+                    if (repeatedContent) {
+                        return true;
+                    }
+                    current[0] = true;
+                    i = quantifierEnd;
+                    continue;
+                }
+                current[0] |= repeatedContent;
+                i++;
+                continue;
+            }
+            int quantifierEnd = unboundedQuantifierEnd(regexp, i);
+            if (quantifierEnd > 0) {
+                current[0] = true;
+                i = quantifierEnd;
+                continue;
+            }
+            i++;
+        }
+        return false;
+    }
+
+    private static int skipCharClass(String regexp, int start) {
+        int i = start + 1;
+        if (i < regexp.length() && regexp.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regexp.length() && regexp.charAt(i) == ']') {
+            i++;
+        }
+        while (i < regexp.length() && regexp.charAt(i) != ']') {
+            i += regexp.charAt(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+
+    private static int skipGroupConstruct(String regexp, int start) {
+        if (start >= regexp.length() || regexp.charAt(start) != '?') {
+            return start;
+        }
+        int i = start + 1;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            if (c == ':' || c == '=' || c == '!' || c == '>' || c == ')') {
+                return c == ')' ? i : i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the unbounded quantifier (*, +, {n,}) starting at the given index, or -1 if none
+     */
+    private static int unboundedQuantifierEnd(String regexp, int start) {
+        if (start >= regexp.length()) {
+            return -1;
+        }
+        char c = regexp.charAt(start);
+        if (c == '*' || c == '+') {
+            return start + 1;
+        }
+        if (c == '{') {
+            int end = regexp.indexOf('}', start);
+            if (end > 0 && regexp.charAt(end - 1) == ',') {
+                return end + 1;
+            }
+        }
+        return -1;
+    }
+}
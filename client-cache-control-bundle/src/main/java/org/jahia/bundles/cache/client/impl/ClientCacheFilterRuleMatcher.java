@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Combined matcher for an ordered list of rules.
+ * All rules regexps are merged into a single alternation pattern, each alternative being followed by an empty marker group.
+ * The regexp engine tries alternatives in order, so the first marker group that participates in the match gives the
+ * index of the first matching rule (the one with the lowest priority number) in a single matching operation.
+ * Rules that cannot be safely merged (back references, named groups) are kept in their own segment, preserving the rules order.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheFilterRuleMatcher {
+
+    public static final int NO_MATCH = -1;
+
+    private static final Pattern UNMERGEABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    private final Segment[] segments;
+
+    public ClientCacheFilterRuleMatcher(List<ClientCacheFilterRule> rules) {
+        List<Segment> built = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (!isMergeable(rules.get(i).getUrlRegexp())) {
+                if (start < i) {
+                    built.add(Segment.merge(rules, start, i));
+                }
+                built.add(Segment.single(rules.get(i), i));
+                start = i + 1;
+            }
+        }
+        if (start < rules.size()) {
+            built.add(Segment.merge(rules, start, rules.size()));
+        }
+        this.segments = built.toArray(new Segment[0]);
+    }
+
+    /**
+     * @param uri the request URI
+     * @return the index (in the list given at construction) of the first rule matching the uri or NO_MATCH
+     */
+    public int match(CharSequence uri) {
+        for (Segment segment : segments) {
+            int index = segment.match(uri);
+            if (index != NO_MATCH) {
+                return index;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    static boolean isMergeable(String regexp) {
+        return !UNMERGEABLE.matcher(regexp).find();
+    }
+
+    private static final class Segment {
+
+        private final Pattern pattern;
+        private final int[] markers;
+        private final int offset;
+
+        private Segment(Pattern pattern, int[] markers, int offset) {
+            this.pattern = pattern;
+            this.markers = markers;
+            this.offset = offset;
+        }
+
+        static Segment single(ClientCacheFilterRule rule, int index) {
+            return new Segment(rule.getUrlPattern(), null, index);
+        }
+
+        static Segment merge(List<ClientCacheFilterRule> rules, int from, int to) {
+            if (to - from == 1) {
+                return single(rules.get(from), from);
+            }
+            StringBuilder combined = new StringBuilder();
+            int[] markers = new int[to - from];
+            int group = 0;
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(rules.get(i).getUrlRegexp()).append(")()");
+                group += rules.get(i).getUrlPattern().matcher("").groupCount() + 1;
+                markers[i - from] = group;
+            }
+            return new Segment(Pattern.compile(combined.toString()), markers, from);
+        }
+
+        int match(CharSequence uri) {
+            Matcher matcher = pattern.matcher(uri);
+            if (!matcher.matches()) {
+                return NO_MATCH;
+            }
+            if (markers == null) {
+                return offset;
+            }
+            for (int i = 0; i < markers.length; i++) {
+                if (matcher.start(markers[i]) != -1) {
+                    return offset + i;
+                }
+            }
+            return NO_MATCH;
+        }
+    }
+
+}
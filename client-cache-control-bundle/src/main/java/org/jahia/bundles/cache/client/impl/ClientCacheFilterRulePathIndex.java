@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path segment trie built from the literal path prefix of each rule regexp.
+ * Walking the trie with a request URI gives the candidate rules whose literal prefix is compatible with the URI, only those
+ * rules need a full regexp evaluation. Rules without any usable literal prefix are not indexed and must be evaluated as a
+ * fallback by the caller.
+ * Two tries are maintained: one for literals anchored at the beginning of the URI and one for literals preceded by the
+ * optional context segment <code>(?:/[^/]+)?</code> used in most rules.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheFilterRulePathIndex {
+
+    public static final String CONTEXT_PREFIX = "(?:/[^/]+)?";
+
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*+{";
+
+    private final Node root;
+    private final Node contextRoot;
+    private final int size;
+
+    private ClientCacheFilterRulePathIndex(Node root, Node contextRoot, int size) {
+        this.root = root;
+        this.contextRoot = contextRoot;
+        this.size = size;
+    }
+
+    /**
+     * Build the index for an ordered list of regexps.
+     *
+     * @param regexps the regexps, the index of each regexp in the list is used as rule index
+     * @param indexed filled with true for each regexp that has been indexed, false for the ones that must be evaluated as fallback
+     * @return the index
+     */
+    public static ClientCacheFilterRulePathIndex build(List<String> regexps, boolean[] indexed) {
+        NodeBuilder root = new NodeBuilder();
+        NodeBuilder contextRoot = new NodeBuilder();
+        for (int i = 0; i < regexps.size(); i++) {
+            String regexp = regexps.get(i);
+            boolean context = regexp.startsWith(CONTEXT_PREFIX);
+            String literal = extractLiteralPrefix(context ? regexp.substring(CONTEXT_PREFIX.length()) : regexp);
+            indexed[i] = literal != null;
+            if (literal != null) {
+                (context ? contextRoot : root).add(literal, i);
+            }
+        }
+        return new ClientCacheFilterRulePathIndex(root.build(), contextRoot.build(), regexps.size());
+    }
+
+    /**
+     * Extract the literal path that any URI matched by the given regexp must start with.
+     *
+     * @param regexp the regexp (without context prefix)
+     * @return the literal prefix starting with a slash, or null if the regexp has no usable literal prefix
+     */
+    static String extractLiteralPrefix(String regexp) {
+        if (hasTopLevelAlternation(regexp)) {
+            return null;
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regexp.length() || Character.isLetterOrDigit(regexp.charAt(i + 1))) {
+                    break;
+                }
+                c = regexp.charAt(i + 1);
+                i += 2;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                break;
+            } else {
+                i++;
+            }
+            if (i < regexp.length() && QUANTIFIERS.indexOf(regexp.charAt(i)) >= 0) {
+                // The last character is optional or repeated, it is not part of the literal prefix
+                break;
+            }
+            literal.append(c);
+        }
+        if (literal.length() == 0 || literal.charAt(0) != '/') {
+            return null;
+        }
+        return literal.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regexp) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regexp.length(); i++) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param uri the request URI
+     * @return a bitmap of the candidate rule indexes
+     */
+    public long[] candidates(CharSequence uri) {
+        long[] candidates = new long[(size + 63) >>> 6];
+        walk(root, uri, 0, candidates);
+        walk(contextRoot, uri, 0, candidates);
+        if (uri.length() > 1 && uri.charAt(0) == '/' && uri.charAt(1) != '/') {
+            int next = indexOf(uri, '/', 1);
+            if (next > 0) {
+                walk(contextRoot, uri, next, candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private static void walk(Node node, CharSequence uri, int offset, long[] candidates) {
+        if (offset >= uri.length() || uri.charAt(offset) != '/') {
+            return;
+        }
+        int position = offset;
+        while (node != null) {
+            int start = position + 1;
+            int end = indexOf(uri, '/', start);
+            if (end < 0) {
+                node.collect(uri, start, uri.length(), candidates);
+                return;
+            }
+            node.collect(uri, start, end, candidates);
+            node = node.child(uri, start, end);
+            position = end;
+        }
+    }
+
+    private static int indexOf(CharSequence uri, char c, int from) {
+        for (int i = from; i < uri.length(); i++) {
+            if (uri.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(CharSequence value, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(String key, CharSequence value, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != value.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionStartsWith(CharSequence value, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (prefix.charAt(i) != value.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+
+        private final int[] rules;
+        private final String[] partials;
+        private final int[] partialRules;
+        private final String[] keys;
+        private final Node[] children;
+
+        Node(int[] rules, String[] partials, int[] partialRules, String[] keys, Node[] children) {
+            this.rules = rules;
+            this.partials = partials;
+            this.partialRules = partialRules;
+            this.keys = keys;
+            this.children = children;
+        }
+
+        /**
+         * Collect rules whose literal ends at this node, and the ones whose literal ends with a partial segment that prefixes the
+         * next uri segment.
+         */
+        void collect(CharSequence uri, int start, int end, long[] candidates) {
+            for (int rule : rules) {
+                candidates[rule >>> 6] |= 1L << rule;
+            }
+            for (int i = 0; i < partials.length; i++) {
+                if (regionStartsWith(uri, start, end, partials[i])) {
+                    candidates[partialRules[i] >>> 6] |= 1L << partialRules[i];
+                }
+            }
+        }
+
+        Node child(CharSequence uri, int start, int end) {
+            if (keys.length == 0) {
+                return null;
+            }
+            int mask = keys.length - 1;
+            for (int slot = hash(uri, start, end) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (regionEquals(keys[slot], uri, start, end)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class NodeBuilder {
+
+        private final List<Integer> rules = new ArrayList<>();
+        private final List<String> partials = new ArrayList<>();
+        private final List<Integer> partialRules = new ArrayList<>();
+        private final Map<String, NodeBuilder> children = new LinkedHashMap<>();
+
+        void add(String literal, int rule) {
+            // literal always starts with a slash
+            NodeBuilder node = this;
+            int start = 1;
+            int end;
+            while ((end = literal.indexOf('/', start)) >= 0) {
+                node = node.children.computeIfAbsent(literal.substring(start, end), k -> new NodeBuilder());
+                start = end + 1;
+            }
+            if (start < literal.length()) {
+                node.partials.add(literal.substring(start));
+                node.partialRules.add(rule);
+            } else {
+                node.rules.add(rule);
+            }
+        }
+
+        Node build() {
+            int capacity = 0;
+            if (!children.isEmpty()) {
+                capacity = Integer.highestOneBit(children.size() * 2 - 1) << 1;
+            }
+            String[] keys = new String[capacity];
+            Node[] nodes = new Node[capacity];
+            children.forEach((key, child) -> {
+                int slot = hash(key, 0, key.length()) & (keys.length - 1);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = key;
+                nodes[slot] = child.build();
+            });
+            return new Node(rules.stream().mapToInt(Integer::intValue).toArray(), partials.toArray(new String[0]),
+                    partialRules.stream().mapToInt(Integer::intValue).toArray(), keys, nodes);
+        }
+    }
+}
@@ -69,11 +69,14 @@ public class ClientCacheFilterRuleSet {
     }
 
     public void addRule(ClientCacheFilterRule rule) {
-        if (rule.isValid()) {
+        if (!rule.isValid()) {
+            LOGGER.error("Invalid rule: {}", rule);
+        } else if ((rule.getUrlMatcher() == null || rule.getUrlMatcher().usesRegexp())
+                && ClientCacheFilterRuleAnalyzer.hasNestedQuantifier(rule.getUrlRegexp())) {
+            LOGGER.error("Rejected rule, nested quantifiers in regexp may lead to catastrophic backtracking: {}", rule);
+        } else {
             rule.setRuleSetKey(this.key);
             this.rules.add(rule);
-        } else {
-            LOGGER.error("Invalid rule: {}", rule);
         }
     }
 
@@ -21,9 +21,11 @@ import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Dictionary;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Jerome Blanchard
@@ -33,7 +35,9 @@ public class ClientCacheFilterRuleSetFactory implements ManagedServiceFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheFilterRuleSetFactory.class);
 
-    private final List<ClientCacheFilterRule> rules = new LinkedList<>();
+    private final Map<String, ClientCacheFilterRuleSet> rulesets = new LinkedHashMap<>();
+    private long generation = 0;
+    private volatile ClientCacheCompiledRuleSet snapshot = ClientCacheCompiledRuleSet.EMPTY;
 
     public ClientCacheFilterRuleSetFactory() {
         LOGGER.debug("Creating Client Cache Control RuleSet Factory");
@@ -45,29 +49,46 @@ public class ClientCacheFilterRuleSetFactory implements ManagedServiceFactory {
     }
 
     @Override
-    public void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
+    public synchronized void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
         LOGGER.info("Updating ruleset with key: {}, config size: {}", pid, properties.size());
         ClientCacheFilterRuleSet ruleset = ClientCacheFilterRuleSet.build(pid, properties);
-        this.rules.removeIf(r -> r.getRuleSetKey().equals(ruleset.getKey()));
-        this.rules.addAll(ruleset.getRules());
-        this.sortRules();
+        this.rulesets.remove(ruleset.getKey());
+        this.rulesets.put(ruleset.getKey(), ruleset);
+        this.publishRules();
     }
 
     @Override
-    public void deleted(String pid) {
+    public synchronized void deleted(String pid) {
         LOGGER.info("Deleting Client Cache Control rule for pid: {}", pid);
-        this.rules.removeIf(r -> r.getRuleSetKey().equals(pid));
-        this.sortRules();
+        this.rulesets.remove(pid);
+        this.publishRules();
     }
 
-    private void sortRules() {
-        this.rules.sort(ClientCacheFilterRule::compareTo);
-        LOGGER.info("Current active rule's entries (sorted):");
-        this.rules.forEach(rule -> LOGGER.info("{}", rule));
+    /**
+     * Build a new sorted snapshot of all rulesets and publish it, readers keep using the previous snapshot until the new one is
+     * fully built.
+     */
+    private void publishRules() {
+        List<ClientCacheFilterRule> rules = new ArrayList<>();
+        this.rulesets.values().forEach(ruleset -> rules.addAll(ruleset.getRules()));
+        rules.sort(ClientCacheFilterRule::compareTo);
+        this.snapshot = ClientCacheCompiledRuleSet.compile(++this.generation, rules);
+        LOGGER.info("Current active rule's entries (sorted, generation {}):", this.generation);
+        rules.forEach(rule -> LOGGER.info("{}", rule));
     }
 
+    /**
+     * @return the immutable list of active rules sorted by priority
+     */
     public List<ClientCacheFilterRule> getRules() {
-        return this.rules;
+        return this.snapshot.getRules();
+    }
+
+    /**
+     * @return the current rules snapshot
+     */
+    public ClientCacheCompiledRuleSet getCompiledRules() {
+        return this.snapshot;
     }
 
 }
@@ -17,9 +17,20 @@ package org.jahia.bundles.cache.client.impl;
 
 import org.jahia.bundles.cache.client.api.ClientCacheTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Header template, parsed once into literal parts and %%name%% placeholders so that rendering is a single pass appending
+ * into a pre-sized builder. Parameter values are inserted as is (no regexp replacement involved).
+ * For templates with a single placeholder (like the custom template using the TTL of the rendered page), rendered values are
+ * memoized by parameter value.
+ * A template can also define the CDN facing headers Surrogate-Control and CDN-Cache-Control, parsed the same way.
+ *
  * @author Jerome Blanchard
  */
 public class ClientCacheFilterTemplate extends ClientCacheTemplate {
@@ -29,16 +40,53 @@ public class ClientCacheFilterTemplate extends ClientCacheTemplate {
     public static final String PUBLIC_MEDIUM = "public-medium";
     public static final String CUSTOM = "custom";
     public static final String IMMUTABLE = "immutable";
+    public static final String ADAPTIVE = "adaptive";
     public static final String DEFAULT = IMMUTABLE;
+    /**
+     * Templates whose intermediates cache durations are stretched when the origin is under pressure
+     */
+    public static final Set<String> STRETCHABLE = Set.of(PUBLIC, PUBLIC_MEDIUM, CUSTOM, ADAPTIVE);
+
+    public static final String PARAM_DELIMITER = "%%";
+    public static final String CONFIG_DELIMITER = "##";
+    public static final String ADAPTIVE_TTL_PARAM = "jahiaClientCacheAdaptiveTTL";
 
     public static final ClientCacheFilterTemplate EMPTY = new ClientCacheFilterTemplate("empty", "");
 
+    private static final int MAX_MEMOIZED_VALUES = 256;
+
     private final String name;
     private final String template;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalsLength;
+    private final boolean isPublic;
+    private final ClientCacheFilterTemplate surrogateControl;
+    private final ClientCacheFilterTemplate cdnCacheControl;
+    private final Map<String, String> memoized = new ConcurrentHashMap<>();
 
     public ClientCacheFilterTemplate(String name, String template) {
+        this(name, template, null, null);
+    }
+
+    /**
+     * @param name the template name
+     * @param template the Cache-Control value
+     * @param surrogateControl the Surrogate-Control value, null or empty if none
+     * @param cdnCacheControl the CDN-Cache-Control value, null or empty if none
+     */
+    public ClientCacheFilterTemplate(String name, String template, String surrogateControl, String cdnCacheControl) {
         this.name = name;
+        this.surrogateControl = surrogateControl == null || surrogateControl.isBlank() ? null : new ClientCacheFilterTemplate(name, surrogateControl);
+        this.cdnCacheControl = cdnCacheControl == null || cdnCacheControl.isBlank() ? null : new ClientCacheFilterTemplate(name, cdnCacheControl);
         this.template = template;
+        List<String> parsedLiterals = new ArrayList<>();
+        List<String> parsedPlaceholders = new ArrayList<>();
+        parse(template, PARAM_DELIMITER, parsedLiterals, parsedPlaceholders);
+        this.literals = parsedLiterals.toArray(new String[0]);
+        this.placeholders = parsedPlaceholders.toArray(new String[0]);
+        this.literalsLength = parsedLiterals.stream().mapToInt(String::length).sum();
+        this.isPublic = Arrays.stream(template.split(",")).anyMatch(directive -> directive.trim().equalsIgnoreCase(PUBLIC));
     }
 
     @Override public String getName() {
@@ -49,15 +97,150 @@ public class ClientCacheFilterTemplate extends ClientCacheTemplate {
         return template;
     }
 
+    @Override public String getSurrogateControl() {
+        return surrogateControl == null ? null : surrogateControl.getTemplate();
+    }
+
+    @Override public String getCdnCacheControl() {
+        return cdnCacheControl == null ? null : cdnCacheControl.getTemplate();
+    }
+
+    /**
+     * @return true if the template defines a Surrogate-Control or a CDN-Cache-Control value
+     */
+    public boolean hasCdnHeaders() {
+        return surrogateControl != null || cdnCacheControl != null;
+    }
+
+    /**
+     * @param params the parameters values by placeholder name
+     * @return the Surrogate-Control value with placeholders replaced, or null if none
+     */
+    public String getFilteredSurrogateControl(Map<String, String> params) {
+        return surrogateControl == null ? null : surrogateControl.getFilteredTemplate(params);
+    }
+
+    /**
+     * @param params the parameters values by placeholder name
+     * @return the CDN-Cache-Control value with placeholders replaced, or null if none
+     */
+    public String getFilteredCdnCacheControl(Map<String, String> params) {
+        return cdnCacheControl == null ? null : cdnCacheControl.getFilteredTemplate(params);
+    }
+
+    /**
+     * @return true if the template contains parameters placeholders
+     */
+    public boolean isParametrized() {
+        return placeholders.length > 0;
+    }
+
+    /**
+     * @return true if the template header value contains the public directive
+     */
+    public boolean isPublic() {
+        return isPublic;
+    }
+
     @Override public String toString() {
-        return "ClientCacheFilterTemplate{" + "name='" + name + '\'' + ", template='" + template + '\'' + '}';
+        return "ClientCacheFilterTemplate{" + "name='" + name + '\'' + ", template='" + template + '\'' + ", surrogateControl='" + getSurrogateControl() + '\''
+                + ", cdnCacheControl='" + getCdnCacheControl() + '\'' + '}';
     }
 
+    /**
+     * @param params the parameters values by placeholder name
+     * @return the template with placeholders replaced by parameter values, placeholders without value are kept as is
+     */
     public String getFilteredTemplate(Map<String, String> params) {
-        String filteredTemplate = template;
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            filteredTemplate = filteredTemplate.replaceAll("%%" + entry.getKey() + "%%", entry.getValue());
+        if (placeholders.length == 0 || params.isEmpty()) {
+            return template;
+        }
+        if (placeholders.length == 1) {
+            String value = params.get(placeholders[0]);
+            if (value == null) {
+                return template;
+            }
+            String rendered = memoized.get(value);
+            if (rendered == null) {
+                rendered = render(literals, placeholders, literalsLength, params, PARAM_DELIMITER);
+                if (memoized.size() < MAX_MEMOIZED_VALUES) {
+                    memoized.put(value, rendered);
+                }
+            }
+            return rendered;
+        }
+        return render(literals, placeholders, literalsLength, params, PARAM_DELIMITER);
+    }
+
+    /**
+     * Replace the placeholders delimited by the given delimiter in a template value.
+     *
+     * @param template the template value
+     * @param delimiter the placeholders delimiter
+     * @param values the values by placeholder name
+     * @return the template with placeholders replaced, placeholders without value are kept as is
+     */
+    public static String substitute(String template, String delimiter, Map<String, String> values) {
+        List<String> parsedLiterals = new ArrayList<>();
+        List<String> parsedPlaceholders = new ArrayList<>();
+        parse(template, delimiter, parsedLiterals, parsedPlaceholders);
+        if (parsedPlaceholders.isEmpty()) {
+            return template;
+        }
+        return render(parsedLiterals.toArray(new String[0]), parsedPlaceholders.toArray(new String[0]),
+                parsedLiterals.stream().mapToInt(String::length).sum(), values, delimiter);
+    }
+
+    private static void parse(String template, String delimiter, List<String> literals, List<String> placeholders) {
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf(delimiter, position);
+            int end = start < 0 ? -1 : template.indexOf(delimiter, start + delimiter.length());
+            if (end < 0) {
+                break;
+            }
+            String placeholder = template.substring(start + delimiter.length(), end);
+            if (isValidPlaceholder(placeholder)) {
+                literal.append(template, position, start);
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.add(placeholder);
+                position = end + delimiter.length();
+            } else {
+                literal.append(template, position, start + delimiter.length());
+                position = start + delimiter.length();
+            }
+        }
+        literal.append(template, position, template.length());
+        literals.add(literal.toString());
+    }
+
+    private static boolean isValidPlaceholder(String placeholder) {
+        if (placeholder.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < placeholder.length(); i++) {
+            char c = placeholder.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '_' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String render(String[] literals, String[] placeholders, int literalsLength, Map<String, String> values, String delimiter) {
+        StringBuilder rendered = new StringBuilder(literalsLength + placeholders.length * 16);
+        rendered.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                rendered.append(value);
+            } else {
+                rendered.append(delimiter).append(placeholders[i]).append(delimiter);
+            }
+            rendered.append(literals[i + 1]);
         }
-        return filteredTemplate;
+        return rendered.toString();
     }
 }
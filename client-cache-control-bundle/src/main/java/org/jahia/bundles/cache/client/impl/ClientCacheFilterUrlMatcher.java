@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * URL matcher of a rule.
+ * Each match type has a dedicated matcher: a region comparison for prefix and exact rules and a compiled automaton for glob
+ * rules, only regex rules use java.util.regex. Regex rules that are a plain literal, optionally preceded by the context
+ * segment <code>(?:/[^/]+)?</code> and followed by <code>.*</code> (like most of the default rules) are detected and evaluated
+ * by a literal matcher too.
+ * Every matcher also provides an equivalent regexp, used for display, path indexing and rules merging.
+ *
+ * @author Jerome Blanchard
+ */
+public abstract class ClientCacheFilterUrlMatcher {
+
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+    private static final String ANY = "(?s:.*)";
+
+    private final ClientCacheFilterMatchType type;
+    private final String expression;
+    private final Pattern pattern;
+
+    private ClientCacheFilterUrlMatcher(ClientCacheFilterMatchType type, String expression, String regexp) {
+        this.type = type;
+        this.expression = expression;
+        this.pattern = Pattern.compile(regexp);
+    }
+
+    /**
+     * @param url the rule URL part, with an optional match type marker
+     * @return the matcher
+     * @throws java.util.regex.PatternSyntaxException if the URL part is an invalid regexp
+     */
+    public static ClientCacheFilterUrlMatcher parse(String url) {
+        ClientCacheFilterMatchType type = ClientCacheFilterMatchType.of(url);
+        String expression = type.strip(url);
+        switch (type) {
+            case PREFIX:
+                return new LiteralMatcher(type, expression, escape(expression) + ANY, expression, true, false, true);
+            case EXACT:
+                return new LiteralMatcher(type, expression, escape(expression), expression, false, false, true);
+            case GLOB:
+                return new GlobMatcher(expression);
+            default:
+                return regex(expression);
+        }
+    }
+
+    private static ClientCacheFilterUrlMatcher regex(String regexp) {
+        boolean context = regexp.startsWith(ClientCacheFilterRulePathIndex.CONTEXT_PREFIX);
+        String body = context ? regexp.substring(ClientCacheFilterRulePathIndex.CONTEXT_PREFIX.length()) : regexp;
+        boolean prefix = body.endsWith(".*");
+        String literal = unescape(prefix ? body.substring(0, body.length() - 2) : body);
+        if (literal != null && (!context || literal.startsWith("/"))) {
+            return new LiteralMatcher(ClientCacheFilterMatchType.REGEX, regexp, regexp, literal, prefix, context, false);
+        }
+        return new RegexMatcher(regexp);
+    }
+
+    public ClientCacheFilterMatchType getType() {
+        return type;
+    }
+
+    /**
+     * @return the URL expression, without match type marker
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return the regexp equivalent to this matcher
+     */
+    public String getRegexp() {
+        return pattern.pattern();
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if the matcher evaluates the URI using the regexp engine
+     */
+    public boolean usesRegexp() {
+        return false;
+    }
+
+    public abstract boolean matches(CharSequence uri);
+
+    @Override public String toString() {
+        return type.getMarker() + ":" + expression;
+    }
+
+    /**
+     * @return the literal value of a regexp made only of plain or escaped characters, or null if the regexp contains operators
+     */
+    static String unescape(String regexp) {
+        StringBuilder literal = new StringBuilder(regexp.length());
+        for (int i = 0; i < regexp.length(); i++) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                if (++i >= regexp.length() || Character.isLetterOrDigit(regexp.charAt(i))) {
+                    return null;
+                }
+                c = regexp.charAt(i);
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    static String escape(String literal) {
+        StringBuilder regexp = new StringBuilder(literal.length() + 8);
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (META_CHARS.indexOf(c) >= 0) {
+                regexp.append('\\');
+            }
+            regexp.append(c);
+        }
+        return regexp.toString();
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static final class RegexMatcher extends ClientCacheFilterUrlMatcher {
+
+        RegexMatcher(String regexp) {
+            super(ClientCacheFilterMatchType.REGEX, regexp, regexp);
+        }
+
+        @Override public boolean usesRegexp() {
+            return true;
+        }
+
+        @Override public boolean matches(CharSequence uri) {
+            return getPattern().matcher(uri).matches();
+        }
+    }
+
+    /**
+     * Exact or prefix comparison, optionally after a context segment. When built from a regexp, the characters matched by a
+     * trailing <code>.*</code> must not be line terminators.
+     */
+    private static final class LiteralMatcher extends ClientCacheFilterUrlMatcher {
+
+        private final String literal;
+        private final boolean prefix;
+        private final boolean context;
+        private final boolean dotAll;
+
+        LiteralMatcher(ClientCacheFilterMatchType type, String expression, String regexp, String literal, boolean prefix, boolean context,
+                boolean dotAll) {
+            super(type, expression, regexp);
+            this.literal = literal;
+            this.prefix = prefix;
+            this.context = context;
+            this.dotAll = dotAll;
+        }
+
+        @Override public boolean matches(CharSequence uri) {
+            if (matchesAt(uri, 0)) {
+                return true;
+            }
+            if (context && uri.length() > 1 && uri.charAt(0) == '/' && uri.charAt(1) != '/') {
+                for (int i = 2; i < uri.length(); i++) {
+                    if (uri.charAt(i) == '/') {
+                        return matchesAt(uri, i);
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesAt(CharSequence uri, int offset) {
+            int remaining = uri.length() - offset;
+            if (prefix ? remaining < literal.length() : remaining != literal.length()) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (uri.charAt(offset + i) != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            if (prefix && !dotAll) {
+                for (int i = offset + literal.length(); i < uri.length(); i++) {
+                    if (isLineTerminator(uri.charAt(i))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Glob matcher: <code>*</code> matches any characters but a slash, <code>?</code> a single character but a slash,
+     * <code>**</code> any characters and <code>**&#47;</code> zero or more path segments. A backslash escapes the next character.
+     * The glob is compiled into a non deterministic automaton simulated with a bitset of states, the matching time is linear
+     * in the URI length and never backtracks. Globs with more elements than states in the bitset are evaluated by their
+     * equivalent regexp.
+     */
+    private static final class GlobMatcher extends ClientCacheFilterUrlMatcher {
+
+        private static final byte CHAR = 0;
+        private static final byte ONE = 1;
+        private static final byte STAR = 2;
+        private static final byte ANY_CHARS = 3;
+        private static final byte ANY_SEGMENTS = 4;
+        private static final int MAX_STATES = 63;
+
+        private final byte[] kinds;
+        private final char[] chars;
+        private final long repeatable;
+
+        GlobMatcher(String glob) {
+            this(glob, new Glob(glob));
+        }
+
+        private GlobMatcher(String glob, Glob compiled) {
+            super(ClientCacheFilterMatchType.GLOB, glob, compiled.regexp);
+            this.kinds = compiled.kinds;
+            this.chars = compiled.chars;
+            long mask = 0;
+            for (int i = 0; i < kinds.length && kinds.length < MAX_STATES; i++) {
+                if (kinds[i] >= STAR) {
+                    mask |= 1L << i;
+                }
+            }
+            this.repeatable = mask;
+        }
+
+        @Override public boolean matches(CharSequence uri) {
+            if (kinds.length >= MAX_STATES) {
+                return getPattern().matcher(uri).matches();
+            }
+            long states = closure(1L);
+            for (int i = 0; i < uri.length() && states != 0; i++) {
+                states = step(states, uri.charAt(i));
+            }
+            return (states & (1L << kinds.length)) != 0;
+        }
+
+        /**
+         * Repeatable elements may match nothing, a state before such an element is also a state after it.
+         */
+        private long closure(long states) {
+            long pending = states & repeatable;
+            while (pending != 0) {
+                int state = Long.numberOfTrailingZeros(pending);
+                pending &= pending - 1;
+                long next = 1L << (state + 1);
+                if ((states & next) == 0) {
+                    states |= next;
+                    pending |= next & repeatable;
+                }
+            }
+            return states;
+        }
+
+        private long step(long states, char c) {
+            long next = 0;
+            long remaining = states & ~(1L << kinds.length);
+            while (remaining != 0) {
+                int state = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                switch (kinds[state]) {
+                    case CHAR:
+                        if (chars[state] == c) {
+                            next |= 1L << (state + 1);
+                        }
+                        break;
+                    case ONE:
+                        if (c != '/') {
+                            next |= 1L << (state + 1);
+                        }
+                        break;
+                    case STAR:
+                        if (c != '/') {
+                            next |= 1L << state;
+                        }
+                        break;
+                    case ANY_CHARS:
+                        next |= 1L << state;
+                        break;
+                    default:
+                        next |= 1L << state;
+                        if (c == '/') {
+                            next |= 1L << (state + 1);
+                        }
+                        break;
+                }
+            }
+            return closure(next);
+        }
+
+        private static final class Glob {
+
+            private final String regexp;
+            private final byte[] kinds;
+            private final char[] chars;
+
+            Glob(String glob) {
+                StringBuilder builder = new StringBuilder();
+                byte[] elements = new byte[glob.length()];
+                char[] values = new char[glob.length()];
+                int size = 0;
+                for (int i = 0; i < glob.length(); i++) {
+                    char c = glob.charAt(i);
+                    if (c == '\\' && i + 1 < glob.length()) {
+                        c = glob.charAt(++i);
+                        builder.append(escape(String.valueOf(c)));
+                        values[size] = c;
+                        elements[size++] = CHAR;
+                    } else if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                            i++;
+                            builder.append("(?:").append(ANY).append("/)?");
+                            elements[size++] = ANY_SEGMENTS;
+                        } else {
+                            builder.append(ANY);
+                            elements[size++] = ANY_CHARS;
+                        }
+                    } else if (c == '*') {
+                        builder.append("[^/]*");
+                        elements[size++] = STAR;
+                    } else if (c == '?') {
+                        builder.append("[^/]");
+                        elements[size++] = ONE;
+                    } else {
+                        builder.append(escape(String.valueOf(c)));
+                        values[size] = c;
+                        elements[size++] = CHAR;
+                    }
+                }
+                this.regexp = builder.toString();
+                this.kinds = Arrays.copyOf(elements, size);
+                this.chars = Arrays.copyOf(values, size);
+            }
+        }
+    }
+}
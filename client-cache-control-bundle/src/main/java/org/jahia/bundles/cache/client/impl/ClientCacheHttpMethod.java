@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+/**
+ * Standard HTTP methods, used to store rule methods as a bitmask and to partition compiled rules by method.
+ * Non-standard methods are handled as strings.
+ *
+ * @author Jerome Blanchard
+ */
+public enum ClientCacheHttpMethod {
+
+    GET,
+    HEAD,
+    POST,
+    PUT,
+    DELETE,
+    PATCH,
+    OPTIONS,
+    TRACE,
+    CONNECT;
+
+    private static final ClientCacheHttpMethod[] VALUES = values();
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    public static ClientCacheHttpMethod get(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * @param method the method name (case-sensitive, as HTTP methods are)
+     * @return the standard method or null for a non-standard one
+     */
+    public static ClientCacheHttpMethod of(String method) {
+        switch (method) {
+            case "GET":
+                return GET;
+            case "HEAD":
+                return HEAD;
+            case "POST":
+                return POST;
+            case "PUT":
+                return PUT;
+            case "DELETE":
+                return DELETE;
+            case "PATCH":
+                return PATCH;
+            case "OPTIONS":
+                return OPTIONS;
+            case "TRACE":
+                return TRACE;
+            case "CONNECT":
+                return CONNECT;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Origin pressure monitor stretching the intermediates cache durations of public templates under load.
+ * Requests going through the chain are counted in flight and their latency summed in LongAdders, so that recording a request
+ * does not contend. Once per evaluation interval, a request leaving the chain evaluates the signals: the in-flight requests and
+ * the mean chain latency of the interval, both smoothed by an exponentially weighted moving average, and optionally the heap
+ * usage. When a signal is above its threshold, the stretch factor is multiplied by the stretch step, up to the maximum stretch.
+ * It is divided back only after several consecutive evaluations with all signals below a fraction of their threshold, so that
+ * the factor does not flap around a threshold.
+ * Stretched header values are memoized per factor, a factor of 1 returns the header as is.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheLoadMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheLoadMonitor.class);
+
+    private static final long EVALUATION_INTERVAL = 1000;
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final double RECOVERY_RATIO = 0.8;
+    private static final int RECOVERY_EVALUATIONS = 5;
+    private static final int MAX_MEMOIZED_VALUES = 256;
+    private static final String S_MAXAGE = "s-maxage=";
+    private static final String MAX_AGE = "max-age=";
+    private static final String STALE_WHILE_REVALIDATE = "stale-while-revalidate=";
+
+    private final Supplier<ClientCacheSettings> settings;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder latency = new LongAdder();
+    private final LongAdder stretchChanges = new LongAdder();
+    private final AtomicLong nextEvaluation = new AtomicLong();
+    // Only written by the thread winning the evaluation
+    private volatile double inFlightAverage;
+    private volatile double latencyAverage;
+    private volatile double heapUsage;
+    private volatile int relievedEvaluations;
+    private volatile Stretch stretch = new Stretch(1);
+
+    /**
+     * @param settings supplier of the current service settings, read on each evaluation
+     */
+    public ClientCacheLoadMonitor(Supplier<ClientCacheSettings> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Record a request entering the chain.
+     *
+     * @return the request start time to give back to exit
+     */
+    public long enter() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a request leaving the chain, evaluating the load if the evaluation interval is elapsed.
+     *
+     * @param start the request start time returned by enter
+     */
+    public void exit(long start) {
+        latency.add(System.nanoTime() - start);
+        completed.increment();
+        inFlight.decrement();
+        long now = System.currentTimeMillis();
+        long next = nextEvaluation.get();
+        if (now >= next && nextEvaluation.compareAndSet(next, now + EVALUATION_INTERVAL)) {
+            evaluate(settings.get());
+        }
+    }
+
+    /**
+     * Evaluate the load signals and update the stretch factor.
+     *
+     * @param current the current service settings
+     */
+    public void evaluate(ClientCacheSettings current) {
+        long count = completed.sumThenReset();
+        long total = latency.sumThenReset();
+        inFlightAverage += EWMA_WEIGHT * (inFlight.sum() - inFlightAverage);
+        if (count > 0) {
+            latencyAverage += EWMA_WEIGHT * (total / 1000000d / count - latencyAverage);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        heapUsage = current.getLoadHeapThreshold() > 0 ? (runtime.totalMemory() - runtime.freeMemory()) * 100d / runtime.maxMemory() : 0;
+        double pressure = Math.max(ratio(inFlightAverage, current.getLoadInFlightThreshold()),
+                Math.max(ratio(latencyAverage, current.getLoadLatencyThreshold()), ratio(heapUsage, current.getLoadHeapThreshold())));
+        int factor = stretch.factor;
+        int step = Math.max(2, current.getLoadStretchStep());
+        int max = Math.max(1, current.getLoadMaxStretch());
+        if (pressure > 1) {
+            relievedEvaluations = 0;
+            factor = (int) Math.min(max, (long) factor * step);
+        } else if (pressure < RECOVERY_RATIO && factor > 1 && ++relievedEvaluations >= RECOVERY_EVALUATIONS) {
+            relievedEvaluations = 0;
+            factor = Math.max(1, factor / step);
+        }
+        factor = Math.min(factor, max);
+        if (factor != stretch.factor) {
+            LOGGER.info("Origin load {}: intermediates cache durations stretch factor set to {} (in flight: {}, latency: {}ms, heap: {}%)",
+                    pressure > 1 ? "high" : "back to normal", factor, Math.round(inFlightAverage), Math.round(latencyAverage), Math.round(heapUsage));
+            stretch = new Stretch(factor);
+            stretchChanges.increment();
+        }
+    }
+
+    private static double ratio(double value, long threshold) {
+        return threshold > 0 ? value / threshold : 0;
+    }
+
+    /**
+     * @param header a Cache-Control header value of a stretchable template
+     * @return the header with its s-maxage and stale-while-revalidate values multiplied by the current stretch factor
+     */
+    public String stretch(String header) {
+        Stretch current = this.stretch;
+        return current.factor == 1 || header == null ? header : memoized(current.values, header, current.factor, S_MAXAGE);
+    }
+
+    /**
+     * @param header a Surrogate-Control or CDN-Cache-Control header value of a stretchable template
+     * @return the header with its max-age and stale-while-revalidate values, the edge TTL for these headers, multiplied by
+     * the current stretch factor
+     */
+    public String stretchCdn(String header) {
+        Stretch current = this.stretch;
+        return current.factor == 1 || header == null ? header : memoized(current.cdnValues, header, current.factor, MAX_AGE);
+    }
+
+    private static String memoized(Map<String, String> values, String header, int factor, String ttl) {
+        String stretched = values.get(header);
+        if (stretched == null) {
+            stretched = stretch(header, factor, ttl);
+            if (values.size() < MAX_MEMOIZED_VALUES) {
+                values.put(header, stretched);
+            }
+        }
+        return stretched;
+    }
+
+    /**
+     * @return the header with its s-maxage and stale-while-revalidate values multiplied by the factor
+     */
+    public static String stretch(String header, int factor) {
+        return stretch(header, factor, S_MAXAGE);
+    }
+
+    /**
+     * @return the CDN header with its max-age and stale-while-revalidate values multiplied by the factor
+     */
+    public static String stretchCdn(String header, int factor) {
+        return stretch(header, factor, MAX_AGE);
+    }
+
+    private static String stretch(String header, int factor, String ttl) {
+        StringBuilder stretched = new StringBuilder(header.length() + 8);
+        for (String directive : header.split(",")) {
+            String trimmed = directive.trim();
+            if (stretched.length() > 0) {
+                stretched.append(", ");
+            }
+            String name = trimmed.regionMatches(true, 0, ttl, 0, ttl.length()) ? ttl
+                    : trimmed.regionMatches(true, 0, STALE_WHILE_REVALIDATE, 0, STALE_WHILE_REVALIDATE.length()) ? STALE_WHILE_REVALIDATE : null;
+            if (name != null) {
+                try {
+                    long value = Long.parseLong(trimmed.substring(name.length()));
+                    stretched.append(name).append(Math.min(Integer.MAX_VALUE, value * factor));
+                    continue;
+                } catch (NumberFormatException e) {
+                    // Placeholder or invalid value, kept as is
+                }
+            }
+            stretched.append(trimmed);
+        }
+        return stretched.toString();
+    }
+
+    /**
+     * @return the current stretch factor of the intermediates cache durations, 1 when the origin is not under pressure
+     */
+    public int getStretchFactor() {
+        return stretch.factor;
+    }
+
+    /**
+     * @return the number of times the stretch factor changed
+     */
+    public long getStretchChanges() {
+        return stretchChanges.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @return the moving average of the number of requests in the chain
+     */
+    public double getInFlightAverage() {
+        return inFlightAverage;
+    }
+
+    /**
+     * @return the moving average of the chain latency in milliseconds
+     */
+    public double getLatencyAverage() {
+        return latencyAverage;
+    }
+
+    /**
+     * @return the heap usage in percent at the last evaluation, 0 if the heap is not monitored
+     */
+    public double getHeapUsage() {
+        return heapUsage;
+    }
+
+    private static class Stretch {
+
+        private final int factor;
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final Map<String, String> cdnValues = new ConcurrentHashMap<>();
+
+        private Stretch(int factor) {
+            this.factor = factor;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+/**
+ * Thrown when matching a request URI against the rules exceeds the configured step budget.
+ * The exception is stackless as it is only used to abort a regexp evaluation.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheMatchBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ClientCacheMatchBudgetExceededException(long budget) {
+        super("Rule matching budget of " + budget + " steps exceeded", null, false, false);
+    }
+}
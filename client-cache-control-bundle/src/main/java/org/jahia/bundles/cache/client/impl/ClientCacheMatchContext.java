@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+/**
+ * Request URI wrapper used while matching rules. Every character read by the regexp engine counts as a step, the matching
+ * is aborted with a ClientCacheMatchBudgetExceededException once the budget is exhausted, bounding the time a badly written
+ * rule can spend on a crafted URI.
+ * The context also counts the rules evaluated against the URI.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheMatchContext implements CharSequence {
+
+    private final String uri;
+    private final long budget;
+    private long steps;
+    private int evaluatedRules;
+
+    /**
+     * @param uri the request URI
+     * @param budget the maximum number of steps, 0 or less for no limit
+     */
+    public ClientCacheMatchContext(String uri, long budget) {
+        this.uri = uri;
+        this.budget = budget > 0 ? budget : Long.MAX_VALUE;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Count rules evaluated against the URI.
+     *
+     * @param count the number of rules evaluated
+     */
+    public void addEvaluatedRules(int count) {
+        evaluatedRules += count;
+    }
+
+    public int getEvaluatedRules() {
+        return evaluatedRules;
+    }
+
+    @Override public int length() {
+        return uri.length();
+    }
+
+    @Override public char charAt(int index) {
+        if (++steps > budget) {
+            throw new ClientCacheMatchBudgetExceededException(budget);
+        }
+        return uri.charAt(index);
+    }
+
+    @Override public CharSequence subSequence(int start, int end) {
+        return uri.subSequence(start, end);
+    }
+
+    @Override public String toString() {
+        return uri;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheStatistics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counters of the client cache service, kept across configuration and ruleset updates.
+ * All counters are LongAdders so that request threads never contend on them. Resolvers get the hit counters of their rules and
+ * templates once when they are built, counting a hit is then an array access and an increment. Rule counters are keyed by the
+ * rule definition, so that the hits of an unchanged rule are kept when a ruleset is updated, the counters of the rules that are not
+ * part of the installed ruleset anymore being dropped. The response cache counters are
+ * kept here as well, as the response cache is recreated when the rules or the templates change.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheMetrics implements ClientCacheStatistics, ClientCacheMetricsMXBean {
+
+    private final LongAdder cachedResolutions = new LongAdder();
+    private final LongAdder evaluatedResolutions = new LongAdder();
+    private final LongAdder evaluatedRules = new LongAdder();
+    private final LongAdder noMatch = new LongAdder();
+    private final LongAdder budgetExceeded = new LongAdder();
+    private final LongAdder defaultPresets = new LongAdder();
+    private final LongAdder overrides = new LongAdder();
+    private final LongAdder strictViolations = new LongAdder();
+    private final LongAdder responseCacheHits = new LongAdder();
+    private final LongAdder responseCacheStaleHits = new LongAdder();
+    private final LongAdder responseCacheMisses = new LongAdder();
+    private final LongAdder staleIfErrorHits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder coalescingTimeouts = new LongAdder();
+    private final ClientCacheLatencyHistogram latency = new ClientCacheLatencyHistogram();
+    private final Map<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> templateHits = new ConcurrentHashMap<>();
+
+    /**
+     * @param rule a rule
+     * @return the hit counter of the rule
+     */
+    public LongAdder getRuleCounter(ClientCacheFilterRule rule) {
+        return ruleHits.computeIfAbsent(rule.getKey(), key -> new LongAdder());
+    }
+
+    /**
+     * Drop the hit counters of the rules that are not part of the ruleset, the counters of the unchanged rules are kept.
+     *
+     * @param ruleSet the ruleset of the installed resolver
+     */
+    public void retainRules(ClientCacheCompiledRuleSet ruleSet) {
+        Set<String> keys = ruleSet.getRules().stream().map(ClientCacheFilterRule::getKey).collect(Collectors.toSet());
+        ruleHits.keySet().retainAll(keys);
+    }
+
+    /**
+     * @param template a template name
+     * @return the hit counter of the template
+     */
+    public LongAdder getTemplateCounter(String template) {
+        return templateHits.computeIfAbsent(template, key -> new LongAdder());
+    }
+
+    /**
+     * @param cached true if the resolution was answered by the resolution cache
+     * @param rules the number of rules evaluated if not cached
+     * @param matched true if a rule matched
+     * @param nanos the resolution latency
+     */
+    public void recordResolution(boolean cached, int rules, boolean matched, long nanos) {
+        if (cached) {
+            cachedResolutions.increment();
+        } else {
+            evaluatedResolutions.increment();
+            evaluatedRules.add(rules);
+        }
+        if (!matched) {
+            noMatch.increment();
+        }
+        latency.record(nanos);
+    }
+
+    public void recordBudgetExceeded() {
+        budgetExceeded.increment();
+    }
+
+    public void recordDefaultPreset() {
+        defaultPresets.increment();
+    }
+
+    public void recordOverride() {
+        overrides.increment();
+    }
+
+    public void recordStrictViolation() {
+        strictViolations.increment();
+    }
+
+    public void recordResponseCacheHit() {
+        responseCacheHits.increment();
+    }
+
+    public void recordResponseCacheStaleHit() {
+        responseCacheStaleHits.increment();
+    }
+
+    public void recordResponseCacheMiss() {
+        responseCacheMisses.increment();
+    }
+
+    public void recordStaleIfError() {
+        staleIfErrorHits.increment();
+    }
+
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    public void recordCoalescingTimeout() {
+        coalescingTimeouts.increment();
+    }
+
+    public ClientCacheLatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override public long getResolutionCount() {
+        return cachedResolutions.sum() + evaluatedResolutions.sum();
+    }
+
+    @Override public long getCachedResolutionCount() {
+        return cachedResolutions.sum();
+    }
+
+    @Override public long getNoMatchCount() {
+        return noMatch.sum();
+    }
+
+    @Override public double getEvaluatedRulesAverage() {
+        long resolutions = evaluatedResolutions.sum();
+        return resolutions == 0 ? 0 : (double) evaluatedRules.sum() / resolutions;
+    }
+
+    @Override public long getMatchBudgetExceededCount() {
+        return budgetExceeded.sum();
+    }
+
+    @Override public long getDefaultPresetCount() {
+        return defaultPresets.sum();
+    }
+
+    @Override public long getOverrideCount() {
+        return overrides.sum();
+    }
+
+    @Override public long getStrictViolationCount() {
+        return strictViolations.sum();
+    }
+
+    @Override public long getResponseCacheHitCount() {
+        return responseCacheHits.sum();
+    }
+
+    @Override public long getResponseCacheStaleHitCount() {
+        return responseCacheStaleHits.sum();
+    }
+
+    @Override public long getResponseCacheMissCount() {
+        return responseCacheMisses.sum();
+    }
+
+    @Override public long getStaleIfErrorCount() {
+        return staleIfErrorHits.sum();
+    }
+
+    @Override public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Override public long getCoalescingTimeoutCount() {
+        return coalescingTimeouts.sum();
+    }
+
+    @Override public double getResolutionLatencyMean() {
+        return latency.getMean();
+    }
+
+    @Override public long getResolutionLatency(double percentile) {
+        return latency.getPercentile(percentile);
+    }
+
+    @Override public long getResolutionLatencyP50() {
+        return latency.getPercentile(50);
+    }
+
+    @Override public long getResolutionLatencyP99() {
+        return latency.getPercentile(99);
+    }
+
+    @Override public long getResolutionLatencyP999() {
+        return latency.getPercentile(99.9);
+    }
+
+    @Override public long getResolutionLatencyMax() {
+        return latency.getMax();
+    }
+
+    @Override public Map<String, Long> getRuleHits() {
+        return snapshot(ruleHits);
+    }
+
+    @Override public Map<String, Long> getTemplateHits() {
+        return snapshot(templateHits);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.Map;
+
+/**
+ * JMX view of the client cache service statistics, registered as org.jahia.bundles.cache.client:type=ClientCacheMetrics.
+ * Latencies are in nanoseconds.
+ *
+ * @author Jerome Blanchard
+ */
+public interface ClientCacheMetricsMXBean {
+
+    long getResolutionCount();
+
+    long getCachedResolutionCount();
+
+    long getNoMatchCount();
+
+    double getEvaluatedRulesAverage();
+
+    long getMatchBudgetExceededCount();
+
+    long getDefaultPresetCount();
+
+    long getOverrideCount();
+
+    long getStrictViolationCount();
+
+    long getResponseCacheHitCount();
+
+    long getResponseCacheStaleHitCount();
+
+    long getResponseCacheMissCount();
+
+    long getStaleIfErrorCount();
+
+    long getCoalescedCount();
+
+    long getCoalescingTimeoutCount();
+
+    double getResolutionLatencyMean();
+
+    long getResolutionLatencyP50();
+
+    long getResolutionLatencyP99();
+
+    long getResolutionLatencyP999();
+
+    long getResolutionLatencyMax();
+
+    Map<String, Long> getRuleHits();
+
+    Map<String, Long> getTemplateHits();
+}
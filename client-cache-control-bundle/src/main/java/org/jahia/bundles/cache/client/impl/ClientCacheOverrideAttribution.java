@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheOverride;
+
+import javax.servlet.ServletResponse;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Attribution of the cache headers changes made by other components to the frame that made them, on sampled requests.
+ * The response of a sampled request is wrapped so that each change of a cache header walks the stack, up to a limited depth,
+ * for the first frame that is not a response wrapper. Changes are counted by URL expression of the matched rule, header and
+ * caller in a bounded table: once full, changes for new keys are only counted as dropped.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheOverrideAttribution {
+
+    /**
+     * URL pattern of the requests matching no rule
+     */
+    public static final String DEFAULT_PATTERN = "default";
+
+    /**
+     * Caller of the changes made from frames deeper than the walked depth
+     */
+    public static final String UNKNOWN_CALLER = "unknown";
+
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final int sampleRate;
+    private final int depth;
+    private final int size;
+    private final Map<String, Entry> table = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param sampleRate one out of sampleRate requests is sampled
+     * @param depth the maximum number of frames walked to find the caller
+     * @param size the maximum number of (pattern, header, caller) entries
+     */
+    public ClientCacheOverrideAttribution(int sampleRate, int depth, int size) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.depth = depth;
+        this.size = size;
+    }
+
+    /**
+     * @return true if the attribution has been built with the given parameters
+     */
+    public boolean hasSize(int sampleRate, int depth, int size) {
+        return this.sampleRate == Math.max(1, sampleRate) && this.depth == depth && this.size == size;
+    }
+
+    /**
+     * @return true if the changes of the current request must be attributed
+     */
+    public boolean sample() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * Attribute a header change to the current caller.
+     *
+     * @param urlPattern the URL expression of the rule matching the request, DEFAULT_PATTERN if none
+     * @param uri the request URI
+     * @param header the changed header name
+     * @param value the new header value
+     */
+    public void record(String urlPattern, String uri, String header, String value) {
+        String caller = caller();
+        String key = urlPattern + '\n' + header + '\n' + caller;
+        Entry entry = table.get(key);
+        if (entry == null) {
+            if (table.size() >= size) {
+                dropped.increment();
+                return;
+            }
+            entry = table.computeIfAbsent(key, k -> new Entry(urlPattern, header, caller));
+        }
+        entry.count.increment();
+        entry.lastUri = uri;
+        entry.lastValue = value;
+    }
+
+    private String caller() {
+        return WALKER.walk(frames -> frames.limit(depth).filter(frame -> !isInternal(frame.getDeclaringClass())).findFirst()
+                .map(frame -> frame.getClassName() + '.' + frame.getMethodName() + ':' + frame.getLineNumber()).orElse(UNKNOWN_CALLER));
+    }
+
+    private static boolean isInternal(Class<?> type) {
+        return type == ClientCacheOverrideAttribution.class || ServletResponse.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @return the attributed changes, most frequent first
+     */
+    public List<ClientCacheOverride> list() {
+        return table.values().stream().map(entry -> new ClientCacheOverride(entry.urlPattern, entry.header, entry.caller, entry.count.sum(),
+                entry.lastUri, entry.lastValue)).sorted(Comparator.comparingLong(ClientCacheOverride::getCount).reversed()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of changes not attributed because the table was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private static final class Entry {
+
+        private final String urlPattern;
+        private final String header;
+        private final String caller;
+        private final LongAdder count = new LongAdder();
+        private volatile String lastUri;
+        private volatile String lastValue;
+
+        Entry(String urlPattern, String header, String caller) {
+            this.urlPattern = urlPattern;
+            this.header = header;
+            this.caller = caller;
+        }
+    }
+}
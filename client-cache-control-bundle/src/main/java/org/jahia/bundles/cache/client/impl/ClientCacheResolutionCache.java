@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of resolved Cache-Control header values keyed by (method, uri), along with the index of the matched rule.
+ * Entries are stored in one map per standard HTTP method keyed by the URI string, so that a lookup does not allocate any key.
+ * Requests with a non-standard method are not cached.
+ * An instance belongs to a ClientCacheResolver and is never invalidated in place: when the ruleset or the templates change,
+ * the resolver is relinked with a new cache.
+ * Eviction uses the CLOCK algorithm: reads only set a reference bit, inserts sweep the ring clearing reference bits until an
+ * unreferenced entry is found. Inserts never block request threads, an insert is skipped if another one is in progress.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheResolutionCache {
+
+    /**
+     * Cached value used when no rule matched the request
+     */
+    public static final String NO_HEADER = new String("");
+
+    private static final int MAX_URI_LENGTH = 1024;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry>[] entries;
+    private final Entry[] ring;
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private int hand = 0;
+
+    @SuppressWarnings("unchecked")
+    public ClientCacheResolutionCache(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.entries = (ConcurrentHashMap<String, Entry>[]) new ConcurrentHashMap<?, ?>[ClientCacheHttpMethod.count()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new ConcurrentHashMap<>();
+        }
+        this.ring = new Entry[this.capacity];
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, Entry> map : entries) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return the cached header value, NO_HEADER if no rule matched, or null if not in cache
+     */
+    public String get(String method, String uri) {
+        Entry entry = getEntry(method, uri);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * @return the cache entry, or null if not in cache
+     */
+    public Entry getEntry(String method, String uri) {
+        ClientCacheHttpMethod standard;
+        if (capacity == 0 || (standard = ClientCacheHttpMethod.of(method)) == null) {
+            return null;
+        }
+        Entry entry = entries[standard.ordinal()].get(uri);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    public void put(String method, String uri, String value) {
+        put(method, uri, value, ClientCacheFilterRuleMatcher.NO_MATCH);
+    }
+
+    /**
+     * @param method the request method
+     * @param uri the request URI
+     * @param value the resolved header value, NO_HEADER if no rule matched
+     * @param ruleIndex the index of the matched rule, NO_MATCH if none
+     */
+    public void put(String method, String uri, String value, int ruleIndex) {
+        ClientCacheHttpMethod standard;
+        if (capacity == 0 || uri.length() > MAX_URI_LENGTH || (standard = ClientCacheHttpMethod.of(method)) == null || !insertLock.tryLock()) {
+            return;
+        }
+        try {
+            ConcurrentHashMap<String, Entry> map = entries[standard.ordinal()];
+            if (map.containsKey(uri)) {
+                return;
+            }
+            while (true) {
+                Entry victim = ring[hand];
+                if (victim == null) {
+                    break;
+                }
+                if (victim.referenced) {
+                    victim.referenced = false;
+                    hand = (hand + 1) % capacity;
+                } else {
+                    entries[victim.method].remove(victim.uri, victim);
+                    break;
+                }
+            }
+            Entry entry = new Entry(standard.ordinal(), uri, value, ruleIndex);
+            ring[hand] = entry;
+            map.put(uri, entry);
+            hand = (hand + 1) % capacity;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    public static final class Entry {
+
+        private final int method;
+        private final String uri;
+        private final String value;
+        private final int ruleIndex;
+        private volatile boolean referenced;
+
+        Entry(int method, String uri, String value, int ruleIndex) {
+            this.method = method;
+            this.uri = uri;
+            this.value = value;
+            this.ruleIndex = ruleIndex;
+        }
+
+        /**
+         * @return the header value, NO_HEADER if no rule matched
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return the index of the matched rule, NO_MATCH if none
+         */
+        public int getRuleIndex() {
+            return ruleIndex;
+        }
+    }
+}
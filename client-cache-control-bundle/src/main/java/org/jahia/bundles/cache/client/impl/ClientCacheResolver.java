@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the service configuration used to resolve requests: the mode, the header templates and the rules
+ * snapshot they are linked to. Request processing reads the current resolver once and uses it for the whole request.
+ * Each rule is linked to its final header value when the resolver is built, so resolving a request returns a constant
+ * string. Only rules using a template with parameters placeholders keep a reference to the template, for requests that
+ * provide parameters.
+ * A resolver owns the resolution cache for its rules and templates, relinking a resolver on a ruleset or templates update
+ * atomically drops the cached values.
+ * Rules matching is bounded by a step budget: when a request exceeds it, the default header is used instead and the event is
+ * counted.
+ * Header values of the templates configured for ETag computation and of the public templates are kept by identity, so that
+ * checking if a resolved header requires an ETag or allows request coalescing is a few reference comparisons. The same goes
+ * for finding the template defining CDN facing headers to send along with a resolved header, and for checking if a resolved
+ * header is stretched when the origin is under pressure.
+ * Rules using the adaptive template are linked to the raw template value, which is kept as is in the resolution cache and
+ * replaced on each request by the header of the TTL estimated from the URL change history. Estimated TTLs are rounded down
+ * to a few steps (the minimum TTL doubled until the maximum TTL) whose header values are rendered once, so that they can be
+ * compared by identity like the others.
+ * Each resolution is counted in the service metrics: its latency, the number of rules evaluated and the hits of the matched rule
+ * and of its template. The hit counters of the rules are looked up once when the resolver is built, and the resolution cache
+ * keeps the matched rule index along with the header value, so that counting a cached resolution does not allocate. Per request
+ * callers resolve the rule index, then get both the header value and the rule from it without matching the rules again.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheResolver {
+
+    /**
+     * Rule index resolved when the match budget is exceeded, the default header is then used.
+     */
+    public static final int BUDGET_EXCEEDED = -2;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheResolver.class);
+
+    private final ClientCacheCompiledRuleSet ruleSet;
+    private final Map<String, ClientCacheFilterTemplate> templates;
+    private final ClientCacheSettings settings;
+    private final String[] headers;
+    private final String[] etagHeaders;
+    private final String[] publicHeaders;
+    private final String[] stretchableHeaders;
+    private final String[] cdnHeaders;
+    private final ClientCacheFilterTemplate[] cdnTemplates;
+    private final ClientCacheFilterTemplate[] parametrized;
+    private final ClientCacheResolutionCache cache;
+    private final String defaultHeader;
+    private final long matchBudget;
+    private final ClientCacheMetrics metrics;
+    private final LongAdder[] ruleHits;
+    private final LongAdder[] templateHits;
+    private final ClientCacheChangeSketch changeSketch;
+    private final String adaptiveHeader;
+    private final long[] adaptiveTtls;
+    private final String[] adaptiveHeaders;
+
+    /**
+     * @param ruleSet the rules snapshot
+     * @param templates the header templates
+     * @param settings the service settings
+     * @param metrics the service metrics resolutions are counted in
+     */
+    public ClientCacheResolver(ClientCacheCompiledRuleSet ruleSet, Map<String, ClientCacheFilterTemplate> templates, ClientCacheSettings settings,
+            ClientCacheMetrics metrics) {
+        this(ruleSet, templates, settings, metrics, null);
+    }
+
+    /**
+     * @param ruleSet the rules snapshot
+     * @param templates the header templates
+     * @param settings the service settings
+     * @param metrics the service metrics resolutions are counted in
+     * @param changeSketch the URL change history used by the adaptive template, null to always use the minimum adaptive TTL
+     */
+    public ClientCacheResolver(ClientCacheCompiledRuleSet ruleSet, Map<String, ClientCacheFilterTemplate> templates, ClientCacheSettings settings,
+            ClientCacheMetrics metrics, ClientCacheChangeSketch changeSketch) {
+        this.ruleSet = ruleSet;
+        this.templates = Map.copyOf(templates);
+        this.settings = settings;
+        this.defaultHeader = templates.getOrDefault(ClientCacheFilterTemplate.DEFAULT, ClientCacheFilterTemplate.EMPTY).getTemplate();
+        this.changeSketch = changeSketch;
+        ClientCacheFilterTemplate adaptive = templates.get(ClientCacheFilterTemplate.ADAPTIVE);
+        this.adaptiveHeader = adaptive != null ? adaptive.getTemplate() : null;
+        this.adaptiveTtls = adaptiveTtls(settings.getAdaptiveMinTtl(), settings.getAdaptiveMaxTtl());
+        this.adaptiveHeaders = new String[adaptiveTtls.length];
+        for (int i = 0; adaptive != null && i < adaptiveTtls.length; i++) {
+            adaptiveHeaders[i] = adaptive.getFilteredTemplate(Map.of(ClientCacheFilterTemplate.ADAPTIVE_TTL_PARAM, Long.toString(adaptiveTtls[i])));
+        }
+        this.etagHeaders = settings.getEtagTemplates().stream().filter(templates::containsKey).flatMap(name -> headersOf(templates.get(name)))
+                .toArray(String[]::new);
+        this.publicHeaders = templates.values().stream().filter(ClientCacheFilterTemplate::isPublic).flatMap(this::headersOf)
+                .toArray(String[]::new);
+        this.stretchableHeaders = ClientCacheFilterTemplate.STRETCHABLE.stream().filter(templates::containsKey).flatMap(name -> headersOf(templates.get(name)))
+                .toArray(String[]::new);
+        this.cdnTemplates = templates.values().stream().filter(ClientCacheFilterTemplate::hasCdnHeaders).toArray(ClientCacheFilterTemplate[]::new);
+        this.cdnHeaders = Arrays.stream(cdnTemplates).map(ClientCacheFilterTemplate::getTemplate).toArray(String[]::new);
+        this.matchBudget = settings.getRuleMatchBudget();
+        this.metrics = metrics;
+        this.headers = new String[ruleSet.size()];
+        this.parametrized = new ClientCacheFilterTemplate[ruleSet.size()];
+        this.ruleHits = new LongAdder[ruleSet.size()];
+        this.templateHits = new LongAdder[ruleSet.size()];
+        for (int i = 0; i < ruleSet.size(); i++) {
+            ClientCacheFilterRule rule = ruleSet.getRule(i);
+            ruleHits[i] = metrics.getRuleCounter(rule);
+            if (rule.getHeaderTemplate() != null) {
+                templateHits[i] = metrics.getTemplateCounter(rule.getHeaderTemplate());
+            }
+            if (rule.getHeaderTemplate() == null) {
+                headers[i] = rule.getHeaderValue();
+            } else {
+                ClientCacheFilterTemplate template = templates.getOrDefault(rule.getHeaderTemplate(), ClientCacheFilterTemplate.EMPTY);
+                headers[i] = template.getTemplate();
+                if (template.isParametrized() && template.getTemplate() != adaptiveHeader) {
+                    parametrized[i] = template;
+                }
+            }
+        }
+        this.cache = new ClientCacheResolutionCache(settings.getResolutionCacheSize());
+    }
+
+    /**
+     * @param updatedRuleSet the updated rules snapshot
+     * @return a new resolver linking the updated rules with the same templates
+     */
+    public ClientCacheResolver relink(ClientCacheCompiledRuleSet updatedRuleSet) {
+        return new ClientCacheResolver(updatedRuleSet, templates, settings, metrics, changeSketch);
+    }
+
+    private static long[] adaptiveTtls(long min, long max) {
+        List<Long> ttls = new ArrayList<>();
+        long ttl = Math.max(1, min);
+        while (ttl < max) {
+            ttls.add(ttl);
+            ttl *= 2;
+        }
+        ttls.add(Math.max(Math.max(1, min), max));
+        return ttls.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private Stream<String> headersOf(ClientCacheFilterTemplate template) {
+        return template.getTemplate() == adaptiveHeader ? Arrays.stream(adaptiveHeaders) : Stream.of(template.getTemplate());
+    }
+
+    public ClientCacheCompiledRuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    public Map<String, ClientCacheFilterTemplate> getTemplates() {
+        return templates;
+    }
+
+    public ClientCacheSettings getSettings() {
+        return settings;
+    }
+
+    public ClientCacheChangeSketch getChangeSketch() {
+        return changeSketch;
+    }
+
+    public ClientCacheMode getMode() {
+        return settings.getMode();
+    }
+
+    public boolean isStrict() {
+        return settings.getMode() == ClientCacheMode.STRICT;
+    }
+
+    /**
+     * @param header a header value resolved by this resolver
+     * @return true if the header value comes from a template configured for ETag computation
+     */
+    public boolean isEtagEnabled(String header) {
+        return containsIdentity(etagHeaders, header);
+    }
+
+    /**
+     * @param header a header value resolved by this resolver
+     * @return true if the header value comes from a public template
+     */
+    public boolean isPublic(String header) {
+        return containsIdentity(publicHeaders, header);
+    }
+
+    /**
+     * @param header a header value resolved by this resolver
+     * @return true if the header value comes from the adaptive template
+     */
+    public boolean isAdaptive(String header) {
+        return containsIdentity(adaptiveHeaders, header);
+    }
+
+    /**
+     * @param header a header value resolved by this resolver
+     * @return true if the header value comes from a template whose durations are stretched when the origin is under pressure
+     */
+    public boolean isStretchable(String header) {
+        return containsIdentity(stretchableHeaders, header);
+    }
+
+    /**
+     * @param header a header value resolved by this resolver
+     * @return the template the header value comes from if it defines CDN facing headers, null otherwise
+     */
+    public ClientCacheFilterTemplate getCdnTemplate(String header) {
+        for (int i = 0; i < cdnHeaders.length; i++) {
+            if (cdnHeaders[i] == header) {
+                return cdnTemplates[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsIdentity(String[] values, String value) {
+        for (String candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the header value of the default template
+     */
+    public String getDefaultHeader() {
+        return defaultHeader;
+    }
+
+    public ClientCacheResolutionCache getCache() {
+        return cache;
+    }
+
+    public long getMatchBudget() {
+        return matchBudget;
+    }
+
+    /**
+     * @return the header value linked to the rule at the given index, with the given parameters applied if the rule template has some
+     */
+    public String getHeader(int ruleIndex, Map<String, String> params) {
+        ClientCacheFilterTemplate template = parametrized[ruleIndex];
+        if (template != null && !params.isEmpty()) {
+            return template.getFilteredTemplate(params);
+        }
+        return headers[ruleIndex];
+    }
+
+    /**
+     * @return the header value for the request, the default header if the match budget is exceeded, or null if no rule matches
+     */
+    public String resolve(String method, String uri) {
+        return getHeader(resolveIndex(method, uri), uri);
+    }
+
+    /**
+     * @return the header value for the request, the default header if the match budget is exceeded, or null if no rule matches
+     */
+    public String resolve(String method, String uri, Map<String, String> params) {
+        if (params.isEmpty()) {
+            return resolve(method, uri);
+        }
+        long start = System.nanoTime();
+        ClientCacheMatchContext context = new ClientCacheMatchContext(uri, matchBudget);
+        int index = match(method, uri, context);
+        String header = index >= 0 ? getHeader(index, params) : index == BUDGET_EXCEEDED ? defaultHeader : null;
+        countHits(index);
+        metrics.recordResolution(false, context.getEvaluatedRules(), header != null, System.nanoTime() - start);
+        return adapt(uri, header);
+    }
+
+    /**
+     * Resolve the rule of a request, counted like resolve and stored in the resolution cache.
+     *
+     * @return the index of the matched rule, NO_MATCH if no rule matches or BUDGET_EXCEEDED if the match budget is exceeded
+     */
+    public int resolveIndex(String method, String uri) {
+        long start = System.nanoTime();
+        ClientCacheResolutionCache.Entry cached = cache.getEntry(method, uri);
+        if (cached != null) {
+            int index = cached.getRuleIndex();
+            countHits(index);
+            metrics.recordResolution(true, 0, index != ClientCacheFilterRuleMatcher.NO_MATCH, System.nanoTime() - start);
+            return index;
+        }
+        ClientCacheMatchContext context = new ClientCacheMatchContext(uri, matchBudget);
+        int index = match(method, uri, context);
+        String header = index >= 0 ? headers[index] : index == BUDGET_EXCEEDED ? defaultHeader : null;
+        cache.put(method, uri, header == null ? ClientCacheResolutionCache.NO_HEADER : header, index);
+        countHits(index);
+        metrics.recordResolution(false, context.getEvaluatedRules(), header != null, System.nanoTime() - start);
+        return index;
+    }
+
+    /**
+     * @param ruleIndex a rule index given by resolveIndex
+     * @param uri the request URI
+     * @return the header value of the rule index for the request, the default header if the match budget was exceeded, or
+     * null if no rule matched
+     */
+    public String getHeader(int ruleIndex, String uri) {
+        if (ruleIndex >= 0) {
+            return adapt(uri, headers[ruleIndex]);
+        }
+        return ruleIndex == BUDGET_EXCEEDED ? defaultHeader : null;
+    }
+
+    /**
+     * @param ruleIndex a rule index given by resolveIndex
+     * @return the rule at the index, or null if no rule matched or the match budget was exceeded
+     */
+    public ClientCacheFilterRule getRule(int ruleIndex) {
+        return ruleIndex >= 0 ? ruleSet.getRule(ruleIndex) : null;
+    }
+
+    private int match(String method, String uri, ClientCacheMatchContext context) {
+        try {
+            return ruleSet.matchIndex(method, context);
+        } catch (ClientCacheMatchBudgetExceededException e) {
+            metrics.recordBudgetExceeded();
+            LOGGER.debug("{} for {} {}, using default header", e.getMessage(), method, uri);
+            return BUDGET_EXCEEDED;
+        }
+    }
+
+    /**
+     * Resolve the header value of a URI for internal callers, like the mapping of publications to URLs. Unlike resolve, the
+     * lookup is neither counted in the metrics nor stored in the resolution cache, where it would evict request entries.
+     *
+     * @return the header value for the URI, the default header if the match budget is exceeded, or null if no rule matches
+     */
+    public String lookup(String method, String uri) {
+        try {
+            int index = ruleSet.matchIndex(method, new ClientCacheMatchContext(uri, matchBudget));
+            return index == ClientCacheFilterRuleMatcher.NO_MATCH ? null : adapt(uri, headers[index]);
+        } catch (ClientCacheMatchBudgetExceededException e) {
+            return defaultHeader;
+        }
+    }
+
+    /**
+     * Match the request again to find the rule it resolves to, intended for inspection outside of requests, like the listing of
+     * the most requested URLs.
+     *
+     * @return the rule matching the request, or null if no rule matches or the match budget is exceeded
+     */
+    public ClientCacheFilterRule getRule(String method, String uri) {
+        try {
+            int index = ruleSet.matchIndex(method, new ClientCacheMatchContext(uri, matchBudget));
+            return index == ClientCacheFilterRuleMatcher.NO_MATCH ? null : ruleSet.getRule(index);
+        } catch (ClientCacheMatchBudgetExceededException e) {
+            return null;
+        }
+    }
+
+    private void countHits(int ruleIndex) {
+        if (ruleIndex >= 0) {
+            ruleHits[ruleIndex].increment();
+            if (templateHits[ruleIndex] != null) {
+                templateHits[ruleIndex].increment();
+            }
+        }
+    }
+
+    private String adapt(String uri, String header) {
+        return header != null && header == adaptiveHeader ? getAdaptiveHeader(uri) : header;
+    }
+
+    /**
+     * @param uri the request URI
+     * @return the adaptive template header for the TTL estimated from the URI change history, rounded down to a TTL step
+     */
+    public String getAdaptiveHeader(String uri) {
+        if (changeSketch == null) {
+            return adaptiveHeaders[0];
+        }
+        long ttl = changeSketch.estimateTtl(uri, System.currentTimeMillis());
+        int step = 0;
+        while (step + 1 < adaptiveTtls.length && adaptiveTtls[step + 1] <= ttl) {
+            step++;
+        }
+        return adaptiveHeaders[step];
+    }
+}
@@ -15,10 +15,17 @@
  */
 package org.jahia.bundles.cache.client.impl;
 
+import org.apache.commons.lang.StringUtils;
+import org.jahia.bundles.cache.client.api.ClientCacheDecision;
 import org.jahia.bundles.cache.client.api.ClientCacheMode;
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
+import org.jahia.bundles.cache.client.api.ClientCacheOverride;
 import org.jahia.bundles.cache.client.api.ClientCacheRule;
 import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.api.ClientCacheStatistics;
 import org.jahia.bundles.cache.client.api.ClientCacheTemplate;
+import org.jahia.bundles.cache.client.api.ClientCacheTopUrl;
+import org.jahia.bundles.cache.client.filter.ClientCacheHeaders;
 import org.osgi.service.component.annotations.*;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
@@ -27,7 +34,13 @@ import org.osgi.service.metatype.annotations.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 /**
  * @author Jerome Blanchard
@@ -37,6 +50,7 @@ import java.util.*;
 public class ClientCacheServiceImpl implements ClientCacheService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheServiceImpl.class);
+    private static final String METRICS_OBJECT_NAME = "org.jahia.bundles.cache.client:type=ClientCacheMetrics";
 
     @ObjectClassDefinition( name = "org.jahia.bundles.cache.client", description = "%config.description", localization = "OSGI-INF/l10n/clientCache")
     public @interface Config {
@@ -57,40 +71,255 @@ public class ClientCacheServiceImpl implements ClientCacheService {
         @AttributeDefinition(name = "%ttl.immutable.name", description = "%ttl.immutable.description")
         String immutable_ttl() default "2678400";
 
+        @AttributeDefinition(name = "%ttl.error.name", description = "%ttl.error.description")
+        String error_ttl() default "86400";
+
+        @AttributeDefinition(name = "%ttl.cdn.short.name", description = "%ttl.cdn.short.description")
+        String cdn_short_ttl() default "3600";
+
+        @AttributeDefinition(name = "%ttl.cdn.medium.name", description = "%ttl.cdn.medium.description")
+        String cdn_medium_ttl() default "14400";
+
         @AttributeDefinition(name = "%cacheHeaderTemplate.private.name", description = "%cacheHeaderTemplate.private.description")
         String cache_header_template_private() default "private, no-cache, no-store, must-revalidate, proxy-revalidate, max-age=0";
 
         @AttributeDefinition(name = "%cacheHeaderTemplate.custom.name", description = "%cacheHeaderTemplate.custom.description")
-        String cache_header_template_custom() default "public, must-revalidate, max-age=1, s-maxage=%%jahiaClientCacheCustomTTL%%, stale-while-revalidate=15";
+        String cache_header_template_custom() default "public, must-revalidate, max-age=1, s-maxage=%%jahiaClientCacheCustomTTL%%, stale-while-revalidate=15, stale-if-error=##error.ttl##";
 
         @AttributeDefinition(name = "%cacheHeaderTemplate.public.name", description = "%cacheHeaderTemplate.public.description")
-        String cache_header_template_public() default "public, must-revalidate, max-age=1, s-maxage=##short.ttl##, stale-while-revalidate=15";
+        String cache_header_template_public() default "public, must-revalidate, max-age=1, s-maxage=##short.ttl##, stale-while-revalidate=15, stale-if-error=##error.ttl##";
 
         @AttributeDefinition(name = "%cacheHeaderTemplate.public.medium.name", description = "%cacheHeaderTemplate.public.medium.description")
-        String cache_header_template_public_medium() default "public, must-revalidate, max-age=1, s-maxage=##medium.ttl##, stale-while-revalidate=15";
+        String cache_header_template_public_medium() default "public, must-revalidate, max-age=1, s-maxage=##medium.ttl##, stale-while-revalidate=15, stale-if-error=##error.ttl##";
 
         @AttributeDefinition(name = "%cacheHeaderTemplate.immutable.name", description = "%cacheHeaderTemplate.immutable.description")
-        String cache_header_template_immutable() default "public, max-age=##immutable.ttl##, s-maxage=##immutable.ttl##, stale-while-revalidate=15, immutable";
+        String cache_header_template_immutable() default "public, max-age=##immutable.ttl##, s-maxage=##immutable.ttl##, stale-while-revalidate=15, stale-if-error=##error.ttl##, immutable";
+
+        @AttributeDefinition(name = "%cacheHeaderTemplate.adaptive.name", description = "%cacheHeaderTemplate.adaptive.description")
+        String cache_header_template_adaptive() default "public, must-revalidate, max-age=1, s-maxage=%%jahiaClientCacheAdaptiveTTL%%, stale-while-revalidate=15, stale-if-error=##error.ttl##";
+
+        @AttributeDefinition(name = "%adaptive.minTtl.name", description = "%adaptive.minTtl.description")
+        String adaptive_min_ttl() default "60";
+
+        @AttributeDefinition(name = "%adaptive.maxTtl.name", description = "%adaptive.maxTtl.description")
+        String adaptive_max_ttl() default "86400";
+
+        @AttributeDefinition(name = "%adaptive.sketchWidth.name", description = "%adaptive.sketchWidth.description")
+        String adaptive_sketch_width() default "16384";
+
+        @AttributeDefinition(name = "%adaptive.decay.name", description = "%adaptive.decay.description")
+        String adaptive_decay() default "604800";
+
+        @AttributeDefinition(name = "%load.inFlightThreshold.name", description = "%load.inFlightThreshold.description")
+        String load_inflight_threshold() default "0";
+
+        @AttributeDefinition(name = "%load.latencyThreshold.name", description = "%load.latencyThreshold.description")
+        String load_latency_threshold() default "0";
+
+        @AttributeDefinition(name = "%load.heapThreshold.name", description = "%load.heapThreshold.description")
+        String load_heap_threshold() default "0";
+
+        @AttributeDefinition(name = "%load.stretchStep.name", description = "%load.stretchStep.description")
+        String load_stretch_step() default "2";
+
+        @AttributeDefinition(name = "%load.maxStretch.name", description = "%load.maxStretch.description")
+        String load_max_stretch() default "8";
+
+        @AttributeDefinition(name = "%trace.size.name", description = "%trace.size.description")
+        String trace_size() default "256";
+
+        @AttributeDefinition(name = "%trace.sampleRate.name", description = "%trace.sampleRate.description")
+        String trace_sample_rate() default "16";
+
+        @AttributeDefinition(name = "%attribution.sampleRate.name", description = "%attribution.sampleRate.description")
+        String attribution_sample_rate() default "0";
+
+        @AttributeDefinition(name = "%attribution.depth.name", description = "%attribution.depth.description")
+        String attribution_depth() default "32";
+
+        @AttributeDefinition(name = "%attribution.size.name", description = "%attribution.size.description")
+        String attribution_size() default "256";
+
+        @AttributeDefinition(name = "%topUrls.size.name", description = "%topUrls.size.description")
+        String top_urls_size() default "100";
+
+        @AttributeDefinition(name = "%topUrls.decay.name", description = "%topUrls.decay.description")
+        String top_urls_decay() default "3600";
+
+        @AttributeDefinition(name = "%surrogateHeaderTemplate.custom.name", description = "%surrogateHeaderTemplate.description")
+        String surrogate_header_template_custom() default "";
+
+        @AttributeDefinition(name = "%surrogateHeaderTemplate.public.name", description = "%surrogateHeaderTemplate.description")
+        String surrogate_header_template_public() default "";
+
+        @AttributeDefinition(name = "%surrogateHeaderTemplate.public.medium.name", description = "%surrogateHeaderTemplate.description")
+        String surrogate_header_template_public_medium() default "";
+
+        @AttributeDefinition(name = "%surrogateHeaderTemplate.immutable.name", description = "%surrogateHeaderTemplate.description")
+        String surrogate_header_template_immutable() default "";
+
+        @AttributeDefinition(name = "%cdnHeaderTemplate.custom.name", description = "%cdnHeaderTemplate.description")
+        String cdn_header_template_custom() default "";
+
+        @AttributeDefinition(name = "%cdnHeaderTemplate.public.name", description = "%cdnHeaderTemplate.description")
+        String cdn_header_template_public() default "";
+
+        @AttributeDefinition(name = "%cdnHeaderTemplate.public.medium.name", description = "%cdnHeaderTemplate.description")
+        String cdn_header_template_public_medium() default "";
+
+        @AttributeDefinition(name = "%cdnHeaderTemplate.immutable.name", description = "%cdnHeaderTemplate.description")
+        String cdn_header_template_immutable() default "";
+
+        @AttributeDefinition(name = "%resolutionCache.size.name", description = "%resolutionCache.size.description")
+        String resolution_cache_size() default "10000";
+
+        @AttributeDefinition(name = "%ruleMatch.budget.name", description = "%ruleMatch.budget.description")
+        String rule_match_budget() default "100000";
+
+        @AttributeDefinition(name = "%etag.templates.name", description = "%etag.templates.description")
+        String etag_templates() default "";
+
+        @AttributeDefinition(name = "%etag.maxBodySize.name", description = "%etag.maxBodySize.description")
+        String etag_max_body_size() default "262144";
+
+        @AttributeDefinition(name = "%responseCache.size.name", description = "%responseCache.size.description")
+        String response_cache_size() default "0";
+
+        @AttributeDefinition(name = "%responseCache.maxEntrySize.name", description = "%responseCache.maxEntrySize.description")
+        String response_cache_max_entry_size() default "262144";
+
+        @AttributeDefinition(name = "%responseCache.vary.name", description = "%responseCache.vary.description")
+        String response_cache_vary() default "Accept-Encoding";
+
+        @AttributeDefinition(name = "%coalescing.wait.name", description = "%coalescing.wait.description")
+        String coalescing_wait() default "0";
+
+        @AttributeDefinition(name = "%cacheTags.headers.name", description = "%cacheTags.headers.description")
+        String cache_tags_headers() default "";
+
+        @AttributeDefinition(name = "%cacheTags.max.name", description = "%cacheTags.max.description")
+        String cache_tags_max() default "64";
+
+        @AttributeDefinition(name = "%invalidation.urlTemplates.name", description = "%invalidation.urlTemplates.description")
+        String invalidation_url_templates() default "/cms/render/live/{lang}{path}.html";
+
+        @AttributeDefinition(name = "%invalidation.window.name", description = "%invalidation.window.description")
+        String invalidation_window() default "5000";
+
+        @AttributeDefinition(name = "%invalidation.wildcardThreshold.name", description = "%invalidation.wildcardThreshold.description")
+        String invalidation_wildcard_threshold() default "100";
+
+        @AttributeDefinition(name = "%invalidation.maxRetries.name", description = "%invalidation.maxRetries.description")
+        String invalidation_max_retries() default "5";
+
+        @AttributeDefinition(name = "%invalidation.retryDelay.name", description = "%invalidation.retryDelay.description")
+        String invalidation_retry_delay() default "1000";
 
     }
 
-    private ClientCacheFilterRuleSetFactory factory;
-    private Map<String, ClientCacheFilterTemplate> cacheControlHeaderTemplates = new HashMap<>();
-    private boolean allowOverrides = true;
+    private volatile ClientCacheFilterRuleSetFactory factory;
+    private final ClientCacheMetrics metrics = new ClientCacheMetrics();
+    private final AtomicReference<ClientCacheResolver> resolver = new AtomicReference<>(emptyResolver());
+    private volatile ClientCacheChangeSketch changeSketch;
+    private volatile ClientCacheDecisionTrace trace;
+    private volatile ClientCacheOverrideAttribution attribution;
+    private volatile ClientCacheTopUrls topUrls;
+    private final ClientCacheLoadMonitor loadMonitor = new ClientCacheLoadMonitor(() -> getResolver().getSettings());
 
     @Activate
     @Modified
     public void setup(Config config) {
         LOGGER.info("Activate/Update Client Cache Service...");
-        this.cacheControlHeaderTemplates = this.computeCacheControlHeaderTemplates(config);
-        this.allowOverrides = config.mode().equals("overrides");
+        Map<String, ClientCacheFilterTemplate> cacheControlHeaderTemplates = this.computeCacheControlHeaderTemplates(config);
+        ClientCacheSettings settings = computeSettings(config);
+        ClientCacheResolutionCache previous = this.resolver.getAndSet(new ClientCacheResolver(compiledFilterRules(), cacheControlHeaderTemplates, settings,
+                metrics, updateChangeSketch(settings))).getCache();
+        retainRuleCounters();
+        updateTrace(settings);
+        updateAttribution(settings);
+        updateTopUrls(settings);
+        if (previous.isEnabled()) {
+            LOGGER.info("Resolution cache reset, previous size: {}, hit ratio: {}", previous.size(), previous.getHitRatio());
+        }
         cacheControlHeaderTemplates.forEach((cck, ccv) -> LOGGER.info("Cache Control Header Templates: [{}] {}", cck, ccv));
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(METRICS_OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register client cache metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    private void unregisterMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(METRICS_OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister client cache metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    private ClientCacheChangeSketch updateChangeSketch(ClientCacheSettings settings) {
+        ClientCacheChangeSketch current = this.changeSketch;
+        if (settings.getAdaptiveSketchWidth() == 0) {
+            current = null;
+        } else if (current == null || !current.hasSize(settings.getAdaptiveSketchWidth(), settings.getAdaptiveDecay())) {
+            LOGGER.info("URL change history reset");
+            current = new ClientCacheChangeSketch(settings.getAdaptiveSketchWidth(), settings.getAdaptiveDecay());
+        }
+        this.changeSketch = current;
+        return current;
+    }
+
+    private void updateTrace(ClientCacheSettings settings) {
+        ClientCacheDecisionTrace current = this.trace;
+        if (settings.getTraceSize() == 0) {
+            current = null;
+        } else if (current == null || !current.hasSize(settings.getTraceSize(), settings.getTraceSampleRate())) {
+            current = new ClientCacheDecisionTrace(settings.getTraceSize(), settings.getTraceSampleRate());
+        }
+        this.trace = current;
+    }
+
+    private void updateAttribution(ClientCacheSettings settings) {
+        ClientCacheOverrideAttribution current = this.attribution;
+        if (settings.getAttributionSampleRate() == 0 || settings.getAttributionSize() == 0) {
+            current = null;
+        } else if (current == null || !current.hasSize(settings.getAttributionSampleRate(), settings.getAttributionDepth(), settings.getAttributionSize())) {
+            current = new ClientCacheOverrideAttribution(settings.getAttributionSampleRate(), settings.getAttributionDepth(), settings.getAttributionSize());
+        }
+        this.attribution = current;
+    }
+
+    private void updateTopUrls(ClientCacheSettings settings) {
+        ClientCacheTopUrls current = this.topUrls;
+        if (settings.getTopUrlsSize() == 0) {
+            current = null;
+        } else if (current == null || !current.hasSize(settings.getTopUrlsSize(), settings.getTopUrlsDecay())) {
+            current = new ClientCacheTopUrls(settings.getTopUrlsSize(), settings.getTopUrlsDecay());
+        }
+        this.topUrls = current;
     }
 
     @Deactivate
     public void teardown() {
         LOGGER.debug("Deactivate Client Cache Service...");
-        this.cacheControlHeaderTemplates = new HashMap<>();
+        this.resolver.set(emptyResolver());
+        unregisterMetrics();
+    }
+
+    private ClientCacheResolver emptyResolver() {
+        return new ClientCacheResolver(ClientCacheCompiledRuleSet.EMPTY, Collections.emptyMap(), new ClientCacheSettings(), metrics);
     }
 
     @Reference(service = ClientCacheFilterRuleSetFactory.class, policy = ReferencePolicy.DYNAMIC, bind = "setRuleSetFactory", unbind = "clearRuleSetFactory")
@@ -105,15 +334,11 @@ public class ClientCacheServiceImpl implements ClientCacheService {
     }
 
     public boolean allowOverridesCacheControlHeader() {
-        return allowOverrides;
+        return !getResolver().isStrict();
     }
 
     @Override public ClientCacheMode getMode() {
-        if (allowOverrides) {
-            return ClientCacheMode.ALLOW_OVERRIDES;
-        } else {
-            return ClientCacheMode.STRICT;
-        }
+        return getResolver().getMode();
     }
 
     @Override
@@ -128,31 +353,60 @@ public class ClientCacheServiceImpl implements ClientCacheService {
         return this.factory.getRules();
     }
 
+    private ClientCacheCompiledRuleSet compiledFilterRules() {
+        ClientCacheFilterRuleSetFactory current = this.factory;
+        if (current == null) {
+            return ClientCacheCompiledRuleSet.EMPTY;
+        }
+        return current.getCompiledRules();
+    }
+
     @Override
     public Collection<ClientCacheTemplate> listHeaderTemplates() {
-        return new ArrayList<>(cacheControlHeaderTemplates.values());
+        return new ArrayList<>(getResolver().getTemplates().values());
     }
 
     @Override public Optional<String> getCacheControlHeader(String method, String uri, Map<String, String> params) {
-        Optional<ClientCacheFilterRule> mRule = listFilterRules().stream()
-                .filter(rule -> rule.getMethods().contains(method) && rule.getUrlPattern().matcher(uri).matches()).findFirst();
-        if (mRule.isPresent()) {
-            if (mRule.get().getHeaderValue() != null) {
-                LOGGER.debug("[{} - {}] matched with rule {}, returning header: {}", method, uri, mRule.get(), mRule.get().getHeaderValue());
-                return Optional.of(mRule.get().getHeaderValue());
-            }
-            if (mRule.get().getHeaderTemplate() != null) {
-                String headerValue = cacheControlHeaderTemplates.getOrDefault(mRule.get().getHeaderTemplate(), ClientCacheFilterTemplate.EMPTY).getFilteredTemplate(params);
-                LOGGER.debug("[{} - {}] matched with rule {}, returning header: {}", uri, method, mRule.get(), headerValue);
-                return Optional.of(headerValue);
+        String headerValue = getResolver().resolve(method, uri, params);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[{} - {}] resolved header: {}", method, uri, headerValue);
+        }
+        return Optional.ofNullable(headerValue);
+    }
+
+    /**
+     * @return the current configuration snapshot, relinked first if the ruleset has been updated
+     */
+    public ClientCacheResolver getResolver() {
+        ClientCacheResolver current = this.resolver.get();
+        ClientCacheCompiledRuleSet rules = compiledFilterRules();
+        if (current.getRuleSet() != rules) {
+            ClientCacheResolver updated = current.relink(rules);
+            if (this.resolver.compareAndSet(current, updated)) {
+                LOGGER.debug("Ruleset updated to generation {}, rules relinked with templates", rules.getGeneration());
+                retainRuleCounters();
+                return updated;
             }
+            return this.resolver.get();
         }
-        return Optional.empty();
+        return current;
+    }
+
+    /**
+     * Drop the hit counters of the rules removed from the installed resolver. Each installation is followed by a call, serialized
+     * so that the last one always prunes against the latest installed ruleset.
+     */
+    private synchronized void retainRuleCounters() {
+        metrics.retainRules(this.resolver.get().getRuleSet());
     }
 
     @Override public Optional<String> getCacheControlHeader(String templateName, Map<String, String> params) {
-        if (cacheControlHeaderTemplates.containsKey(templateName)) {
-            String headerValue = cacheControlHeaderTemplates.get(templateName).getFilteredTemplate(params);
+        ClientCacheFilterTemplate template = getResolver().getTemplates().get(templateName);
+        if (template != null) {
+            String headerValue = template.getFilteredTemplate(params);
+            if (ClientCacheFilterTemplate.STRETCHABLE.contains(templateName)) {
+                headerValue = loadMonitor.stretch(headerValue);
+            }
             LOGGER.debug("TemplateName {} returned header value: {}", templateName, headerValue);
             return Optional.of(headerValue);
         }
@@ -160,8 +414,167 @@ public class ClientCacheServiceImpl implements ClientCacheService {
         return Optional.empty();
     }
 
+    @Override public Map<String, String> getCdnCacheHeaders(String templateName, Map<String, String> params) {
+        ClientCacheFilterTemplate template = getResolver().getTemplates().get(templateName);
+        if (template == null || !template.hasCdnHeaders()) {
+            return Collections.emptyMap();
+        }
+        boolean stretchable = ClientCacheFilterTemplate.STRETCHABLE.contains(templateName);
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (template.getSurrogateControl() != null) {
+            String headerValue = template.getFilteredSurrogateControl(params);
+            headers.put(ClientCacheHeaders.SURROGATE_CONTROL, stretchable ? loadMonitor.stretchCdn(headerValue) : headerValue);
+        }
+        if (template.getCdnCacheControl() != null) {
+            String headerValue = template.getFilteredCdnCacheControl(params);
+            headers.put(ClientCacheHeaders.CDN_CACHE_CONTROL, stretchable ? loadMonitor.stretchCdn(headerValue) : headerValue);
+        }
+        return headers;
+    }
+
     @Override public String getDefaultCacheControlHeader() {
-        return cacheControlHeaderTemplates.get(ClientCacheFilterTemplate.DEFAULT).getTemplate();
+        return getResolver().getDefaultHeader();
+    }
+
+    private ClientCacheSettings computeSettings(Config config) {
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setMode(config.mode().equals("overrides") ? ClientCacheMode.ALLOW_OVERRIDES : ClientCacheMode.STRICT);
+        settings.setResolutionCacheSize((int) parsePositive("resolution cache size", config.resolution_cache_size(), 0));
+        settings.setRuleMatchBudget(parsePositive("rule match budget", config.rule_match_budget(), 0));
+        settings.setEtagTemplates(new HashSet<>(Arrays.asList(StringUtils.split(config.etag_templates(), ", "))));
+        settings.setEtagMaxBodySize((int) parsePositive("ETag max body size", config.etag_max_body_size(), 0));
+        settings.setResponseCacheSize(parsePositive("response cache size", config.response_cache_size(), 0));
+        settings.setResponseCacheMaxEntrySize((int) parsePositive("response cache max entry size", config.response_cache_max_entry_size(), 0));
+        settings.setResponseCacheVary(Arrays.asList(StringUtils.split(config.response_cache_vary(), ", ")));
+        settings.setCoalescingWait(parsePositive("coalescing wait", config.coalescing_wait(), 0));
+        settings.setCacheTagsHeaders(Arrays.asList(StringUtils.split(config.cache_tags_headers(), ", ")));
+        settings.setCacheTagsMax((int) parsePositive("cache tags max", config.cache_tags_max(), 0));
+        settings.setInvalidationUrlTemplates(Arrays.asList(StringUtils.split(config.invalidation_url_templates(), ", ")));
+        settings.setInvalidationWindow(parsePositive("invalidation window", config.invalidation_window(), 0));
+        settings.setInvalidationWildcardThreshold((int) parsePositive("invalidation wildcard threshold", config.invalidation_wildcard_threshold(), 0));
+        settings.setInvalidationMaxRetries((int) parsePositive("invalidation max retries", config.invalidation_max_retries(), 0));
+        settings.setInvalidationRetryDelay(parsePositive("invalidation retry delay", config.invalidation_retry_delay(), 0));
+        settings.setAdaptiveMinTtl(parsePositive("adaptive min TTL", config.adaptive_min_ttl(), 60));
+        settings.setAdaptiveMaxTtl(parsePositive("adaptive max TTL", config.adaptive_max_ttl(), 60));
+        settings.setAdaptiveSketchWidth((int) parsePositive("adaptive sketch width", config.adaptive_sketch_width(), 0));
+        settings.setLoadInFlightThreshold(parsePositive("load in flight threshold", config.load_inflight_threshold(), 0));
+        settings.setLoadLatencyThreshold(parsePositive("load latency threshold", config.load_latency_threshold(), 0));
+        settings.setLoadHeapThreshold(parsePositive("load heap threshold", config.load_heap_threshold(), 0));
+        settings.setLoadStretchStep((int) parsePositive("load stretch step", config.load_stretch_step(), 2));
+        settings.setLoadMaxStretch((int) parsePositive("load max stretch", config.load_max_stretch(), 1));
+        settings.setTraceSize((int) parsePositive("trace size", config.trace_size(), 0));
+        settings.setTraceSampleRate((int) parsePositive("trace sample rate", config.trace_sample_rate(), 1));
+        settings.setAttributionSampleRate((int) parsePositive("attribution sample rate", config.attribution_sample_rate(), 0));
+        settings.setAttributionDepth((int) parsePositive("attribution depth", config.attribution_depth(), 32));
+        settings.setAttributionSize((int) parsePositive("attribution size", config.attribution_size(), 256));
+        settings.setTopUrlsSize((int) parsePositive("top URLs size", config.top_urls_size(), 0));
+        settings.setTopUrlsDecay(parsePositive("top URLs decay", config.top_urls_decay(), 3600) * 1000);
+        settings.setAdaptiveDecay(parsePositive("adaptive decay", config.adaptive_decay(), 604800) * 1000);
+        return settings;
+    }
+
+    private static long parsePositive(String name, String value, long fallback) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {}: {}, using {}", name, value, fallback);
+            return fallback;
+        }
+    }
+
+    /**
+     * @return the origin load monitor, stretching the intermediates cache durations of public templates under pressure
+     */
+    public ClientCacheLoadMonitor getLoadMonitor() {
+        return loadMonitor;
+    }
+
+    @Override public int getLoadStretchFactor() {
+        return loadMonitor.getStretchFactor();
+    }
+
+    /**
+     * Record a change of URLs in the change history used by the adaptive template.
+     *
+     * @param urls the changed URLs
+     */
+    public void recordChanges(Collection<String> urls) {
+        ClientCacheChangeSketch sketch = this.changeSketch;
+        if (sketch != null) {
+            long now = System.currentTimeMillis();
+            urls.forEach(url -> sketch.record(url, now));
+        }
+    }
+
+    /**
+     * @return true if URL changes are recorded for the adaptive template
+     */
+    public boolean isRecordingChanges() {
+        return changeSketch != null;
+    }
+
+    /**
+     * @return the number of requests for which the rules matching exceeded the step budget and the default header was used
+     */
+    public long getMatchBudgetExceededCount() {
+        return metrics.getMatchBudgetExceededCount();
+    }
+
+    /**
+     * @return the service metrics, counting resolutions and presets since the service started
+     */
+    public ClientCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override public Optional<ClientCacheStatistics> getStatistics() {
+        return Optional.of(metrics);
+    }
+
+    /**
+     * @return the trace recording the decisions of sampled requests, null if disabled
+     */
+    public ClientCacheDecisionTrace getTrace() {
+        return trace;
+    }
+
+    @Override public List<ClientCacheDecision> listDecisions(String uriRegexp) {
+        ClientCacheDecisionTrace current = this.trace;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        return current.list(StringUtils.isEmpty(uriRegexp) ? null : Pattern.compile(uriRegexp));
+    }
+
+    /**
+     * @return the attribution of the cache headers changes to their caller on sampled requests, null if disabled
+     */
+    public ClientCacheOverrideAttribution getAttribution() {
+        return attribution;
+    }
+
+    @Override public List<ClientCacheOverride> listOverrides() {
+        ClientCacheOverrideAttribution current = this.attribution;
+        return current == null ? Collections.emptyList() : current.list();
+    }
+
+    /**
+     * @return the most requested URLs for each response outcome, null if disabled
+     */
+    public ClientCacheTopUrls getTopUrls() {
+        return topUrls;
+    }
+
+    @Override public List<ClientCacheTopUrl> listTopUrls(ClientCacheOutcome outcome, int limit) {
+        ClientCacheTopUrls current = this.topUrls;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        ClientCacheResolver snapshot = getResolver();
+        return current.list(outcome, limit, (method, uri) -> {
+            ClientCacheFilterRule rule = snapshot.getRule(method, uri);
+            return rule != null ? rule.getKey() : null;
+        });
     }
 
     private Map<String, ClientCacheFilterTemplate> computeCacheControlHeaderTemplates(Config config) {
@@ -169,22 +582,30 @@ public class ClientCacheServiceImpl implements ClientCacheService {
         values.put(ClientCacheFilterTemplate.PRIVATE,
                 new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PRIVATE, configureCacheControlHeaderTemplate(config.cache_header_template_private(), config)));
         values.put(ClientCacheFilterTemplate.PUBLIC_MEDIUM,
-                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC_MEDIUM, configureCacheControlHeaderTemplate(config.cache_header_template_public_medium(), config)));
+                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC_MEDIUM, configureCacheControlHeaderTemplate(config.cache_header_template_public_medium(), config),
+                        configureCacheControlHeaderTemplate(config.surrogate_header_template_public_medium(), config),
+                        configureCacheControlHeaderTemplate(config.cdn_header_template_public_medium(), config)));
         values.put(ClientCacheFilterTemplate.PUBLIC,
-                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC, configureCacheControlHeaderTemplate(config.cache_header_template_public(), config)));
+                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC, configureCacheControlHeaderTemplate(config.cache_header_template_public(), config),
+                        configureCacheControlHeaderTemplate(config.surrogate_header_template_public(), config),
+                        configureCacheControlHeaderTemplate(config.cdn_header_template_public(), config)));
         values.put(ClientCacheFilterTemplate.CUSTOM,
-                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.CUSTOM, configureCacheControlHeaderTemplate(config.cache_header_template_custom(), config)));
+                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.CUSTOM, configureCacheControlHeaderTemplate(config.cache_header_template_custom(), config),
+                        configureCacheControlHeaderTemplate(config.surrogate_header_template_custom(), config),
+                        configureCacheControlHeaderTemplate(config.cdn_header_template_custom(), config)));
         values.put(ClientCacheFilterTemplate.IMMUTABLE,
-                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.IMMUTABLE, configureCacheControlHeaderTemplate(config.cache_header_template_immutable(), config)));
+                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.IMMUTABLE, configureCacheControlHeaderTemplate(config.cache_header_template_immutable(), config),
+                        configureCacheControlHeaderTemplate(config.surrogate_header_template_immutable(), config),
+                        configureCacheControlHeaderTemplate(config.cdn_header_template_immutable(), config)));
+        values.put(ClientCacheFilterTemplate.ADAPTIVE,
+                new ClientCacheFilterTemplate(ClientCacheFilterTemplate.ADAPTIVE, configureCacheControlHeaderTemplate(config.cache_header_template_adaptive(), config)));
         return values;
     }
 
     private String configureCacheControlHeaderTemplate(String value, Config config) {
-        String configuredValue = value;
-        configuredValue = configuredValue.replace("##short.ttl##", config.short_ttl());
-        configuredValue = configuredValue.replace("##medium.ttl##", config.medium_ttl());
-        configuredValue = configuredValue.replace("##immutable.ttl##", config.immutable_ttl());
-        return configuredValue;
+        return ClientCacheFilterTemplate.substitute(value, ClientCacheFilterTemplate.CONFIG_DELIMITER,
+                Map.of("short.ttl", config.short_ttl(), "medium.ttl", config.medium_ttl(), "immutable.ttl", config.immutable_ttl(),
+                        "error.ttl", config.error_ttl(), "cdn.short.ttl", config.cdn_short_ttl(), "cdn.medium.ttl", config.cdn_medium_ttl()));
     }
 
 }
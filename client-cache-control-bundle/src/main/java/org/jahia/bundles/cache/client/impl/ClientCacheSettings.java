@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheMode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service settings parsed from the configuration.
+ * An instance is built by the service on each configuration update and is not modified once given to a ClientCacheResolver.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheSettings {
+
+    private ClientCacheMode mode = ClientCacheMode.ALLOW_OVERRIDES;
+    private int resolutionCacheSize = 0;
+    private long ruleMatchBudget = 0;
+    private Set<String> etagTemplates = Collections.emptySet();
+    private int etagMaxBodySize = 0;
+    private long responseCacheSize = 0;
+    private int responseCacheMaxEntrySize = 0;
+    private List<String> responseCacheVary = Collections.emptyList();
+    private long coalescingWait = 0;
+    private List<String> cacheTagsHeaders = Collections.emptyList();
+    private int cacheTagsMax = 0;
+    private List<String> invalidationUrlTemplates = Collections.emptyList();
+    private long invalidationWindow = 0;
+    private int invalidationWildcardThreshold = 0;
+    private int invalidationMaxRetries = 0;
+    private long invalidationRetryDelay = 0;
+    private long adaptiveMinTtl = 0;
+    private long adaptiveMaxTtl = 0;
+    private int adaptiveSketchWidth = 0;
+    private long adaptiveDecay = 0;
+    private long loadInFlightThreshold = 0;
+    private long loadLatencyThreshold = 0;
+    private long loadHeapThreshold = 0;
+    private int loadStretchStep = 2;
+    private int loadMaxStretch = 1;
+    private int traceSize = 0;
+    private int traceSampleRate = 1;
+    private int attributionSampleRate = 0;
+    private int attributionDepth = 0;
+    private int attributionSize = 0;
+    private int topUrlsSize = 0;
+    private long topUrlsDecay = 0;
+
+    public ClientCacheMode getMode() {
+        return mode;
+    }
+
+    public void setMode(ClientCacheMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return the resolution cache capacity, 0 if the cache is disabled
+     */
+    public int getResolutionCacheSize() {
+        return resolutionCacheSize;
+    }
+
+    public void setResolutionCacheSize(int resolutionCacheSize) {
+        this.resolutionCacheSize = resolutionCacheSize;
+    }
+
+    /**
+     * @return the maximum number of regexp steps to resolve a request, 0 for no limit
+     */
+    public long getRuleMatchBudget() {
+        return ruleMatchBudget;
+    }
+
+    public void setRuleMatchBudget(long ruleMatchBudget) {
+        this.ruleMatchBudget = ruleMatchBudget;
+    }
+
+    /**
+     * @return the names of the templates for which an ETag is computed on GET responses
+     */
+    public Set<String> getEtagTemplates() {
+        return etagTemplates;
+    }
+
+    public void setEtagTemplates(Set<String> etagTemplates) {
+        this.etagTemplates = Set.copyOf(etagTemplates);
+    }
+
+    /**
+     * @return the maximum size of a response body held to compute its ETag
+     */
+    public int getEtagMaxBodySize() {
+        return etagMaxBodySize;
+    }
+
+    public void setEtagMaxBodySize(int etagMaxBodySize) {
+        this.etagMaxBodySize = etagMaxBodySize;
+    }
+
+    /**
+     * @return the maximum number of bytes held by the response cache, 0 if the response cache is disabled
+     */
+    public long getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    public void setResponseCacheSize(long responseCacheSize) {
+        this.responseCacheSize = responseCacheSize;
+    }
+
+    /**
+     * @return the maximum size of a response body stored in the response cache
+     */
+    public int getResponseCacheMaxEntrySize() {
+        return responseCacheMaxEntrySize;
+    }
+
+    public void setResponseCacheMaxEntrySize(int responseCacheMaxEntrySize) {
+        this.responseCacheMaxEntrySize = responseCacheMaxEntrySize;
+    }
+
+    /**
+     * @return the request headers whose values are part of the response cache key
+     */
+    public List<String> getResponseCacheVary() {
+        return responseCacheVary;
+    }
+
+    public void setResponseCacheVary(List<String> responseCacheVary) {
+        this.responseCacheVary = List.copyOf(responseCacheVary);
+    }
+
+    /**
+     * @return the maximum time in milliseconds a request waits for an identical public request in progress, 0 if request
+     * coalescing is disabled
+     */
+    public long getCoalescingWait() {
+        return coalescingWait;
+    }
+
+    public void setCoalescingWait(long coalescingWait) {
+        this.coalescingWait = coalescingWait;
+    }
+
+    /**
+     * @return the names of the response headers the cache tags collected during rendering are sent in, empty if cache tags
+     * are not collected
+     */
+    public List<String> getCacheTagsHeaders() {
+        return cacheTagsHeaders;
+    }
+
+    public void setCacheTagsHeaders(List<String> cacheTagsHeaders) {
+        this.cacheTagsHeaders = List.copyOf(cacheTagsHeaders);
+    }
+
+    /**
+     * @return the maximum number of cache tags sent for a page, the site tag is sent alone above it
+     */
+    public int getCacheTagsMax() {
+        return cacheTagsMax;
+    }
+
+    public void setCacheTagsMax(int cacheTagsMax) {
+        this.cacheTagsMax = cacheTagsMax;
+    }
+
+    /**
+     * @return the URL templates ({lang} and {path} placeholders) giving the URLs to invalidate for a published page
+     */
+    public List<String> getInvalidationUrlTemplates() {
+        return invalidationUrlTemplates;
+    }
+
+    public void setInvalidationUrlTemplates(List<String> invalidationUrlTemplates) {
+        this.invalidationUrlTemplates = List.copyOf(invalidationUrlTemplates);
+    }
+
+    /**
+     * @return the time in milliseconds invalidations are held to be deduplicated and sent together, 0 to send them at once
+     */
+    public long getInvalidationWindow() {
+        return invalidationWindow;
+    }
+
+    public void setInvalidationWindow(long invalidationWindow) {
+        this.invalidationWindow = invalidationWindow;
+    }
+
+    /**
+     * @return the number of paths above which the paths of a batch are collapsed into wildcard prefixes, 0 to never collapse
+     */
+    public int getInvalidationWildcardThreshold() {
+        return invalidationWildcardThreshold;
+    }
+
+    public void setInvalidationWildcardThreshold(int invalidationWildcardThreshold) {
+        this.invalidationWildcardThreshold = invalidationWildcardThreshold;
+    }
+
+    /**
+     * @return the number of times a failed invalidation request is retried
+     */
+    public int getInvalidationMaxRetries() {
+        return invalidationMaxRetries;
+    }
+
+    public void setInvalidationMaxRetries(int invalidationMaxRetries) {
+        this.invalidationMaxRetries = invalidationMaxRetries;
+    }
+
+    /**
+     * @return the delay in milliseconds before the first retry of a failed invalidation request, doubled on each retry
+     */
+    public long getInvalidationRetryDelay() {
+        return invalidationRetryDelay;
+    }
+
+    public void setInvalidationRetryDelay(long invalidationRetryDelay) {
+        this.invalidationRetryDelay = invalidationRetryDelay;
+    }
+
+    /**
+     * @return the minimum s-maxage in seconds of the adaptive template
+     */
+    public long getAdaptiveMinTtl() {
+        return adaptiveMinTtl;
+    }
+
+    public void setAdaptiveMinTtl(long adaptiveMinTtl) {
+        this.adaptiveMinTtl = adaptiveMinTtl;
+    }
+
+    /**
+     * @return the maximum s-maxage in seconds of the adaptive template
+     */
+    public long getAdaptiveMaxTtl() {
+        return adaptiveMaxTtl;
+    }
+
+    public void setAdaptiveMaxTtl(long adaptiveMaxTtl) {
+        this.adaptiveMaxTtl = adaptiveMaxTtl;
+    }
+
+    /**
+     * @return the number of cells per row of the URL change history sketch, 0 if changes are not recorded
+     */
+    public int getAdaptiveSketchWidth() {
+        return adaptiveSketchWidth;
+    }
+
+    public void setAdaptiveSketchWidth(int adaptiveSketchWidth) {
+        this.adaptiveSketchWidth = adaptiveSketchWidth;
+    }
+
+    /**
+     * @return the period in milliseconds after which the URL change counts are halved
+     */
+    public long getAdaptiveDecay() {
+        return adaptiveDecay;
+    }
+
+    public void setAdaptiveDecay(long adaptiveDecay) {
+        this.adaptiveDecay = adaptiveDecay;
+    }
+
+    /**
+     * @return the average number of requests in the chain above which the origin is under pressure, 0 to ignore
+     */
+    public long getLoadInFlightThreshold() {
+        return loadInFlightThreshold;
+    }
+
+    public void setLoadInFlightThreshold(long loadInFlightThreshold) {
+        this.loadInFlightThreshold = loadInFlightThreshold;
+    }
+
+    /**
+     * @return the average chain latency in milliseconds above which the origin is under pressure, 0 to ignore
+     */
+    public long getLoadLatencyThreshold() {
+        return loadLatencyThreshold;
+    }
+
+    public void setLoadLatencyThreshold(long loadLatencyThreshold) {
+        this.loadLatencyThreshold = loadLatencyThreshold;
+    }
+
+    /**
+     * @return the heap usage in percent above which the origin is under pressure, 0 to ignore
+     */
+    public long getLoadHeapThreshold() {
+        return loadHeapThreshold;
+    }
+
+    public void setLoadHeapThreshold(long loadHeapThreshold) {
+        this.loadHeapThreshold = loadHeapThreshold;
+    }
+
+    /**
+     * @return the factor the intermediates cache durations stretch is multiplied by on each evaluation under pressure
+     */
+    public int getLoadStretchStep() {
+        return loadStretchStep;
+    }
+
+    public void setLoadStretchStep(int loadStretchStep) {
+        this.loadStretchStep = loadStretchStep;
+    }
+
+    /**
+     * @return the maximum stretch factor of the intermediates cache durations, 1 to never stretch
+     */
+    public int getLoadMaxStretch() {
+        return loadMaxStretch;
+    }
+
+    public void setLoadMaxStretch(int loadMaxStretch) {
+        this.loadMaxStretch = loadMaxStretch;
+    }
+
+    /**
+     * @return the number of decisions of sampled requests kept for inspection, 0 to disable
+     */
+    public int getTraceSize() {
+        return traceSize;
+    }
+
+    public void setTraceSize(int traceSize) {
+        this.traceSize = traceSize;
+    }
+
+    /**
+     * @return one out of this number of requests has its decision recorded
+     */
+    public int getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    /**
+     * @return one out of this number of requests has the changes of its cache headers attributed to their caller, 0 to disable
+     */
+    public int getAttributionSampleRate() {
+        return attributionSampleRate;
+    }
+
+    public void setAttributionSampleRate(int attributionSampleRate) {
+        this.attributionSampleRate = attributionSampleRate;
+    }
+
+    /**
+     * @return the maximum number of stack frames walked to find the caller changing a cache header
+     */
+    public int getAttributionDepth() {
+        return attributionDepth;
+    }
+
+    public void setAttributionDepth(int attributionDepth) {
+        this.attributionDepth = attributionDepth;
+    }
+
+    /**
+     * @return the maximum number of (URL pattern, header, caller) entries of the attribution table
+     */
+    public int getAttributionSize() {
+        return attributionSize;
+    }
+
+    public void setAttributionSize(int attributionSize) {
+        this.attributionSize = attributionSize;
+    }
+
+    /**
+     * @return the number of most requested URLs tracked per response outcome, 0 to disable
+     */
+    public int getTopUrlsSize() {
+        return topUrlsSize;
+    }
+
+    public void setTopUrlsSize(int topUrlsSize) {
+        this.topUrlsSize = topUrlsSize;
+    }
+
+    /**
+     * @return the period in milliseconds after which the most requested URLs counts are halved, 0 to never decay
+     */
+    public long getTopUrlsDecay() {
+        return topUrlsDecay;
+    }
+
+    public void setTopUrlsDecay(long topUrlsDecay) {
+        this.topUrlsDecay = topUrlsDecay;
+    }
+}
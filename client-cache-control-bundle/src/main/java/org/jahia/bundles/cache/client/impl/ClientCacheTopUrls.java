@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.impl;
+
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
+import org.jahia.bundles.cache.client.api.ClientCacheTopUrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Most requested URLs for each response outcome, tracked in bounded memory with the space-saving algorithm: counters are keyed
+ * by request method and URI, a request without counter takes over the smallest one and inherits its count as possible
+ * overestimation. Counters are kept in min-heaps so that an update costs O(log size).
+ * Each outcome is striped in sketches of at most size counters, a request always being counted by the stripe of its key, so
+ * that concurrent requests on different URLs do not contend. Any URL requested more than total/size times is still guaranteed
+ * to be tracked. Updates never block request threads: like the resolution cache inserts, an update is skipped when another
+ * one is in progress on the same stripe, counts are then estimated from a sample of the traffic. Every decay period, all the
+ * counts are halved so that the URLs reflect the recent traffic, each stripe applies the elapsed periods on its next update
+ * or listing.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheTopUrls {
+
+    private static final int STRIPES = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()));
+
+    private final int size;
+    private final long decay;
+    private final Sketch[][] sketches = new Sketch[ClientCacheOutcome.values().length][STRIPES];
+    private final AtomicLong nextDecay;
+    private final AtomicInteger halvings = new AtomicInteger();
+
+    /**
+     * @param size the number of URLs tracked per outcome
+     * @param decay the period in milliseconds after which counts are halved, 0 to never decay
+     */
+    public ClientCacheTopUrls(int size, long decay) {
+        this(size, decay, System.currentTimeMillis());
+    }
+
+    /**
+     * @param size the number of URLs tracked per outcome
+     * @param decay the period in milliseconds after which counts are halved, 0 to never decay
+     * @param now the current time in milliseconds, the first decay happens one period later
+     */
+    public ClientCacheTopUrls(int size, long decay, long now) {
+        this.size = size;
+        this.decay = decay;
+        this.nextDecay = new AtomicLong(decay > 0 ? now + decay : Long.MAX_VALUE);
+        for (Sketch[] stripes : sketches) {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Sketch(size);
+            }
+        }
+    }
+
+    /**
+     * @return true if the tracker has been built with the given size and decay
+     */
+    public boolean hasSize(int size, long decay) {
+        return this.size == size && this.decay == decay;
+    }
+
+    /**
+     * @param preset the Cache-Control value preset by the filter, null if none
+     * @param defaultPreset true if the preset value is the default header
+     * @param value the final Cache-Control value of the response, null if none
+     * @return the outcome of the response, null if it has no Cache-Control header
+     */
+    public static ClientCacheOutcome outcome(String preset, boolean defaultPreset, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (defaultPreset && value.equals(preset)) {
+            return ClientCacheOutcome.DEFAULT;
+        }
+        return value.contains("private") || value.contains("no-store") ? ClientCacheOutcome.PRIVATE : ClientCacheOutcome.PUBLIC;
+    }
+
+    /**
+     * Count a request.
+     *
+     * @param outcome the outcome of the response
+     * @param method the request method
+     * @param uri the request URI
+     */
+    public void record(ClientCacheOutcome outcome, String method, String uri) {
+        record(outcome, method, uri, System.currentTimeMillis());
+    }
+
+    /**
+     * Count a request.
+     *
+     * @param outcome the outcome of the response
+     * @param method the request method
+     * @param uri the request URI
+     * @param now the current time in milliseconds
+     */
+    public void record(ClientCacheOutcome outcome, String method, String uri, long now) {
+        long next = nextDecay.get();
+        if (now >= next) {
+            long periods = 1 + (now - next) / decay;
+            if (nextDecay.compareAndSet(next, next + periods * decay)) {
+                halvings.addAndGet((int) Math.min(Integer.MAX_VALUE, periods));
+            }
+        }
+        String key = method + ' ' + uri;
+        int hash = key.hashCode();
+        sketches[outcome.ordinal()][(hash ^ (hash >>> 16)) & (STRIPES - 1)].offer(key, method, uri, halvings.get());
+    }
+
+    /**
+     * @param outcome the response outcome
+     * @param limit the maximum number of URLs
+     * @param rules the key of the rule matching a request (method, uri), null if none
+     * @return the URLs, most requested first
+     */
+    public List<ClientCacheTopUrl> list(ClientCacheOutcome outcome, int limit, BiFunction<String, String, String> rules) {
+        int current = halvings.get();
+        List<Counter> counters = new ArrayList<>();
+        for (Sketch sketch : sketches[outcome.ordinal()]) {
+            counters.addAll(Arrays.asList(sketch.snapshot(current)));
+        }
+        counters.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        List<ClientCacheTopUrl> result = new ArrayList<>();
+        for (int i = 0; i < counters.size() && i < limit; i++) {
+            Counter counter = counters.get(i);
+            result.add(new ClientCacheTopUrl(counter.method, counter.uri, counter.count, counter.error, rules.apply(counter.method, counter.uri)));
+        }
+        return result;
+    }
+
+    private static final class Counter {
+
+        private String key;
+        private String method;
+        private String uri;
+        private long count;
+        private long error;
+        private int index;
+
+        Counter(String key, String method, String uri, long count, long error, int index) {
+            this.key = key;
+            this.method = method;
+            this.uri = uri;
+            this.count = count;
+            this.error = error;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Space-saving sketch of one stripe of an outcome, counters keyed by request method and URI.
+     */
+    private static final class Sketch {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Counter> counters = new HashMap<>();
+        private final Counter[] heap;
+        private int length = 0;
+        private int halvings = 0;
+
+        Sketch(int size) {
+            this.heap = new Counter[size];
+        }
+
+        void offer(String key, String method, String uri, int current) {
+            if (heap.length == 0 || !lock.tryLock()) {
+                return;
+            }
+            try {
+                decay(current);
+                Counter counter = counters.get(key);
+                if (counter != null) {
+                    counter.count++;
+                } else if (length < heap.length) {
+                    counter = new Counter(key, method, uri, 1, 0, length);
+                    heap[length++] = counter;
+                    counters.put(key, counter);
+                    siftUp(counter.index);
+                    return;
+                } else {
+                    counter = heap[0];
+                    counters.remove(counter.key);
+                    counter.key = key;
+                    counter.method = method;
+                    counter.uri = uri;
+                    counter.error = counter.count;
+                    counter.count++;
+                    counters.put(key, counter);
+                }
+                siftDown(counter.index);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Halve all counts once per decay period elapsed since the last update, called with the lock held. Halving all counts
+         * keeps their order, the heap stays valid.
+         */
+        private void decay(int current) {
+            if (current == halvings) {
+                return;
+            }
+            int shift = Math.min(63, current - halvings);
+            halvings = current;
+            for (int i = 0; i < length; i++) {
+                heap[i].count >>= shift;
+                heap[i].error >>= shift;
+            }
+        }
+
+        Counter[] snapshot(int current) {
+            lock.lock();
+            try {
+                decay(current);
+                Counter[] snapshot = new Counter[length];
+                for (int i = 0; i < length; i++) {
+                    snapshot[i] = new Counter(heap[i].key, heap[i].method, heap[i].uri, heap[i].count, heap[i].error, i);
+                }
+                return snapshot;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void siftUp(int index) {
+            int current = index;
+            while (current > 0) {
+                int parent = (current - 1) / 2;
+                if (heap[parent].count <= heap[current].count) {
+                    return;
+                }
+                swap(parent, current);
+                current = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            int current = index;
+            while (true) {
+                int smallest = current;
+                int left = 2 * current + 1;
+                int right = left + 1;
+                if (left < length && heap[left].count < heap[smallest].count) {
+                    smallest = left;
+                }
+                if (right < length && heap[right].count < heap[smallest].count) {
+                    smallest = right;
+                }
+                if (smallest == current) {
+                    return;
+                }
+                swap(smallest, current);
+                current = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            Counter counter = heap[i];
+            heap[i] = heap[j];
+            heap[j] = counter;
+            heap[i].index = i;
+            heap[j].index = j;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.invalidation;
+
+import org.jahia.services.content.DefaultEventListener;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRSessionWrapper;
+import org.jahia.services.content.decorator.JCRSiteNode;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.util.*;
+
+/**
+ * Listen to the live workspace changes made by publications, and invalidate the pages they affect.
+ * A changed node invalidates its closest page ancestor (or itself if it is a page), in the language of the changed
+ * translation node, or in all the site languages. A removed node also invalidates its own path as it may have been a page.
+ * Events of a publication are received together, so each page is invalidated once per publication.
+ *
+ * @author Jerome Blanchard
+ */
+@Component(service = DefaultEventListener.class, immediate = true)
+public class ClientCacheInvalidationListener extends DefaultEventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheInvalidationListener.class);
+    private static final String LIVE_WORKSPACE = "live";
+    private static final String SITES_PATH = "/sites/";
+    private static final String TRANSLATION_PREFIX = "/j:translation_";
+    private static final String PAGE_TYPE = "jnt:page";
+    private static final int PROPERTY_EVENTS = Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private ClientCacheInvalidationService invalidationService;
+
+    @Reference(service = ClientCacheInvalidationService.class)
+    public void setInvalidationService(ClientCacheInvalidationService invalidationService) {
+        this.invalidationService = invalidationService;
+    }
+
+    @Activate
+    public void activate() {
+        setWorkspace(LIVE_WORKSPACE);
+        setAvailableDuringPublish(true);
+    }
+
+    @Override
+    public int getEventTypes() {
+        return Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED | PROPERTY_EVENTS;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        if (!invalidationService.isEnabled()) {
+            return;
+        }
+        // Node paths changed in all languages, and node paths changed in some languages only
+        Set<String> allLanguages = new LinkedHashSet<>();
+        Map<String, Set<String>> translations = new LinkedHashMap<>();
+        Set<String> removed = new HashSet<>();
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                String path = event.getPath();
+                if ((event.getType() & PROPERTY_EVENTS) != 0) {
+                    path = path.substring(0, path.lastIndexOf('/'));
+                }
+                if (!path.startsWith(SITES_PATH)) {
+                    continue;
+                }
+                int translation = path.indexOf(TRANSLATION_PREFIX);
+                if (translation > 0) {
+                    int end = path.indexOf('/', translation + 1);
+                    String language = path.substring(translation + TRANSLATION_PREFIX.length(), end < 0 ? path.length() : end);
+                    translations.computeIfAbsent(path.substring(0, translation), key -> new LinkedHashSet<>()).add(language);
+                } else {
+                    allLanguages.add(path);
+                    if (event.getType() == Event.NODE_REMOVED) {
+                        removed.add(path);
+                    }
+                }
+            } catch (RepositoryException e) {
+                LOGGER.debug("Unable to read event path", e);
+            }
+        }
+        translations.keySet().removeAll(allLanguages);
+        if (allLanguages.isEmpty() && translations.isEmpty()) {
+            return;
+        }
+        try {
+            JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentSystemSession(LIVE_WORKSPACE, null, null);
+            for (String path : allLanguages) {
+                invalidate(session, path, null, removed.contains(path));
+            }
+            for (Map.Entry<String, Set<String>> translation : translations.entrySet()) {
+                invalidate(session, translation.getKey(), translation.getValue(), false);
+            }
+        } catch (RepositoryException e) {
+            LOGGER.warn("Unable to resolve the pages to invalidate", e);
+        }
+    }
+
+    private void invalidate(JCRSessionWrapper session, String path, Set<String> languages, boolean removed) throws RepositoryException {
+        JCRSiteNode site = null;
+        String page = null;
+        String current = path;
+        // Walk up to the closest existing page, stopping at the site node
+        while (current.indexOf('/', SITES_PATH.length()) > 0) {
+            if (session.nodeExists(current)) {
+                JCRNodeWrapper node = session.getNode(current);
+                if (site == null) {
+                    site = node.getResolveSite();
+                }
+                if (node.isNodeType(PAGE_TYPE)) {
+                    page = current;
+                    break;
+                }
+            }
+            current = current.substring(0, current.lastIndexOf('/'));
+        }
+        Collection<String> pageLanguages = languages != null ? languages : site != null ? site.getLanguages() : null;
+        if (pageLanguages == null) {
+            LOGGER.debug("Unable to find the site languages of {}, not invalidated", path);
+            return;
+        }
+        if (removed) {
+            invalidationService.invalidatePage(path, pageLanguages);
+        }
+        if (page != null) {
+            invalidationService.invalidatePage(page, pageLanguages);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.invalidation;
+
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationException;
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationProvider;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous invalidation queue of a single provider.
+ * Submitted paths are held for the invalidation window and deduplicated, then sent in batches. When a batch holds more
+ * paths than the wildcard threshold and the provider supports it, paths are collapsed into wildcard prefixes. Batches are
+ * split according to the provider maximum paths per request and sent no faster than its minimum request interval. A
+ * retryable failure is retried with an exponential backoff, up to the configured number of retries.
+ * Batches are sent from a single thread owned by the pipeline, so calls to the provider are never concurrent, only the
+ * pending paths set is shared with submitting threads.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheInvalidationPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheInvalidationPipeline.class);
+    private static final String WILDCARD = "*";
+    private static final long MAX_RETRY_DELAY = 300000;
+
+    private final ClientCacheInvalidationProvider provider;
+    private final Supplier<ClientCacheSettings> settings;
+    private final ScheduledExecutorService executor;
+    private final Set<String> pending = new LinkedHashSet<>();
+    private boolean flushScheduled;
+    // Only accessed from the executor thread
+    private final Deque<Batch> batches = new ArrayDeque<>();
+    private boolean drainScheduled;
+    private long nextRequestTime;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder sentPaths = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param provider the invalidation provider
+     * @param settings supplier of the current service settings, read each time a batch is flushed or retried
+     */
+    public ClientCacheInvalidationPipeline(ClientCacheInvalidationProvider provider, Supplier<ClientCacheSettings> settings) {
+        this.provider = provider;
+        this.settings = settings;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "client-cache-invalidation-" + provider.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ClientCacheInvalidationProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Queue paths for invalidation, the first submission of a window schedules the flush of the window.
+     *
+     * @param paths the URL paths to invalidate
+     */
+    public void submit(Collection<String> paths) {
+        synchronized (pending) {
+            for (String path : paths) {
+                submitted.increment();
+                if (!pending.add(path)) {
+                    deduplicated.increment();
+                }
+            }
+            if (flushScheduled || pending.isEmpty()) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        try {
+            executor.schedule(this::flush, settings.get().getInvalidationWindow(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("[{}] Invalidation pipeline closed, {} paths dropped", provider.getName(), paths.size());
+        }
+    }
+
+    /**
+     * Stop the pipeline, pending invalidations are dropped.
+     */
+    public void close() {
+        List<Runnable> dropped = executor.shutdownNow();
+        int paths;
+        synchronized (pending) {
+            paths = pending.size();
+            pending.clear();
+        }
+        if (paths > 0 || !dropped.isEmpty()) {
+            LOGGER.warn("[{}] Invalidation pipeline closed, {} pending paths and {} scheduled tasks dropped", provider.getName(), paths, dropped.size());
+        }
+    }
+
+    private void flush() {
+        List<String> paths;
+        synchronized (pending) {
+            paths = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        int threshold = settings.get().getInvalidationWildcardThreshold();
+        if (provider.supportsWildcards() && threshold > 0 && paths.size() > threshold) {
+            int before = paths.size();
+            paths = collapse(paths, threshold);
+            collapsed.add((long) before - paths.size());
+            LOGGER.debug("[{}] {} paths collapsed into {} paths", provider.getName(), before, paths.size());
+        }
+        int max = provider.getMaxPathsPerRequest() > 0 ? provider.getMaxPathsPerRequest() : paths.size();
+        for (int i = 0; i < paths.size(); i += max) {
+            batches.add(new Batch(List.copyOf(paths.subList(i, Math.min(paths.size(), i + max)))));
+        }
+        if (!drainScheduled) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        drainScheduled = false;
+        while (!batches.isEmpty()) {
+            long wait = nextRequestTime - System.currentTimeMillis();
+            if (wait > 0) {
+                drainScheduled = true;
+                executor.schedule(this::drain, wait, TimeUnit.MILLISECONDS);
+                return;
+            }
+            Batch batch = batches.poll();
+            nextRequestTime = System.currentTimeMillis() + provider.getMinRequestInterval();
+            send(batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        try {
+            provider.invalidate(batch.paths);
+            requests.increment();
+            sentPaths.add(batch.paths.size());
+            LOGGER.debug("[{}] {} paths invalidated", provider.getName(), batch.paths.size());
+        } catch (ClientCacheInvalidationException e) {
+            ClientCacheSettings current = settings.get();
+            if (e.isRetryable() && batch.attempts < current.getInvalidationMaxRetries()) {
+                long delay = Math.min(MAX_RETRY_DELAY, current.getInvalidationRetryDelay() << Math.min(batch.attempts, 20));
+                batch.attempts++;
+                retries.increment();
+                LOGGER.warn("[{}] Invalidation of {} paths failed: {}, retry {}/{} in {}ms", provider.getName(), batch.paths.size(), e.getMessage(),
+                        batch.attempts, current.getInvalidationMaxRetries(), delay);
+                executor.schedule(() -> retry(batch), delay, TimeUnit.MILLISECONDS);
+            } else {
+                drop(batch, e);
+            }
+        } catch (RuntimeException e) {
+            drop(batch, e);
+        }
+    }
+
+    private void retry(Batch batch) {
+        batches.addFirst(batch);
+        if (!drainScheduled) {
+            drain();
+        }
+    }
+
+    private void drop(Batch batch, Exception e) {
+        failures.increment();
+        LOGGER.error("[{}] Invalidation of {} paths failed after {} attempts, dropped: {}", provider.getName(), batch.paths.size(), batch.attempts + 1,
+                batch.paths, e);
+    }
+
+    /**
+     * Collapse paths into wildcard prefixes until there are no more than the threshold.
+     * Paths are grouped by parent folder and the largest groups are replaced first by the folder followed by a wildcard. When
+     * every folder holds a single path, all paths are lifted to their parent folder. Paths covered by a wildcard prefix are
+     * removed.
+     *
+     * @param paths the paths to collapse
+     * @param threshold the maximum number of paths to return
+     * @return the collapsed paths, in order of first appearance
+     */
+    public static List<String> collapse(Collection<String> paths, int threshold) {
+        Set<String> result = new LinkedHashSet<>(paths);
+        while (result.size() > threshold) {
+            Map<String, List<String>> folders = new LinkedHashMap<>();
+            for (String path : result) {
+                String folder = folder(path);
+                if (folder != null) {
+                    folders.computeIfAbsent(folder, key -> new ArrayList<>()).add(path);
+                }
+            }
+            List<Map.Entry<String, List<String>>> groups = new ArrayList<>(folders.entrySet());
+            groups.removeIf(group -> group.getValue().size() < 2);
+            if (groups.isEmpty()) {
+                if (folders.isEmpty()) {
+                    break;
+                }
+                Set<String> lifted = new LinkedHashSet<>();
+                for (String path : result) {
+                    String folder = folder(path);
+                    lifted.add(folder != null ? folder + WILDCARD : path);
+                }
+                result = lifted;
+            } else {
+                groups.sort(Comparator.comparingInt((Map.Entry<String, List<String>> group) -> group.getValue().size()).reversed()
+                        .thenComparing(group -> group.getKey().length(), Comparator.reverseOrder()));
+                for (Map.Entry<String, List<String>> group : groups) {
+                    group.getValue().forEach(result::remove);
+                    result.add(group.getKey() + WILDCARD);
+                    if (result.size() <= threshold) {
+                        break;
+                    }
+                }
+            }
+            Set<String> collapsed = result;
+            collapsed.removeIf(path -> isCovered(path, collapsed));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @return the parent folder of the path with a trailing slash, null for a root path or the root wildcard
+     */
+    private static String folder(String path) {
+        int end = path.endsWith("/" + WILDCARD) ? path.length() - 2 : path.length() - 1;
+        int slash = end > 0 ? path.lastIndexOf('/', end - 1) : -1;
+        return slash >= 0 ? path.substring(0, slash + 1) : null;
+    }
+
+    private static boolean isCovered(String path, Set<String> paths) {
+        String folder = folder(path);
+        while (folder != null) {
+            if (paths.contains(folder + WILDCARD)) {
+                return true;
+            }
+            folder = folder(folder + WILDCARD);
+        }
+        return false;
+    }
+
+    public long getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getSentPathsCount() {
+        return sentPaths.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private static class Batch {
+
+        private final List<String> paths;
+        private int attempts;
+
+        private Batch(List<String> paths) {
+            this.paths = paths;
+        }
+    }
+}
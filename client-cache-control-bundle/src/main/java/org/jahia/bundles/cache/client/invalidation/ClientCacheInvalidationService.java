@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.invalidation;
+
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationProvider;
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.impl.ClientCacheResolver;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.osgi.service.component.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Send the URLs of published pages to the registered invalidation providers.
+ * The URLs of a page are given by the invalidation URL templates of the service configuration, only URLs resolved by the
+ * rules to a public template are kept as the others are not stored by intermediate caches. Each provider gets its own
+ * ClientCacheInvalidationPipeline, so that a slow or throttled provider does not delay the others.
+ * The URLs of published pages are also recorded in the change history of the adaptive template.
+ *
+ * @author Jerome Blanchard
+ */
+@Component(service = ClientCacheInvalidationService.class, immediate = true)
+public class ClientCacheInvalidationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheInvalidationService.class);
+    private static final String LANG_PLACEHOLDER = "{lang}";
+    private static final String PATH_PLACEHOLDER = "{path}";
+
+    private volatile ClientCacheServiceImpl service;
+    private final Map<ClientCacheInvalidationProvider, ClientCacheInvalidationPipeline> pipelines = new ConcurrentHashMap<>();
+
+    @Reference(service = ClientCacheService.class)
+    public void setService(ClientCacheService service) {
+        this.service = (ClientCacheServiceImpl) service;
+    }
+
+    @Reference(service = ClientCacheInvalidationProvider.class, cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            unbind = "removeProvider")
+    public void addProvider(ClientCacheInvalidationProvider provider) {
+        LOGGER.info("Adding invalidation provider {}", provider.getName());
+        pipelines.put(provider, new ClientCacheInvalidationPipeline(provider, () -> service.getResolver().getSettings()));
+    }
+
+    public void removeProvider(ClientCacheInvalidationProvider provider) {
+        LOGGER.info("Removing invalidation provider {}", provider.getName());
+        ClientCacheInvalidationPipeline pipeline = pipelines.remove(provider);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Deactivate
+    public void teardown() {
+        pipelines.values().forEach(ClientCacheInvalidationPipeline::close);
+        pipelines.clear();
+    }
+
+    /**
+     * @return true if at least one invalidation provider is registered or if URL changes are recorded
+     */
+    public boolean isEnabled() {
+        return !pipelines.isEmpty() || service.isRecordingChanges();
+    }
+
+    public Collection<ClientCacheInvalidationPipeline> getPipelines() {
+        return Collections.unmodifiableCollection(pipelines.values());
+    }
+
+    /**
+     * Invalidate the URLs of a published page.
+     *
+     * @param path the page node path
+     * @param languages the published languages
+     */
+    public void invalidatePage(String path, Collection<String> languages) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> urls = getUrls(path, languages);
+        LOGGER.debug("Invalidating {} URLs for page {}", urls.size(), path);
+        service.recordChanges(urls);
+        invalidate(urls);
+    }
+
+    /**
+     * Invalidate URLs on every registered provider.
+     *
+     * @param urls the URL paths
+     */
+    public void invalidate(Collection<String> urls) {
+        if (!urls.isEmpty()) {
+            pipelines.values().forEach(pipeline -> pipeline.submit(urls));
+        }
+    }
+
+    /**
+     * @param path the page node path
+     * @param languages the page languages
+     * @return the URLs of the page given by the invalidation URL templates, that the rules resolve to a public template
+     */
+    public List<String> getUrls(String path, Collection<String> languages) {
+        ClientCacheResolver resolver = service.getResolver();
+        List<String> urls = new ArrayList<>();
+        for (String template : resolver.getSettings().getInvalidationUrlTemplates()) {
+            String url = template.replace(PATH_PLACEHOLDER, path);
+            if (url.contains(LANG_PLACEHOLDER)) {
+                for (String language : languages) {
+                    addIfPublic(urls, resolver, url.replace(LANG_PLACEHOLDER, language));
+                }
+            } else {
+                addIfPublic(urls, resolver, url);
+            }
+        }
+        return urls;
+    }
+
+    private static void addIfPublic(List<String> urls, ClientCacheResolver resolver, String url) {
+        if (resolver.isPublic(resolver.lookup("GET", url))) {
+            urls.add(url);
+        } else {
+            LOGGER.debug("URL {} not resolved to a public template, not invalidated", url);
+        }
+    }
+}
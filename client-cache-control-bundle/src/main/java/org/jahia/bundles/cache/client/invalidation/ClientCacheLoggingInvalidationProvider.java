@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.invalidation;
+
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationProvider;
+import org.osgi.service.component.annotations.*;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Invalidation provider logging the invalidated paths and keeping the last requests in memory, to check the invalidation
+ * pipeline without a CDN. The provider is only registered when its configuration exists.
+ *
+ * @author Jerome Blanchard
+ */
+@Component(service = { ClientCacheInvalidationProvider.class, ClientCacheLoggingInvalidationProvider.class },
+        configurationPid = "org.jahia.bundles.cache.client.invalidation.logging", configurationPolicy = ConfigurationPolicy.REQUIRE, immediate = true)
+@Designate(ocd = ClientCacheLoggingInvalidationProvider.Config.class)
+public class ClientCacheLoggingInvalidationProvider implements ClientCacheInvalidationProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheLoggingInvalidationProvider.class);
+    private static final int HISTORY_SIZE = 100;
+
+    @ObjectClassDefinition(name = "org.jahia.bundles.cache.client.invalidation.logging", description = "%invalidation.logging.description",
+            localization = "OSGI-INF/l10n/clientCache")
+    public @interface Config {
+
+        @AttributeDefinition(name = "%invalidation.logging.maxPaths.name", description = "%invalidation.logging.maxPaths.description")
+        String max_paths_per_request() default "0";
+
+        @AttributeDefinition(name = "%invalidation.logging.minInterval.name", description = "%invalidation.logging.minInterval.description")
+        String min_request_interval() default "0";
+    }
+
+    private final Deque<List<String>> history = new ArrayDeque<>();
+    private volatile int maxPathsPerRequest;
+    private volatile long minRequestInterval;
+
+    @Activate
+    @Modified
+    public void setup(Config config) {
+        try {
+            this.maxPathsPerRequest = Math.max(0, Integer.parseInt(config.max_paths_per_request().trim()));
+            this.minRequestInterval = Math.max(0, Long.parseLong(config.min_request_interval().trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid logging invalidation provider configuration, using no limits", e);
+            this.maxPathsPerRequest = 0;
+            this.minRequestInterval = 0;
+        }
+    }
+
+    @Override public String getName() {
+        return "logging";
+    }
+
+    @Override public int getMaxPathsPerRequest() {
+        return maxPathsPerRequest;
+    }
+
+    @Override public long getMinRequestInterval() {
+        return minRequestInterval;
+    }
+
+    @Override public void invalidate(List<String> paths) {
+        LOGGER.info("Invalidating {} paths: {}", paths.size(), paths);
+        synchronized (history) {
+            if (history.size() == HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            history.addLast(List.copyOf(paths));
+        }
+    }
+
+    /**
+     * @return the paths of the last invalidation requests, oldest first
+     */
+    public List<List<String>> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.karaf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.jahia.bundles.cache.client.api.ClientCacheOverride;
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+
+import java.util.List;
+
+/**
+ * Karaf command to list the cache headers changes made by other components on sampled requests.
+ *
+ * @author Jerome Blanchard
+ */
+@Service
+@Command(
+        scope = "jahia",
+        name = "client-cache-overrides",
+        description = "List the client cache headers changes made by other components on sampled requests, by rule URL and caller")
+public class ClientCacheListOverridesAction implements Action {
+
+    @Reference
+    private ClientCacheService service;
+
+    @Argument(description = "format")
+    private String format;
+
+    @Override
+    public Object execute() throws Exception {
+        List<ClientCacheOverride> overrides = service.listOverrides();
+        if (format != null && format.equals("json")) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.writeValue(System.out, overrides);
+            return null;
+        }
+        ShellTable table = new ShellTable();
+        table.column("Count");
+        table.column("URL");
+        table.column("Header");
+        table.column("Caller");
+        table.column("Last URI");
+        table.column("Last Value");
+        for (ClientCacheOverride override : overrides) {
+            table.addRow().addContent(override.getCount(), override.getUrlPattern(), override.getHeader(), override.getCaller(),
+                    override.getLastUri(), override.getLastValue());
+        }
+        table.print(System.out);
+        return null;
+    }
+
+}
@@ -56,11 +56,13 @@ public class ClientCacheListRulesAction implements Action {
         ShellTable table = new ShellTable();
         table.column("Priority");
         table.column("Methods");
-        table.column("URL Regexp");
+        table.column("Match Type");
+        table.column("URL");
         table.column("Header");
         List<ClientCacheRule> rules = service.listRules();
         for (ClientCacheRule rule : rules) {
-            table.addRow().addContent(rule.getPriority(), rule.getMethods(), rule.getUrlRegexp(), rule.getHeader());
+            table.addRow().addContent(rule.getPriority(), rule.getMethods(), rule.getMatchType(), rule.getUrlExpression(),
+                    rule.getHeader());
         }
         table.print(System.out);
         return null;
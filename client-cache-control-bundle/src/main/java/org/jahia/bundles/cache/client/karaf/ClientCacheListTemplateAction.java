@@ -26,6 +26,7 @@ import org.jahia.bundles.cache.client.api.ClientCacheService;
 import org.jahia.bundles.cache.client.api.ClientCacheTemplate;
 
 import java.util.Collection;
+import java.util.Objects;
 
 /**
  * Karaf command to list current configured filtering rules.
@@ -56,9 +57,12 @@ public class ClientCacheListTemplateAction implements Action {
         ShellTable table = new ShellTable();
         table.column("Name");
         table.column("Value");
+        table.column("Surrogate-Control");
+        table.column("CDN-Cache-Control");
         Collection<ClientCacheTemplate> templates = service.listHeaderTemplates();
         for (ClientCacheTemplate template : templates) {
-            table.addRow().addContent(template.getName(), template.getTemplate());
+            table.addRow().addContent(template.getName(), template.getTemplate(), Objects.toString(template.getSurrogateControl(), ""),
+                    Objects.toString(template.getCdnCacheControl(), ""));
         }
         table.print(System.out);
         return templates;
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.karaf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.api.ClientCacheTopUrl;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Karaf command to list the most requested URLs for an outcome of the final Cache-Control header.
+ *
+ * @author Jerome Blanchard
+ */
+@Service
+@Command(
+        scope = "jahia",
+        name = "client-cache-top-urls",
+        description = "List the most requested URLs whose final Cache-Control header is private (default), public or the default one")
+public class ClientCacheTopUrlsAction implements Action {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Reference
+    private ClientCacheService service;
+
+    @Argument(index = 0, name = "outcome", description = "private, public or default")
+    private String outcome;
+
+    @Argument(index = 1, name = "limit", description = "Maximum number of URLs")
+    private Integer limit;
+
+    @Argument(index = 2, name = "format", description = "format")
+    private String format;
+
+    @Override
+    public Object execute() throws Exception {
+        ClientCacheOutcome selected = outcome != null ? ClientCacheOutcome.valueOf(outcome.toUpperCase(Locale.ROOT)) : ClientCacheOutcome.PRIVATE;
+        List<ClientCacheTopUrl> urls = service.listTopUrls(selected, limit != null ? limit : DEFAULT_LIMIT);
+        if (format != null && format.equals("json")) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.writeValue(System.out, urls);
+            return null;
+        }
+        ShellTable table = new ShellTable();
+        table.column("Count");
+        table.column("Error");
+        table.column("Method");
+        table.column("URI");
+        table.column("Rule");
+        for (ClientCacheTopUrl url : urls) {
+            table.addRow().addContent(url.getCount(), url.getError(), url.getMethod(), url.getUri(), url.getRule());
+        }
+        table.print(System.out);
+        return null;
+    }
+
+}
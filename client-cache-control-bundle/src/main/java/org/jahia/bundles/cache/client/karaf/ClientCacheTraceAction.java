@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.karaf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.jahia.bundles.cache.client.api.ClientCacheDecision;
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Karaf command to list the recorded Cache-Control decisions of sampled requests.
+ *
+ * @author Jerome Blanchard
+ */
+@Service
+@Command(
+        scope = "jahia",
+        name = "client-cache-trace",
+        description = "List the recorded client cache control decisions of sampled requests, most recent first")
+public class ClientCacheTraceAction implements Action {
+
+    @Reference
+    private ClientCacheService service;
+
+    @Argument(index = 0, name = "uri", description = "Regular expression the request URI must match")
+    private String uri;
+
+    @Argument(index = 1, name = "format", description = "format")
+    private String format;
+
+    @Override
+    public Object execute() throws Exception {
+        List<ClientCacheDecision> decisions = service.listDecisions(uri);
+        if (format != null && format.equals("json")) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.writeValue(System.out, decisions);
+            return null;
+        }
+        ShellTable table = new ShellTable();
+        table.column("Time");
+        table.column("Method");
+        table.column("URI");
+        table.column("Rule");
+        table.column("Preset");
+        table.column("Final");
+        table.column("Overridden");
+        table.column("Forced");
+        table.column("Elapsed (us)");
+        for (ClientCacheDecision decision : decisions) {
+            table.addRow().addContent(Instant.ofEpochMilli(decision.getTimestamp()), decision.getMethod(), decision.getUri(), decision.getRule(),
+                    decision.getPresetValue(), decision.getFinalValue(), decision.isOverridden(), decision.isForced(), decision.getElapsed() / 1000);
+        }
+        table.print(System.out);
+        return null;
+    }
+
+}
@@ -17,6 +17,9 @@ package org.jahia.bundles.cache.client.render;
 
 import org.apache.http.HttpHeaders;
 import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.filter.ClientCacheFilter;
+import org.jahia.bundles.cache.client.filter.ClientCacheHeaders;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterTemplate;
 import org.jahia.services.render.RenderContext;
 import org.jahia.services.render.Resource;
 import org.jahia.services.render.filter.AbstractFilter;
@@ -29,6 +32,9 @@ import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -41,6 +47,7 @@ import java.util.Optional;
 public class ClientCacheRenderFilter extends AbstractFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheRenderFilter.class);
+    private static final List<String> CDN_HEADERS = List.of(ClientCacheHeaders.SURROGATE_CONTROL, ClientCacheHeaders.CDN_CACHE_CONTROL);
 
     private ClientCacheService clientCacheService;
 
@@ -76,16 +83,54 @@ public class ClientCacheRenderFilter extends AbstractFilter {
     @Override
     public String execute(String previousOut, RenderContext renderContext, Resource resource, RenderChain chain) throws Exception {
         LOGGER.debug("Client Cache Policy Level set to {} with a TTL of {}", renderContext.getClientCachePolicy().getLevel().getValue(), renderContext.getClientCachePolicy().getTtl());
-        Optional<String> cacheControl = clientCacheService.getCacheControlHeader(renderContext.getClientCachePolicy().getLevel().getValue(),
-                Map.of(ClientCacheService.CC_CUSTOM_TTL_ATTR, Integer.toString(renderContext.getClientCachePolicy().getTtl())));
+        applyPolicy(renderContext.getRequest(), renderContext.getResponse(), renderContext.getClientCachePolicy().getLevel(),
+                renderContext.getClientCachePolicy().getTtl());
+        return super.execute(previousOut, renderContext, resource, chain);
+    }
+
+    /**
+     * Set the cache headers of the client cache policy level of the page. A public page whose URL rule preset the adaptive template
+     * keeps the adaptive header, so that the TTL estimated for its URL reaches the page.
+     *
+     * @param request the request
+     * @param response the response
+     * @param policyLevel the client cache policy level of the page
+     * @param ttl the client cache policy TTL of the page
+     */
+    public void applyPolicy(HttpServletRequest request, HttpServletResponse response, ClientCachePolicy.Level policyLevel, int ttl) {
+        boolean isPrivate = policyLevel == ClientCachePolicy.Level.PRIVATE;
+        if (isPrivate) {
+            // A private page must never be stored in the response cache, even if a later component sets a public header
+            request.setAttribute(ClientCacheFilter.CC_PRIVATE_ATTR, Boolean.TRUE);
+        }
+        Object adaptiveCacheControl = policyLevel == ClientCachePolicy.Level.PUBLIC ? request.getAttribute(ClientCacheFilter.CC_ADAPTIVE_ATTR) : null;
+        String level = adaptiveCacheControl != null ? ClientCacheFilterTemplate.ADAPTIVE : policyLevel.getValue();
+        Map<String, String> params = Map.of(ClientCacheService.CC_CUSTOM_TTL_ATTR, Integer.toString(ttl));
+        Optional<String> cacheControl = adaptiveCacheControl != null ? Optional.of((String) adaptiveCacheControl)
+                : clientCacheService.getCacheControlHeader(level, params);
         if (cacheControl.isPresent()) {
             LOGGER.debug("Setting Response Cache-Control to: {}", cacheControl.get());
-            // Use the Force-Cache-Control header to bypass strict mode because render chain cache control modification must be enforced whatever mode is used.
-            renderContext.getResponse().setHeader("Force-".concat(HttpHeaders.CACHE_CONTROL), cacheControl.get());
+            // Use the Force- prefix to bypass strict mode because render chain cache control modification must be enforced whatever mode is used.
+            String prefix = request.getAttribute(ClientCacheFilter.CC_PROTECTED_ATTR) != null ? ClientCacheHeaders.FORCE_PREFIX : "";
+            response.setHeader(prefix + HttpHeaders.CACHE_CONTROL, cacheControl.get());
+            Map<String, String> cdnHeaders = clientCacheService.getCdnCacheHeaders(level, params);
+            for (String name : CDN_HEADERS) {
+                String value = cdnHeaders.get(name);
+                if (value == null && isPrivate && response.containsHeader(name)) {
+                    // A CDN facing header preset from the URL rules must not let CDNs cache a private page
+                    value = "no-store";
+                }
+                if (value != null) {
+                    response.setHeader(prefix + name, value);
+                }
+            }
+            ClientCacheTagCollector tags = (ClientCacheTagCollector) request.getAttribute(ClientCacheTagCollector.TAGS_ATTR);
+            if (tags != null && !isPrivate) {
+                tags.emit(response);
+            }
         } else {
-            LOGGER.warn("Unable to find cache control value for render context client cache policy level: {}", renderContext.getClientCachePolicy().getLevel().getValue());
+            LOGGER.warn("Unable to find cache control value for render context client cache policy level: {}", policyLevel.getValue());
         }
-        return super.execute(previousOut, renderContext, resource, chain);
     }
 
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.render;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per request set of cache tags: the identifiers of the nodes rendered in a page and of the content they reference.
+ * Tags are deduplicated and capped: once the maximum number of tags is reached, the page only gets the tag of its site, so
+ * that it is still purged by a site wide invalidation. The site tag is always sent first.
+ * A collector is created by the ClientCacheTagFilter on the first fragment of a request and stored as request attribute, the
+ * ClientCacheRenderFilter sends it on public pages.
+ *
+ * @author Jerome Blanchard
+ */
+public class ClientCacheTagCollector {
+
+    /**
+     * Request attribute holding the collector of the request
+     */
+    public static final String TAGS_ATTR = "jahiaClientCacheTags";
+
+    public static final String SITE_TAG_PREFIX = "site-";
+
+    private static final String SURROGATE_KEY = "Surrogate-Key";
+
+    private final List<String> headers;
+    private final int maxTags;
+    private final String siteTag;
+    private final Set<String> tags = new LinkedHashSet<>();
+    private boolean overflow = false;
+
+    /**
+     * @param headers the names of the response headers the tags are sent in
+     * @param maxTags the maximum number of tags, excluding the site tag
+     * @param siteKey the key of the rendered site, null if none
+     */
+    public ClientCacheTagCollector(List<String> headers, int maxTags, String siteKey) {
+        this.headers = headers;
+        this.maxTags = maxTags;
+        this.siteTag = siteKey != null ? SITE_TAG_PREFIX + siteKey : null;
+    }
+
+    public void add(String tag) {
+        if (overflow || tags.contains(tag)) {
+            return;
+        }
+        if (tags.size() >= maxTags) {
+            overflow = true;
+            tags.clear();
+            return;
+        }
+        tags.add(tag);
+    }
+
+    public boolean isOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @param header the response header name
+     * @return the tags formatted for the header: space separated for Surrogate-Key, comma separated otherwise (Cache-Tag), or
+     * null if there is no tag to send
+     */
+    public String getHeaderValue(String header) {
+        String separator = SURROGATE_KEY.equalsIgnoreCase(header) ? " " : ",";
+        StringBuilder value = new StringBuilder(tags.size() * 37 + 32);
+        if (siteTag != null) {
+            value.append(siteTag);
+        }
+        for (String tag : tags) {
+            if (value.length() > 0) {
+                value.append(separator);
+            }
+            value.append(tag);
+        }
+        return value.length() == 0 ? null : value.toString();
+    }
+
+    /**
+     * Set the configured tags headers on the response
+     */
+    public void emit(HttpServletResponse response) {
+        for (String header : headers) {
+            String value = getHeaderValue(header);
+            if (value != null) {
+                response.setHeader(header, value);
+            }
+        }
+    }
+}
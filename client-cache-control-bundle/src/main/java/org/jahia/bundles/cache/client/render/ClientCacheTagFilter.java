@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.render;
+
+import org.jahia.bundles.cache.client.api.ClientCacheService;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.render.RenderContext;
+import org.jahia.services.render.Resource;
+import org.jahia.services.render.filter.AbstractFilter;
+import org.jahia.services.render.filter.RenderChain;
+import org.jahia.services.render.filter.RenderFilter;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Collect the identifiers of the nodes rendered in live mode, and of the nodes they reference, as cache tags of the request.
+ * The filter applies on every fragment before the aggregate cache filter, so fragments served from the cache are collected
+ * too. Tags are sent by the ClientCacheRenderFilter once the final client cache policy of the page is known.
+ *
+ * @author Jerome Blanchard
+ */
+@Component(service = RenderFilter.class, immediate = true)
+public class ClientCacheTagFilter extends AbstractFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCacheTagFilter.class);
+    private static final String REFERENCE_PROPERTY = "j:node";
+
+    private ClientCacheServiceImpl service;
+
+    @Reference(service = ClientCacheService.class)
+    public void setService(ClientCacheService service) {
+        this.service = (ClientCacheServiceImpl) service;
+    }
+
+    @Activate
+    public void activate() {
+        setDescription("Collect rendered nodes identifiers as client cache tags");
+        setPriority(15f);
+        setDisabled(false);
+        setApplyOnEditMode(false);
+        setSkipOnAjaxRequest(false);
+        LOGGER.debug("Client Cache Tag Filter activated");
+    }
+
+    @Override
+    public String prepare(RenderContext renderContext, Resource resource, RenderChain chain) throws Exception {
+        JCRNodeWrapper node = resource.getNode();
+        if (node != null && renderContext.isLiveMode()) {
+            ClientCacheTagCollector collector = getCollector(renderContext);
+            if (collector != null) {
+                collect(collector, node);
+            }
+        }
+        return super.prepare(renderContext, resource, chain);
+    }
+
+    private ClientCacheTagCollector getCollector(RenderContext renderContext) {
+        HttpServletRequest request = renderContext.getRequest();
+        ClientCacheTagCollector collector = (ClientCacheTagCollector) request.getAttribute(ClientCacheTagCollector.TAGS_ATTR);
+        if (collector == null) {
+            ClientCacheSettings settings = service.getResolver().getSettings();
+            if (settings.getCacheTagsHeaders().isEmpty()) {
+                return null;
+            }
+            collector = new ClientCacheTagCollector(settings.getCacheTagsHeaders(), settings.getCacheTagsMax(),
+                    renderContext.getSite() != null ? renderContext.getSite().getSiteKey() : null);
+            request.setAttribute(ClientCacheTagCollector.TAGS_ATTR, collector);
+        }
+        return collector;
+    }
+
+    private static void collect(ClientCacheTagCollector collector, JCRNodeWrapper node) {
+        if (collector.isOverflow()) {
+            return;
+        }
+        try {
+            collector.add(node.getIdentifier());
+            if (node.hasProperty(REFERENCE_PROPERTY)) {
+                Node reference = node.getProperty(REFERENCE_PROPERTY).getNode();
+                if (reference != null) {
+                    collector.add(reference.getIdentifier());
+                }
+            }
+        } catch (RepositoryException e) {
+            LOGGER.debug("Unable to collect cache tags of {}", node.getPath(), e);
+        }
+    }
+}
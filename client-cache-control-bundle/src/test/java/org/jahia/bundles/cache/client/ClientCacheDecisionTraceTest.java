@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.api.ClientCacheDecision;
+import org.jahia.bundles.cache.client.impl.ClientCacheDecisionTrace;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheDecisionTraceTest {
+
+    @Test
+    public void testRing() {
+        ClientCacheDecisionTrace trace = new ClientCacheDecisionTrace(4, 1);
+        Assert.assertTrue(trace.sample());
+        Assert.assertTrue(trace.list(null).isEmpty());
+        ClientCacheFilterRule rule = ClientCacheFilterRule.deserialize("3;GET|HEAD;glob:/modules/**;template:immutable");
+        for (int i = 0; i < 6; i++) {
+            trace.record("GET", "/modules/app/" + i + ".js", rule, "public, immutable", i == 5 ? "no-cache" : "public, immutable", false, 1000);
+        }
+        trace.record("GET", "/sites/digitall/home.html", null, null, null, false, 1000);
+        Assert.assertEquals(7, trace.getRecorded());
+        List<ClientCacheDecision> decisions = trace.list(null);
+        Assert.assertEquals(4, decisions.size());
+        Assert.assertEquals("/sites/digitall/home.html", decisions.get(0).getUri());
+        Assert.assertNull(decisions.get(0).getRule());
+        Assert.assertFalse(decisions.get(0).isOverridden());
+        Assert.assertEquals("/modules/app/5.js", decisions.get(1).getUri());
+        Assert.assertEquals("3.0;GET|HEAD;glob:/modules/**;template:immutable", decisions.get(1).getRule());
+        Assert.assertTrue(decisions.get(1).isOverridden());
+        Assert.assertEquals("/modules/app/3.js", decisions.get(3).getUri());
+        Assert.assertEquals(3, trace.list(Pattern.compile("^/modules/")).size());
+    }
+}
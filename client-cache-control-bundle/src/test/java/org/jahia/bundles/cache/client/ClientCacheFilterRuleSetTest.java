@@ -15,7 +15,11 @@
  */
 package org.jahia.bundles.cache.client;
 
+import org.jahia.bundles.cache.client.impl.ClientCacheCompiledRuleSet;
 import org.jahia.bundles.cache.client.impl.ClientCacheFilterRule;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRuleAnalyzer;
+import org.jahia.bundles.cache.client.impl.ClientCacheMatchBudgetExceededException;
+import org.jahia.bundles.cache.client.impl.ClientCacheMatchContext;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -88,6 +92,114 @@ public class ClientCacheFilterRuleSetTest {
         Assert.assertEquals("template:private", firstMatchingRule.get().getHeader());
     }
 
+    @Test
+    public void testCompiledRuleSetMatchesFirstRule() {
+        List<ClientCacheFilterRule> testRules = new LinkedList<>(rules);
+        testRules.add(ClientCacheFilterRule.deserialize("0.5;GET;/(a+)/\\1;template:private"));
+        testRules.add(ClientCacheFilterRule.deserialize("8;POST|PUT;.*;template:private"));
+        testRules.add(ClientCacheFilterRule.deserialize("0.8;PROPFIND|GET;/quiche(/.*)?;template:private"));
+        testRules.sort(ClientCacheFilterRule::compareTo);
+        ClientCacheCompiledRuleSet compiled = ClientCacheCompiledRuleSet.compile(testRules);
+        List<String> uris = List.of("/context/cms/logout", "/cms/render/live/en/sites/digitall/home.html", "/files/live/image.png",
+                "/ctx/repository/default", "/generated-resources", "/quiche", "/quiche/lorraine", "/aa/aa", "/aa/a", "/", "");
+        for (String method : List.of("GET", "HEAD", "POST", "PUT", "DELETE", "PROPFIND", "get")) {
+            for (String uri : uris) {
+                ClientCacheFilterRule expected = testRules.stream()
+                        .filter(rule -> rule.getMethods().contains(method) && rule.getUrlPattern().matcher(uri).matches())
+                        .findFirst().orElse(null);
+                Assert.assertEquals(method + " " + uri, expected, compiled.match(method, uri));
+            }
+        }
+        Assert.assertEquals("0.5", Float.toString(compiled.match("GET", "/aa/aa").getPriority()));
+    }
+
+    @Test
+    public void testCompiledDefaultRuleSetMatchesFirstRule() {
+        List<ClientCacheFilterRule> defaultRules = new LinkedList<>();
+        List.of("1;GET|HEAD;(?:/[^/]+)?/cms/render/live/.*;template:public",
+                "2;GET|HEAD;(?:/[^/]+)?/cms/.*;template:private",
+                "3;GET|HEAD;(?:/[^/]+)?/welcome.*;template:private",
+                "4;GET|HEAD;(?:/[^/]+)?/start;template:private",
+                "5;GET|HEAD;(?:/[^/]+)?/validateTicket;template:private",
+                "6;GET|HEAD;(?:/[^/]+)?/administration.*;template:private",
+                "7;GET|HEAD;(?:/[^/]+)?/files/.*;template:public-medium",
+                "8;GET|HEAD;(?:/[^/]+)?/repository/.*;template:public-medium",
+                "9;GET|HEAD;(?:/[^/]+)?/modules/.*;template:public-medium",
+                "10;GET|HEAD;(?:/[^/]+)?/engines/.*\\.jsp(\\?.*)?;template:private",
+                "11;GET|HEAD;(?:/[^/]+)?/tools(/.*)?;template:private",
+                "12;GET|HEAD;(?:/[^/]+)?/gwt/.*\\.nocache\\..*;template:private",
+                "13;GET|HEAD;(?:/[^/]+)?/generated-resources/.*;template:immutable",
+                "13.5;GET;/(?:files|modules)/special/.*;template:private",
+                "14;POST|DELETE|PATCH;.*;template:private",
+                "15;GET|HEAD;.*;template:public").forEach(rule -> defaultRules.add(ClientCacheFilterRule.deserialize(rule)));
+        defaultRules.sort(ClientCacheFilterRule::compareTo);
+        ClientCacheCompiledRuleSet compiled = ClientCacheCompiledRuleSet.compile(defaultRules);
+        List<String> uris = List.of("/cms/render/live/en/sites/digitall/home.html", "/jahia/cms/render/live/en/sites/digitall/home.html",
+                "/cms/edit/default/en/sites/digitall/home.html", "/cms", "/cms/", "/welcome", "/ctx/welcomeBack", "/start", "/ctx/start",
+                "/startup", "/validateTicket", "/administration/settings", "/files/live/sites/digitall/files/image.png", "/ctx/files/a",
+                "/files", "/repository/default/x", "/modules/assets/css/style.css", "/modules/special/x", "/files/special/y",
+                "/engines/manager.jsp", "/engines/manager.jsp?conf=files", "/tools", "/tools/", "/ctx/tools/jcrBrowser.jsp", "/toolsx",
+                "/gwt/resources/edit.nocache.js", "/generated-resources/abc.css", "/a/b/c/files/x", "//files/x", "/sites/digitall/home.html",
+                "/files/a\nb", "/ctx/start\n", "/", "");
+        for (String method : List.of("GET", "HEAD", "POST", "PATCH", "OPTIONS")) {
+            for (String uri : uris) {
+                ClientCacheFilterRule expected = defaultRules.stream()
+                        .filter(rule -> rule.getMethods().contains(method) && rule.getUrlPattern().matcher(uri).matches())
+                        .findFirst().orElse(null);
+                Assert.assertEquals(method + " " + uri, expected, compiled.match(method, uri));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchTypes() {
+        List<ClientCacheFilterRule> testRules = new LinkedList<>();
+        List.of("1;GET;exact:/start;template:private",
+                "2;GET;prefix:/files/;template:public-medium",
+                "3;GET;glob:/modules/**/*.js;template:immutable",
+                "4;GET;glob:/sites/?/*.html;template:public",
+                "5;GET;regex:/exact:.*;template:private",
+                "6;GET;glob:**.css;template:immutable").forEach(rule -> testRules.add(ClientCacheFilterRule.deserialize(rule)));
+        Assert.assertEquals("exact", testRules.get(0).getMatchType());
+        Assert.assertEquals("/start", testRules.get(0).getUrlExpression());
+        Assert.assertEquals("glob", testRules.get(2).getMatchType());
+        Assert.assertEquals("/modules/(?:(?s:.*)/)?[^/]*\\.js", testRules.get(2).getUrlRegexp());
+        Assert.assertEquals("regex", testRules.get(4).getMatchType());
+        Assert.assertEquals("/exact:.*", testRules.get(4).getUrlExpression());
+        ClientCacheCompiledRuleSet compiled = ClientCacheCompiledRuleSet.compile(testRules);
+        List<String> uris = List.of("/start", "/start/", "/ctx/start", "/files/", "/files/a\nb", "/files", "/modules/a.js", "/modules/a/b/c.js",
+                "/modules/a/b/c.jsx", "/modulesa.js", "/sites/a/home.html", "/sites/ab/home.html", "/sites/a/b/home.html", "/exact:x",
+                "/a/b.css", "style.css", "/", "");
+        for (String uri : uris) {
+            ClientCacheFilterRule expected = testRules.stream().filter(rule -> rule.getUrlPattern().matcher(uri).matches()).findFirst().orElse(null);
+            Assert.assertEquals(uri, expected, compiled.match("GET", uri));
+        }
+        Assert.assertEquals("3.0", Float.toString(compiled.match("GET", "/modules/a/b/c.js").getPriority()));
+        Assert.assertNull(compiled.match("GET", "/ctx/start"));
+    }
+
+    @Test
+    public void testCatastrophicBacktrackingIsBounded() {
+        Assert.assertTrue(ClientCacheFilterRuleAnalyzer.hasNestedQuantifier("/(a+)+$"));
+        Assert.assertTrue(ClientCacheFilterRuleAnalyzer.hasNestedQuantifier("(?:/[^/]+)?/(?:x.*){2,}"));
+        Assert.assertTrue(ClientCacheFilterRuleAnalyzer.hasNestedQuantifier("/((a|b)*c)*"));
+        Assert.assertFalse(ClientCacheFilterRuleAnalyzer.hasNestedQuantifier("(?:/[^/]+)?/engines/.*\\.jsp(\\?.*)?"));
+        Assert.assertFalse(ClientCacheFilterRuleAnalyzer.hasNestedQuantifier("/[(a+)+]*/(?:files|modules){1,2}"));
+
+        List<ClientCacheFilterRule> testRules = List.of(ClientCacheFilterRule.deserialize("1;GET;/(.*a){12}b;template:private"));
+        ClientCacheCompiledRuleSet compiled = ClientCacheCompiledRuleSet.compile(testRules);
+        String uri = "/" + "a".repeat(30);
+        try {
+            compiled.matchIndex("GET", new ClientCacheMatchContext(uri, 100000));
+            Assert.fail("Match budget should have been exceeded");
+        } catch (ClientCacheMatchBudgetExceededException e) {
+            LOGGER.info(e.getMessage());
+        }
+        ClientCacheMatchContext context = new ClientCacheMatchContext("/" + "a".repeat(12) + "b", 100000);
+        Assert.assertEquals(0, compiled.matchIndex("GET", context));
+        Assert.assertTrue(context.getSteps() > 0 && context.getSteps() <= 100000);
+    }
+
     private Optional<ClientCacheFilterRule> getFirstMatchingRule(String method, String url) {
         return rules.stream()
                 .filter(rule -> rule.getMethods().contains(method)
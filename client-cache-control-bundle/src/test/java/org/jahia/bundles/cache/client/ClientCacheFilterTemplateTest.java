@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterTemplate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheFilterTemplateTest {
+
+    private static final String CUSTOM = "public, must-revalidate, max-age=1, s-maxage=%%jahiaClientCacheCustomTTL%%, stale-while-revalidate=15";
+
+    @Test
+    public void testFilteredTemplate() {
+        ClientCacheFilterTemplate template = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.CUSTOM, CUSTOM);
+        Assert.assertTrue(template.isParametrized());
+        Assert.assertEquals("public, must-revalidate, max-age=1, s-maxage=42, stale-while-revalidate=15",
+                template.getFilteredTemplate(Map.of("jahiaClientCacheCustomTTL", "42")));
+        Assert.assertEquals("public, must-revalidate, max-age=1, s-maxage=42, stale-while-revalidate=15",
+                template.getFilteredTemplate(Map.of("jahiaClientCacheCustomTTL", "42")));
+        Assert.assertEquals("public, must-revalidate, max-age=1, s-maxage=$1\\, stale-while-revalidate=15",
+                template.getFilteredTemplate(Map.of("jahiaClientCacheCustomTTL", "$1\\")));
+        Assert.assertEquals(CUSTOM, template.getFilteredTemplate(Collections.emptyMap()));
+        Assert.assertEquals(CUSTOM, template.getFilteredTemplate(Map.of("other", "1")));
+    }
+
+    @Test
+    public void testTemplateWithoutPlaceholder() {
+        ClientCacheFilterTemplate template = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PRIVATE, "private, 100%% sure, %%not a param%%");
+        Assert.assertFalse(template.isParametrized());
+        Assert.assertEquals("private, 100%% sure, %%not a param%%", template.getFilteredTemplate(Map.of("not a param", "1")));
+    }
+
+    @Test
+    public void testSubstituteConfigTokens() {
+        Assert.assertEquals("public, max-age=1, s-maxage=60, stale-while-revalidate=15, ##unknown.ttl##",
+                ClientCacheFilterTemplate.substitute("public, max-age=1, s-maxage=##short.ttl##, stale-while-revalidate=15, ##unknown.ttl##",
+                        ClientCacheFilterTemplate.CONFIG_DELIMITER, Map.of("short.ttl", "60")));
+        Assert.assertEquals("max-age=2678400, s-maxage=2678400", ClientCacheFilterTemplate.substitute("max-age=##immutable.ttl##, s-maxage=##immutable.ttl##",
+                ClientCacheFilterTemplate.CONFIG_DELIMITER, Map.of("immutable.ttl", "2678400")));
+    }
+
+    @Test
+    public void testCdnHeaders() {
+        ClientCacheFilterTemplate template = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.CUSTOM, CUSTOM, "max-age=%%jahiaClientCacheCustomTTL%%", " ");
+        Assert.assertTrue(template.hasCdnHeaders());
+        Assert.assertEquals("max-age=42", template.getFilteredSurrogateControl(Map.of("jahiaClientCacheCustomTTL", "42")));
+        Assert.assertNull(template.getCdnCacheControl());
+        Assert.assertNull(template.getFilteredCdnCacheControl(Map.of("jahiaClientCacheCustomTTL", "42")));
+        Assert.assertFalse(new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC, "public, s-maxage=60").hasCdnHeaders());
+    }
+}
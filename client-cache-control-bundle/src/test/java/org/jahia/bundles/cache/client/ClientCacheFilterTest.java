@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.apache.http.HttpHeaders;
+import org.jahia.bundles.cache.client.ClientCacheServletMocks.MockRequest;
+import org.jahia.bundles.cache.client.ClientCacheServletMocks.MockResponse;
+import org.jahia.bundles.cache.client.filter.ClientCacheFilter;
+import org.jahia.bundles.cache.client.filter.ClientCacheHeaders;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRuleSetFactory;
+import org.jahia.bundles.cache.client.impl.ClientCacheLoadMonitor;
+import org.jahia.bundles.cache.client.impl.ClientCacheServiceImpl;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.jahia.bundles.cache.client.render.ClientCacheRenderFilter;
+import org.jahia.services.render.filter.cache.ClientCachePolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheFilterTest {
+
+    private static final String LIVE_RULE = "1;GET|HEAD;prefix:/cms/render/live/;template:public";
+
+    private ClientCacheServiceImpl service;
+
+    @After
+    public void teardown() {
+        if (service != null) {
+            service.teardown();
+        }
+    }
+
+    private ClientCacheFilter filter(Map<String, String> config, String... rules) throws Exception {
+        ClientCacheFilterRuleSetFactory factory = new ClientCacheFilterRuleSetFactory();
+        Hashtable<String, Object> properties = new Hashtable<>();
+        for (int i = 0; i < rules.length; i++) {
+            properties.put("rules[" + i + "]", rules[i]);
+        }
+        factory.updated("org.jahia.bundles.cache.client.ruleset-test", properties);
+        service = new ClientCacheServiceImpl();
+        service.setRuleSetFactory(factory);
+        service.setup((ClientCacheServiceImpl.Config) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ClientCacheServiceImpl.Config.class },
+                (proxy, method, args) -> config.getOrDefault(method.getName(), (String) method.getDefaultValue())));
+        ClientCacheFilter filter = new ClientCacheFilter();
+        filter.setService(service);
+        filter.activate();
+        return filter;
+    }
+
+    private static MockResponse doFilter(ClientCacheFilter filter, MockRequest request, FilterChain chain) throws Exception {
+        MockResponse response = new MockResponse();
+        filter.doFilter(request.proxy(), response.proxy(), chain);
+        return response;
+    }
+
+    @Test
+    public void testForcedHeaderInEveryMode() throws Exception {
+        FilterChain chain = (request, response) -> {
+            ((HttpServletResponse) response).setHeader("Force-Cache-Control", "no-store");
+            ((HttpServletResponse) response).addHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        };
+        for (String mode : new String[] { "overrides", "strict" }) {
+            ClientCacheFilter filter = filter(Map.of("mode", mode), LIVE_RULE);
+            for (String uri : new String[] { "/cms/render/live/en/home.html", "/files/default/image.png" }) {
+                MockResponse response = doFilter(filter, new MockRequest("GET", uri), chain);
+                Assert.assertNull(mode + " " + uri, response.header("Force-Cache-Control"));
+                // A filtered header is replaced, and ignored once protected by strict mode
+                Assert.assertEquals(mode + " " + uri, List.of(!"strict".equals(mode) || uri.startsWith("/files") ? "no-cache" : "no-store"),
+                        response.headers.get(HttpHeaders.CACHE_CONTROL));
+            }
+            service.teardown();
+        }
+        service = null;
+    }
+
+    @Test
+    public void testAttributionIsObserverOnly() throws Exception {
+        FilterChain chain = (request, response) -> {
+            ((HttpServletResponse) response).setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            ((HttpServletResponse) response).setHeader("Force-Expires", "0");
+            ((HttpServletResponse) response).addHeader("X-Custom", "value");
+        };
+        for (String mode : new String[] { "overrides", "strict" }) {
+            for (String uri : new String[] { "/cms/render/live/en/home.html", "/files/default/image.png" }) {
+                Map<String, List<String>> headers = null;
+                for (String rate : new String[] { "0", "1" }) {
+                    ClientCacheFilter filter = filter(Map.of("mode", mode, "attribution_sample_rate", rate), LIVE_RULE);
+                    MockResponse response = doFilter(filter, new MockRequest("GET", uri), chain);
+                    if (headers == null) {
+                        headers = response.headers;
+                    } else {
+                        Assert.assertEquals(mode + " " + uri, headers, response.headers);
+                        Assert.assertFalse(mode + " " + uri, service.getAttribution().list().isEmpty());
+                    }
+                    service.teardown();
+                }
+            }
+        }
+        service = null;
+    }
+
+    @Test
+    public void testAdaptivePresetOnRenderedPage() throws Exception {
+        for (String mode : new String[] { "overrides", "strict" }) {
+            ClientCacheFilter filter = filter(Map.of("mode", mode, "adaptive_min_ttl", "120"), "1;GET|HEAD;prefix:/cms/render/live/;template:adaptive");
+            ClientCacheRenderFilter renderFilter = new ClientCacheRenderFilter();
+            renderFilter.setClientCacheService(service);
+            String uri = "/cms/render/live/en/home.html";
+            String adaptive = service.getResolver().getAdaptiveHeader(uri);
+            Assert.assertTrue(adaptive.contains("s-maxage=120"));
+            // A public page keeps the TTL estimated for its URL
+            MockResponse response = doFilter(filter, new MockRequest("GET", uri), (request, r) ->
+                    renderFilter.applyPolicy((HttpServletRequest) request, (HttpServletResponse) r, ClientCachePolicy.Level.PUBLIC, 0));
+            Assert.assertEquals(mode, List.of(adaptive), response.headers.get(HttpHeaders.CACHE_CONTROL));
+            // Other page policies still apply
+            response = doFilter(filter, new MockRequest("GET", uri), (request, r) ->
+                    renderFilter.applyPolicy((HttpServletRequest) request, (HttpServletResponse) r, ClientCachePolicy.Level.PRIVATE, 0));
+            Assert.assertEquals(mode, service.getCacheControlHeader("private", Map.of()).orElseThrow(),
+                    response.header(HttpHeaders.CACHE_CONTROL));
+            service.teardown();
+        }
+        service = null;
+    }
+
+    @Test
+    public void testStretchedCdnHeaders() throws Exception {
+        filter(Map.of("load_inflight_threshold", "10", "load_max_stretch", "4", "surrogate_header_template_public", "max-age=300",
+                "cdn_header_template_immutable", "max-age=600"), LIVE_RULE);
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setLoadInFlightThreshold(10);
+        settings.setLoadMaxStretch(4);
+        ClientCacheLoadMonitor monitor = service.getLoadMonitor();
+        for (int i = 0; i < 30; i++) {
+            monitor.enter();
+        }
+        for (int i = 0; i < 4; i++) {
+            monitor.evaluate(settings);
+        }
+        Assert.assertEquals(4, monitor.getStretchFactor());
+        Assert.assertEquals(Map.of(ClientCacheHeaders.SURROGATE_CONTROL, "max-age=1200"), service.getCdnCacheHeaders("public", Map.of()));
+        // Only the stretchable templates are stretched
+        Assert.assertEquals(Map.of(ClientCacheHeaders.CDN_CACHE_CONTROL, "max-age=600"), service.getCdnCacheHeaders("immutable", Map.of()));
+    }
+
+    @Test
+    public void testEtag() throws Exception {
+        ClientCacheFilter filter = filter(Map.of("etag_templates", "public"), LIVE_RULE);
+        FilterChain chain = (request, response) -> response.getWriter().write("hello");
+        MockResponse response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), chain);
+        Assert.assertEquals("hello", response.body());
+        String etag = response.header(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+        MockRequest conditional = new MockRequest("GET", "/cms/render/live/en/home.html");
+        conditional.headers.put(HttpHeaders.IF_NONE_MATCH, etag);
+        response = doFilter(filter, conditional, chain);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        Assert.assertEquals("", response.body());
+        // Non blocking output is streamed without ETag
+        response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), (request, r) -> {
+            ServletOutputStream output = r.getOutputStream();
+            output.setWriteListener(new WriteListener() {
+                @Override public void onWritePossible() {
+                    // Written below
+                }
+
+                @Override public void onError(Throwable t) {
+                    Assert.fail(t.getMessage());
+                }
+            });
+            Assert.assertTrue(output.isReady());
+            output.write("hello".getBytes(StandardCharsets.UTF_8));
+        });
+        Assert.assertEquals("hello", response.body());
+        Assert.assertNull(response.header(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void testResponseCache() throws Exception {
+        ClientCacheFilter filter = filter(Map.of("response_cache_size", "100000"), LIVE_RULE);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            calls.incrementAndGet();
+            response.setContentType("text/html");
+            response.getWriter().write("page");
+        };
+        MockResponse response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), chain);
+        Assert.assertEquals("page", response.body());
+        response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), chain);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals("page", response.body());
+        Assert.assertEquals("text/html", response.contentType);
+        Assert.assertNotNull(response.header(HttpHeaders.AGE));
+        Assert.assertTrue(response.header(HttpHeaders.CACHE_CONTROL).startsWith("public"));
+    }
+
+    @Test
+    public void testConditionalResponseCacheMiss() throws Exception {
+        ClientCacheFilter filter = filter(Map.of("response_cache_size", "100000", "etag_templates", "public"), LIVE_RULE);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            calls.incrementAndGet();
+            Assert.assertNull(((HttpServletRequest) request).getHeader(HttpHeaders.IF_NONE_MATCH));
+            response.setContentType("text/html");
+            response.getWriter().write("page");
+        };
+        String etag = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), chain).header(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+        // The chain renders the complete response to store it, the request is answered from the stored response
+        MockRequest conditional = new MockRequest("GET", "/cms/render/live/en/other.html");
+        conditional.headers.put(HttpHeaders.IF_NONE_MATCH, etag);
+        MockResponse response = doFilter(filter, conditional, chain);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        Assert.assertEquals("", response.body());
+        response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/other.html"), chain);
+        Assert.assertEquals("page", response.body());
+        Assert.assertEquals(2, calls.get());
+        conditional = new MockRequest("GET", "/cms/render/live/en/new.html");
+        conditional.headers.put(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        response = doFilter(filter, conditional, chain);
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.status);
+        Assert.assertEquals("page", response.body());
+        // A held response that can not be stored is released as is
+        conditional = new MockRequest("GET", "/cms/render/live/en/cookie.html");
+        conditional.headers.put(HttpHeaders.IF_NONE_MATCH, etag);
+        response = doFilter(filter, conditional, (request, r) -> {
+            ((HttpServletResponse) r).addHeader("Set-Cookie", "a=b");
+            r.getWriter().write("page with cookie");
+        });
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.status);
+        Assert.assertEquals("page with cookie", response.body());
+    }
+
+    @Test
+    public void testUnstoredResponseBodyIsComplete() throws Exception {
+        ClientCacheFilter filter = filter(Map.of("response_cache_size", "100000"), LIVE_RULE);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain privateChain = (request, response) -> {
+            calls.incrementAndGet();
+            request.setAttribute(ClientCacheFilter.CC_PRIVATE_ATTR, Boolean.TRUE);
+            response.getWriter().write("private page");
+        };
+        FilterChain cookieChain = (request, response) -> {
+            calls.incrementAndGet();
+            ((HttpServletResponse) response).addHeader("Set-Cookie", "a=b");
+            response.getWriter().write("page with cookie");
+        };
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("private page", doFilter(filter, new MockRequest("GET", "/cms/render/live/en/private.html"), privateChain).body());
+            Assert.assertEquals("page with cookie", doFilter(filter, new MockRequest("GET", "/cms/render/live/en/cookie.html"), cookieChain).body());
+        }
+        Assert.assertEquals(4, calls.get());
+    }
+
+    private static Thread start(ClientCacheFilter filter, MockResponse response, FilterChain chain, AtomicReference<Throwable> error) {
+        Thread thread = new Thread(() -> {
+            try {
+                filter.doFilter(new MockRequest("GET", "/cms/render/live/en/home.html").proxy(), response.proxy(), chain);
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Wait for a follower to wait for the leader of its flight
+     */
+    private static void awaitWaiting(Thread follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (follower.getState() != Thread.State.TIMED_WAITING && follower.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * A chain holding the first request, the leader, until it is released, then running the leader action.
+     */
+    private static FilterChain leaderChain(AtomicInteger calls, CountDownLatch entered, CountDownLatch release, FilterChain leader,
+            FilterChain others) {
+        return (request, response) -> {
+            if (calls.incrementAndGet() == 1) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                leader.doFilter(request, response);
+            } else {
+                others.doFilter(request, response);
+            }
+        };
+    }
+
+    private void coalesce(String coalescingWait, FilterChain leader, FilterChain others, boolean releaseAfterFollower,
+            MockResponse leaderResponse, MockResponse followerResponse, AtomicReference<Throwable> leaderError, AtomicInteger calls)
+            throws Exception {
+        ClientCacheFilter filter = filter(Map.of("coalescing_wait", coalescingWait), LIVE_RULE);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain chain = leaderChain(calls, entered, release, leader, others);
+        Thread leaderThread = start(filter, leaderResponse, chain, leaderError);
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        AtomicReference<Throwable> followerError = new AtomicReference<>();
+        Thread followerThread = start(filter, followerResponse, chain, followerError);
+        if (releaseAfterFollower) {
+            followerThread.join(5000);
+            Assert.assertFalse(followerThread.isAlive());
+            release.countDown();
+        } else {
+            awaitWaiting(followerThread);
+            release.countDown();
+            followerThread.join(5000);
+            Assert.assertFalse(followerThread.isAlive());
+        }
+        leaderThread.join(5000);
+        Assert.assertFalse(leaderThread.isAlive());
+        Assert.assertNull(followerError.get());
+    }
+
+    @Test
+    public void testCoalescedReplay() throws Exception {
+        MockResponse leaderResponse = new MockResponse();
+        MockResponse followerResponse = new MockResponse();
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        coalesce("5000", (request, response) -> response.getWriter().write("leader"), (request, response) -> response.getWriter().write("other"),
+                false, leaderResponse, followerResponse, leaderError, calls);
+        Assert.assertNull(leaderError.get());
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals("leader", leaderResponse.body());
+        Assert.assertEquals("leader", followerResponse.body());
+        Assert.assertEquals(leaderResponse.header(HttpHeaders.CACHE_CONTROL), followerResponse.header(HttpHeaders.CACHE_CONTROL));
+        Assert.assertEquals(1, service.getMetrics().getCoalescedCount());
+        // Each request resolves the rules once, the leader does not resolve again going through the chain
+        Assert.assertEquals(2, service.getMetrics().getResolutionCount());
+    }
+
+    @Test
+    public void testCoalescingTimeout() throws Exception {
+        MockResponse leaderResponse = new MockResponse();
+        MockResponse followerResponse = new MockResponse();
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        // The leader is only released once the follower went through the chain on its own
+        coalesce("50", (request, response) -> response.getWriter().write("leader"), (request, response) -> response.getWriter().write("other"),
+                true, leaderResponse, followerResponse, leaderError, calls);
+        Assert.assertNull(leaderError.get());
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals("leader", leaderResponse.body());
+        Assert.assertEquals("other", followerResponse.body());
+        Assert.assertEquals(1, service.getMetrics().getCoalescingTimeoutCount());
+    }
+
+    @Test
+    public void testCoalescingUnsharedResponse() throws Exception {
+        MockResponse leaderResponse = new MockResponse();
+        MockResponse followerResponse = new MockResponse();
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        coalesce("5000", (request, response) -> {
+            ((HttpServletResponse) response).addHeader("Set-Cookie", "a=b");
+            response.getWriter().write("leader");
+        }, (request, response) -> response.getWriter().write("other"), false, leaderResponse, followerResponse, leaderError, calls);
+        Assert.assertNull(leaderError.get());
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals("leader", leaderResponse.body());
+        Assert.assertEquals("other", followerResponse.body());
+        Assert.assertNull(followerResponse.header("Set-Cookie"));
+    }
+
+    @Test
+    public void testCoalescingLeaderFailure() throws Exception {
+        MockResponse leaderResponse = new MockResponse();
+        MockResponse followerResponse = new MockResponse();
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        coalesce("10000", (request, response) -> {
+            throw new ServletException("failure");
+        }, (request, response) -> response.getWriter().write("other"), false, leaderResponse, followerResponse, leaderError, calls);
+        // The follower is released by the failed leader, long before the coalescing wait
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        Assert.assertTrue(leaderError.get() instanceof ServletException);
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals("other", followerResponse.body());
+    }
+
+    @Test
+    public void testStaleIfError() throws Exception {
+        ClientCacheFilter filter = filter(Map.of("response_cache_size", "100000"), LIVE_RULE);
+        MockResponse response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), (request, r) -> {
+            ((HttpServletResponse) r).setHeader(HttpHeaders.CACHE_CONTROL, "public, s-maxage=1, stale-if-error=600");
+            r.getWriter().write("good");
+        });
+        Assert.assertEquals("good", response.body());
+        Thread.sleep(1100);
+        // The chain throws
+        response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), (request, r) -> {
+            r.getWriter().write("partial");
+            throw new ServletException("failure");
+        });
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.status);
+        Assert.assertEquals("good", response.body());
+        Assert.assertNotNull(response.header(HttpHeaders.AGE));
+        // The chain answers a server error
+        response = doFilter(filter, new MockRequest("GET", "/cms/render/live/en/home.html"), (request, r) -> {
+            ((HttpServletResponse) r).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            r.getWriter().write("unavailable");
+        });
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.status);
+        Assert.assertEquals("good", response.body());
+        Assert.assertEquals(2, service.getMetrics().getStaleIfErrorCount());
+        // Without a last-good copy, the failure goes through
+        MockRequest other = new MockRequest("GET", "/cms/render/live/en/other.html");
+        response = doFilter(filter, other, (request, r) -> ((HttpServletResponse) r).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+        Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.status);
+        Assert.assertEquals(2, service.getMetrics().getStaleIfErrorCount());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.filter.ClientCacheHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheHeadersTest {
+
+    @Test
+    public void testFilteredHeadersIgnoreCase() {
+        for (String name : new String[] { "Cache-Control", "cache-control", "CACHE-CONTROL", "Expires", "expires", "Pragma", "PRAGMA",
+                "Surrogate-Control", "surrogate-control", "CDN-Cache-Control", "cdn-cache-control" }) {
+            Assert.assertTrue(name, ClientCacheHeaders.isFiltered(name));
+        }
+        for (String name : new String[] { "Cache-Controls", "Cache_Control", "Content-Security-Policy", "Expire", "Praxma", "ETag", "",
+                "Surrogate-Capability", "Surrogate-Controx", "CDN-Cache-Controls", "Access-Control-Max-Age" }) {
+            Assert.assertFalse(name, ClientCacheHeaders.isFiltered(name));
+        }
+    }
+
+    @Test
+    public void testForcedHeadersIgnoreCase() {
+        Assert.assertTrue(ClientCacheHeaders.isForced("Force-Cache-Control"));
+        Assert.assertTrue(ClientCacheHeaders.isForced("force-expires"));
+        Assert.assertEquals("expires", ClientCacheHeaders.unforce("force-expires"));
+        Assert.assertFalse(ClientCacheHeaders.isForced("Force-"));
+        Assert.assertFalse(ClientCacheHeaders.isForced("Forced-Cache-Control"));
+        Assert.assertFalse(ClientCacheHeaders.isForced("Access-Control-Allow-Origin"));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationException;
+import org.jahia.bundles.cache.client.api.ClientCacheInvalidationProvider;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.jahia.bundles.cache.client.invalidation.ClientCacheInvalidationPipeline;
+import org.jahia.bundles.cache.client.invalidation.ClientCacheLoggingInvalidationProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheInvalidationPipelineTest {
+
+    private static final String LIVE = "/cms/render/live/en/sites/digitall/";
+
+    private static ClientCacheSettings settings() {
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setInvalidationWindow(50);
+        settings.setInvalidationWildcardThreshold(3);
+        settings.setInvalidationMaxRetries(2);
+        settings.setInvalidationRetryDelay(10);
+        return settings;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testCollapse() {
+        List<String> paths = List.of(LIVE + "home.html", LIVE + "home/news/a.html", LIVE + "home/news/b.html", LIVE + "home/news/c.html",
+                LIVE + "home/about.html", LIVE + "home/news/archive/d.html");
+        Assert.assertEquals(paths, ClientCacheInvalidationPipeline.collapse(paths, 10));
+        Assert.assertEquals(List.of(LIVE + "home.html", LIVE + "home/about.html", LIVE + "home/news/*"),
+                ClientCacheInvalidationPipeline.collapse(paths, 3));
+        Assert.assertEquals(List.of(LIVE + "*"), ClientCacheInvalidationPipeline.collapse(paths, 1));
+        Assert.assertEquals(List.of("/*"), ClientCacheInvalidationPipeline.collapse(List.of("/a.html", "/b/c.html"), 1));
+        Assert.assertEquals(List.of("/*"), ClientCacheInvalidationPipeline.collapse(List.of("/*", "/a.html"), 0));
+    }
+
+    @Test
+    public void testDeduplicatedBatch() throws InterruptedException {
+        ClientCacheLoggingInvalidationProvider provider = new ClientCacheLoggingInvalidationProvider();
+        ClientCacheInvalidationPipeline pipeline = new ClientCacheInvalidationPipeline(provider, ClientCacheInvalidationPipelineTest::settings);
+        try {
+            pipeline.submit(List.of(LIVE + "home.html", LIVE + "home/about.html"));
+            pipeline.submit(List.of(LIVE + "home.html"));
+            pipeline.submit(List.of(LIVE + "home/news/a.html", LIVE + "home/news/b.html"));
+            await(() -> pipeline.getRequestCount() == 1);
+            Assert.assertEquals(List.of(List.of(LIVE + "home.html", LIVE + "home/about.html", LIVE + "home/news/*")), provider.getHistory());
+            Assert.assertEquals(5, pipeline.getSubmittedCount());
+            Assert.assertEquals(1, pipeline.getDeduplicatedCount());
+            Assert.assertEquals(1, pipeline.getCollapsedCount());
+            Assert.assertEquals(0, pipeline.getPendingCount());
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testRetryAndLimits() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        List<List<String>> sent = Collections.synchronizedList(new ArrayList<>());
+        List<Long> times = Collections.synchronizedList(new ArrayList<>());
+        ClientCacheInvalidationProvider provider = new ClientCacheInvalidationProvider() {
+
+            @Override public String getName() {
+                return "test";
+            }
+
+            @Override public boolean supportsWildcards() {
+                return false;
+            }
+
+            @Override public int getMaxPathsPerRequest() {
+                return 2;
+            }
+
+            @Override public long getMinRequestInterval() {
+                return 100;
+            }
+
+            @Override public void invalidate(List<String> paths) throws ClientCacheInvalidationException {
+                times.add(System.currentTimeMillis());
+                if (calls.getAndIncrement() == 0) {
+                    throw new ClientCacheInvalidationException("throttled");
+                }
+                sent.add(paths);
+            }
+        };
+        ClientCacheInvalidationPipeline pipeline = new ClientCacheInvalidationPipeline(provider, ClientCacheInvalidationPipelineTest::settings);
+        try {
+            pipeline.submit(List.of("/a.html", "/b.html", "/c.html", "/d.html", "/e.html"));
+            await(() -> pipeline.getRequestCount() == 3);
+            Assert.assertEquals(List.of(List.of("/a.html", "/b.html"), List.of("/c.html", "/d.html"), List.of("/e.html")), sent);
+            Assert.assertEquals(1, pipeline.getRetryCount());
+            Assert.assertEquals(0, pipeline.getFailureCount());
+            for (int i = 1; i < times.size(); i++) {
+                Assert.assertTrue(times.get(i) - times.get(i - 1) >= 100);
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.impl.ClientCacheLoadMonitor;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheLoadMonitorTest {
+
+    private static final String PUBLIC = "public, must-revalidate, max-age=1, s-maxage=60, stale-while-revalidate=15, stale-if-error=86400";
+    private static final String CDN = "max-age=300, stale-while-revalidate=15";
+
+    @Test
+    public void testStretch() {
+        Assert.assertEquals("public, must-revalidate, max-age=1, s-maxage=240, stale-while-revalidate=60, stale-if-error=86400",
+                ClientCacheLoadMonitor.stretch(PUBLIC, 4));
+        Assert.assertEquals("public, s-maxage=%%jahiaClientCacheCustomTTL%%", ClientCacheLoadMonitor.stretch("public,s-maxage=%%jahiaClientCacheCustomTTL%%", 4));
+        Assert.assertEquals("max-age=1200, stale-while-revalidate=60", ClientCacheLoadMonitor.stretchCdn(CDN, 4));
+    }
+
+    @Test
+    public void testHysteresis() {
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setLoadInFlightThreshold(10);
+        settings.setLoadMaxStretch(4);
+        ClientCacheLoadMonitor monitor = new ClientCacheLoadMonitor(() -> settings);
+        long[] starts = new long[30];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = monitor.enter();
+        }
+        monitor.evaluate(settings);
+        // Smoothed in flight requests (9) still below the threshold
+        Assert.assertEquals(1, monitor.getStretchFactor());
+        Assert.assertSame(PUBLIC, monitor.stretch(PUBLIC));
+        Assert.assertSame(CDN, monitor.stretchCdn(CDN));
+        for (int i = 0; i < 3; i++) {
+            monitor.evaluate(settings);
+        }
+        Assert.assertEquals(4, monitor.getStretchFactor());
+        Assert.assertEquals(2, monitor.getStretchChanges());
+        Assert.assertSame(monitor.stretch(PUBLIC), monitor.stretch(PUBLIC));
+        Assert.assertEquals("max-age=1200, stale-while-revalidate=60", monitor.stretchCdn(CDN));
+        Assert.assertSame(monitor.stretchCdn(CDN), monitor.stretchCdn(CDN));
+        for (long start : starts) {
+            monitor.exit(start);
+        }
+        // Smoothed in flight requests decreasing below 8 after a few evaluations, then 5 relieved evaluations per step
+        int evaluations = 0;
+        while (monitor.getStretchFactor() == 4) {
+            monitor.evaluate(settings);
+            evaluations++;
+        }
+        Assert.assertEquals(2, monitor.getStretchFactor());
+        Assert.assertTrue(evaluations >= 5);
+        for (int i = 0; i < 4; i++) {
+            monitor.evaluate(settings);
+        }
+        Assert.assertEquals(2, monitor.getStretchFactor());
+        monitor.evaluate(settings);
+        Assert.assertEquals(1, monitor.getStretchFactor());
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.api.ClientCacheOverride;
+import org.jahia.bundles.cache.client.impl.ClientCacheOverrideAttribution;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheOverrideAttributionTest {
+
+    @Test
+    public void testAttribution() {
+        ClientCacheOverrideAttribution attribution = new ClientCacheOverrideAttribution(1, 8, 2);
+        Assert.assertTrue(attribution.sample());
+        for (int i = 0; i < 3; i++) {
+            attribution.record("glob:/sites/**", "/sites/digitall/home" + i + ".html", "Cache-Control", "private");
+        }
+        attribution.record(ClientCacheOverrideAttribution.DEFAULT_PATTERN, "/any", "Expires", "0");
+        attribution.record("glob:/modules/**", "/modules/app.js", "Cache-Control", "no-cache");
+        List<ClientCacheOverride> overrides = attribution.list();
+        Assert.assertEquals(2, overrides.size());
+        Assert.assertEquals(1, attribution.getDropped());
+        ClientCacheOverride override = overrides.get(0);
+        Assert.assertEquals(3, override.getCount());
+        Assert.assertEquals("glob:/sites/**", override.getUrlPattern());
+        Assert.assertTrue(override.getCaller(), override.getCaller().startsWith(ClientCacheOverrideAttributionTest.class.getName() + ".testAttribution:"));
+        Assert.assertEquals("/sites/digitall/home2.html", override.getLastUri());
+        Assert.assertEquals("private", override.getLastValue());
+        // The caller is out of the walked frames
+        ClientCacheOverrideAttribution shallow = new ClientCacheOverrideAttribution(1, 1, 2);
+        shallow.record("glob:/sites/**", "/sites/digitall/home.html", "Cache-Control", "private");
+        Assert.assertEquals(ClientCacheOverrideAttribution.UNKNOWN_CALLER, shallow.list().get(0).getCaller());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.api.ClientCacheMode;
+import org.jahia.bundles.cache.client.impl.ClientCacheChangeSketch;
+import org.jahia.bundles.cache.client.impl.ClientCacheCompiledRuleSet;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterRule;
+import org.jahia.bundles.cache.client.impl.ClientCacheFilterTemplate;
+import org.jahia.bundles.cache.client.impl.ClientCacheMetrics;
+import org.jahia.bundles.cache.client.impl.ClientCacheResolver;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheResolverTest {
+
+    private static final Map<String, ClientCacheFilterTemplate> TEMPLATES = Map.of(
+            ClientCacheFilterTemplate.PRIVATE, new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PRIVATE, "private, no-cache"),
+            ClientCacheFilterTemplate.PUBLIC, new ClientCacheFilterTemplate(ClientCacheFilterTemplate.PUBLIC, "public, s-maxage=60"),
+            ClientCacheFilterTemplate.IMMUTABLE, new ClientCacheFilterTemplate(ClientCacheFilterTemplate.IMMUTABLE, "public, immutable"));
+
+    private static ClientCacheResolver resolver(ClientCacheMode mode) {
+        return resolver(mode, new ClientCacheMetrics());
+    }
+
+    private static ClientCacheResolver resolver(ClientCacheMode mode, ClientCacheMetrics metrics) {
+        List<ClientCacheFilterRule> rules = List.of("1;GET|HEAD;(?:/[^/]+)?/cms/render/live/.*;template:public",
+                "2;GET|HEAD;(?:/[^/]+)?/cms/.*;template:private",
+                "3;GET|HEAD;glob:/modules/**/*.js;template:immutable",
+                "4;POST;.*;no-store").stream().map(ClientCacheFilterRule::deserialize).sorted().collect(Collectors.toList());
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setMode(mode);
+        settings.setResolutionCacheSize(100);
+        settings.setEtagTemplates(Set.of(ClientCacheFilterTemplate.IMMUTABLE, "unknown"));
+        return new ClientCacheResolver(ClientCacheCompiledRuleSet.compile(rules), TEMPLATES, settings, metrics);
+    }
+
+    @Test
+    public void testResolve() {
+        ClientCacheMetrics metrics = new ClientCacheMetrics();
+        ClientCacheResolver resolver = resolver(ClientCacheMode.STRICT, metrics);
+        Assert.assertTrue(resolver.isStrict());
+        Assert.assertEquals("public, immutable", resolver.getDefaultHeader());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("public, s-maxage=60", resolver.resolve("GET", "/ctx/cms/render/live/en/home.html"));
+            Assert.assertEquals("private, no-cache", resolver.resolve("HEAD", "/cms/edit/default/en/home.html"));
+            Assert.assertEquals("public, immutable", resolver.resolve("GET", "/modules/app/js/main.js"));
+            Assert.assertEquals("no-store", resolver.resolve("POST", "/any"));
+            Assert.assertNull(resolver.resolve("GET", "/sites/digitall/home.html"));
+            Assert.assertNull(resolver.resolve("PROPFIND", "/cms/edit"));
+        }
+        Assert.assertEquals(5, resolver.getCache().size());
+        Assert.assertEquals(5, resolver.getCache().getHits());
+        Assert.assertEquals(12, metrics.getResolutionCount());
+        Assert.assertEquals(5, metrics.getCachedResolutionCount());
+        Assert.assertEquals(4, metrics.getNoMatchCount());
+        Assert.assertTrue(metrics.getEvaluatedRulesAverage() > 0);
+        Assert.assertEquals(Map.of(ClientCacheFilterTemplate.PUBLIC, 2L, ClientCacheFilterTemplate.PRIVATE, 2L, ClientCacheFilterTemplate.IMMUTABLE, 2L),
+                metrics.getTemplateHits());
+        Assert.assertEquals(Long.valueOf(2), metrics.getRuleHits().get("4.0;POST;regex:.*;no-store"));
+        Assert.assertTrue(metrics.getResolutionLatency(50) <= metrics.getResolutionLatency(99));
+        Assert.assertTrue(metrics.getResolutionLatency(100) <= metrics.getResolutionLatencyMax());
+        Assert.assertTrue(resolver.isEtagEnabled(resolver.resolve("GET", "/modules/app/js/main.js")));
+        Assert.assertFalse(resolver.isEtagEnabled(resolver.resolve("GET", "/cms/edit/default/en/home.html")));
+        Assert.assertFalse(resolver.isEtagEnabled(new String("public, immutable")));
+        Assert.assertTrue(resolver.isPublic(resolver.resolve("GET", "/ctx/cms/render/live/en/home.html")));
+        Assert.assertFalse(resolver.isPublic(resolver.resolve("GET", "/cms/edit/default/en/home.html")));
+        Assert.assertFalse(resolver.isPublic(resolver.resolve("POST", "/any")));
+    }
+
+    @Test
+    public void testResolveIndex() {
+        ClientCacheMetrics metrics = new ClientCacheMetrics();
+        ClientCacheResolver resolver = resolver(ClientCacheMode.ALLOW_OVERRIDES, metrics);
+        String uri = "/ctx/cms/render/live/en/home.html";
+        for (int i = 0; i < 2; i++) {
+            int index = resolver.resolveIndex("GET", uri);
+            Assert.assertEquals(ClientCacheFilterTemplate.PUBLIC, resolver.getRule(index).getHeaderTemplate());
+            Assert.assertSame(resolver.resolve("GET", uri), resolver.getHeader(index, uri));
+            index = resolver.resolveIndex("GET", "/sites/digitall/home.html");
+            Assert.assertNull(resolver.getRule(index));
+            Assert.assertNull(resolver.getHeader(index, "/sites/digitall/home.html"));
+        }
+        Assert.assertEquals(6, metrics.getResolutionCount());
+        Assert.assertEquals(4, metrics.getCachedResolutionCount());
+        Assert.assertEquals(Long.valueOf(4), metrics.getTemplateHits().get(ClientCacheFilterTemplate.PUBLIC));
+    }
+
+    @Test
+    public void testRetainRules() {
+        ClientCacheMetrics metrics = new ClientCacheMetrics();
+        ClientCacheResolver resolver = resolver(ClientCacheMode.ALLOW_OVERRIDES, metrics);
+        resolver.resolve("GET", "/ctx/cms/render/live/en/home.html");
+        resolver.resolve("POST", "/any");
+        List<ClientCacheFilterRule> rules = List.of("1;GET|HEAD;(?:/[^/]+)?/cms/render/live/.*;template:public", "5;PUT;.*;no-store")
+                .stream().map(ClientCacheFilterRule::deserialize).sorted().collect(Collectors.toList());
+        ClientCacheResolver relinked = resolver.relink(ClientCacheCompiledRuleSet.compile(rules));
+        metrics.retainRules(relinked.getRuleSet());
+        Assert.assertNull(metrics.getRuleHits().get("4.0;POST;regex:.*;no-store"));
+        Assert.assertEquals(2, metrics.getRuleHits().size());
+        relinked.resolve("GET", "/ctx/cms/render/live/en/home.html");
+        Assert.assertEquals(Long.valueOf(2), metrics.getRuleHits().get(rules.get(0).getKey()));
+        Assert.assertEquals(Long.valueOf(0), metrics.getRuleHits().get(rules.get(1).getKey()));
+    }
+
+    @Test
+    public void testLookup() {
+        ClientCacheMetrics metrics = new ClientCacheMetrics();
+        ClientCacheResolver resolver = resolver(ClientCacheMode.ALLOW_OVERRIDES, metrics);
+        String header = resolver.lookup("GET", "/ctx/cms/render/live/en/home.html");
+        Assert.assertEquals("public, s-maxage=60", header);
+        Assert.assertTrue(resolver.isPublic(header));
+        Assert.assertNull(resolver.lookup("GET", "/sites/digitall/home.html"));
+        // Neither counted nor cached
+        Assert.assertEquals(0, metrics.getResolutionCount());
+        Assert.assertEquals(0, resolver.getCache().size());
+        Assert.assertEquals(Long.valueOf(0), metrics.getTemplateHits().getOrDefault(ClientCacheFilterTemplate.PUBLIC, 0L));
+    }
+
+    @Test
+    public void testAdaptiveTemplate() {
+        ClientCacheFilterTemplate adaptive = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.ADAPTIVE,
+                "public, s-maxage=%%" + ClientCacheFilterTemplate.ADAPTIVE_TTL_PARAM + "%%");
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setResolutionCacheSize(100);
+        settings.setAdaptiveMinTtl(60);
+        settings.setAdaptiveMaxTtl(86400);
+        long now = System.currentTimeMillis();
+        ClientCacheChangeSketch sketch = new ClientCacheChangeSketch(1024, 7 * 86400000L, now - 20 * 86400000L);
+        ClientCacheResolver resolver = new ClientCacheResolver(
+                ClientCacheCompiledRuleSet.compile(List.of(ClientCacheFilterRule.deserialize("1;GET;glob:/sites/**;template:adaptive"))),
+                Map.of(ClientCacheFilterTemplate.ADAPTIVE, adaptive), settings, new ClientCacheMetrics(), sketch);
+        // Never changed since the history started 20 days ago
+        Assert.assertEquals("public, s-maxage=86400", resolver.resolve("GET", "/sites/digitall/about.html"));
+        for (int i = 0; i < 5; i++) {
+            sketch.record("/sites/digitall/news.html", now - 3 * 86400000L);
+        }
+        Assert.assertEquals(5, sketch.getCount("/sites/digitall/news.html"));
+        // A tenth of the shortest of the 3 days since the last change and the 7 days decay period per 5 changes, rounded down to a step
+        Assert.assertEquals("public, s-maxage=7680", resolver.resolve("GET", "/sites/digitall/news.html"));
+        sketch.record("/sites/digitall/news.html", now);
+        for (int i = 0; i < 2; i++) {
+            String header = resolver.resolve("GET", "/sites/digitall/news.html");
+            Assert.assertEquals("public, s-maxage=60", header);
+            Assert.assertTrue(resolver.isPublic(header));
+        }
+        Assert.assertEquals(2, resolver.getCache().size());
+    }
+
+    @Test
+    public void testAdaptiveIdleDecay() {
+        ClientCacheFilterTemplate adaptive = new ClientCacheFilterTemplate(ClientCacheFilterTemplate.ADAPTIVE,
+                "public, s-maxage=%%" + ClientCacheFilterTemplate.ADAPTIVE_TTL_PARAM + "%%");
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setAdaptiveMinTtl(60);
+        settings.setAdaptiveMaxTtl(86400);
+        long day = 86400000L;
+        long now = System.currentTimeMillis();
+        ClientCacheChangeSketch sketch = new ClientCacheChangeSketch(1024, 7 * day, now - 92 * day);
+        ClientCacheResolver resolver = new ClientCacheResolver(
+                ClientCacheCompiledRuleSet.compile(List.of(ClientCacheFilterRule.deserialize("1;GET;glob:/sites/**;template:adaptive"))),
+                Map.of(ClientCacheFilterTemplate.ADAPTIVE, adaptive), settings, new ClientCacheMetrics(), sketch);
+        // 20 publications in a day, then 90 idle days
+        for (int i = 0; i < 20; i++) {
+            sketch.record("/sites/digitall/news.html", now - 91 * day + i * day / 20);
+        }
+        Assert.assertEquals(20, sketch.getCount("/sites/digitall/news.html", now - 90 * day));
+        // A publication of another URL decays the counts by the 12 elapsed periods
+        sketch.record("/sites/digitall/about.html", now);
+        Assert.assertEquals(0, sketch.getCount("/sites/digitall/news.html", now));
+        Assert.assertEquals("public, s-maxage=86400", resolver.resolve("GET", "/sites/digitall/news.html"));
+        Assert.assertEquals("public, s-maxage=60", resolver.resolve("GET", "/sites/digitall/about.html"));
+        // Without any publication, reads decay the counts as well
+        sketch = new ClientCacheChangeSketch(1024, 7 * day, now - 92 * day);
+        for (int i = 0; i < 20; i++) {
+            sketch.record("/sites/digitall/news.html", now - 91 * day + i * day / 20);
+        }
+        Assert.assertEquals(0, sketch.getCount("/sites/digitall/news.html", now));
+        Assert.assertEquals(90 * 86400 / 10, sketch.estimateTtl("/sites/digitall/news.html", now), 86400 / 10);
+    }
+
+    @Test
+    public void testCachedResolutionDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        ClientCacheResolver resolver = resolver(ClientCacheMode.ALLOW_OVERRIDES);
+        List<String> uris = List.of("/ctx/cms/render/live/en/home.html", "/cms/edit/default/en/home.html", "/modules/app/js/main.js",
+                "/sites/digitall/home.html");
+        int found = 0;
+        for (int i = 0; i < 20000; i++) {
+            found += resolver.resolve("GET", uris.get(i & 3)) != null ? 1 : 0;
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            found += resolver.resolve("GET", uris.get(i & 3)) != null ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertEquals(90000, found);
+        // Only tolerate the few bytes allocated by the measurement itself
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
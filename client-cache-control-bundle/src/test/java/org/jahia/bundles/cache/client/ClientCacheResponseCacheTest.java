@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.apache.http.HttpHeaders;
+import org.jahia.bundles.cache.client.ClientCacheServletMocks.MockRequest;
+import org.jahia.bundles.cache.client.ClientCacheServletMocks.MockResponse;
+import org.jahia.bundles.cache.client.filter.ClientCacheCapturingResponseWrapper;
+import org.jahia.bundles.cache.client.filter.ClientCacheFilter;
+import org.jahia.bundles.cache.client.filter.ClientCacheResponseCache;
+import org.jahia.bundles.cache.client.impl.ClientCacheCompiledRuleSet;
+import org.jahia.bundles.cache.client.impl.ClientCacheMetrics;
+import org.jahia.bundles.cache.client.impl.ClientCacheResolver;
+import org.jahia.bundles.cache.client.impl.ClientCacheSettings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheResponseCacheTest {
+
+    private static final String PUBLIC = "public, must-revalidate, max-age=1, s-maxage=60, stale-while-revalidate=30, stale-if-error=600";
+
+    private static ClientCacheResponseCache cache(long size, ClientCacheMetrics metrics) {
+        ClientCacheSettings settings = new ClientCacheSettings();
+        settings.setResponseCacheSize(size);
+        settings.setResponseCacheMaxEntrySize(4096);
+        settings.setResponseCacheVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        return new ClientCacheResponseCache(new ClientCacheResolver(ClientCacheCompiledRuleSet.EMPTY, Map.of(), settings, metrics), metrics);
+    }
+
+    private static ClientCacheResponseCache.Entry store(ClientCacheResponseCache cache, MockRequest request, String body,
+            Consumer<HttpServletResponse> chain) throws IOException {
+        ClientCacheCapturingResponseWrapper response = new ClientCacheCapturingResponseWrapper(new MockResponse().proxy(), 4096, false, false);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, PUBLIC);
+        response.setContentType("text/html");
+        chain.accept(response);
+        response.getWriter().write(body);
+        return cache.complete(cache.key(request.proxy()), request.proxy(), response);
+    }
+
+    private static ClientCacheResponseCache.Entry store(ClientCacheResponseCache cache, String uri, String body) throws IOException {
+        return store(cache, new MockRequest("GET", uri), body, response -> { });
+    }
+
+    @Test
+    public void testSharedLifetimes() {
+        Assert.assertArrayEquals(new long[] { 60, 15, 0 },
+                ClientCacheResponseCache.lifetimes("public, must-revalidate, max-age=1, s-maxage=60, stale-while-revalidate=15"));
+        Assert.assertArrayEquals(new long[] { 60, 15, 86400 },
+                ClientCacheResponseCache.lifetimes("public, max-age=1, s-maxage=60, stale-while-revalidate=15, stale-if-error=86400"));
+        Assert.assertArrayEquals(new long[] { 600, 0, 0 }, ClientCacheResponseCache.lifetimes("Public, Max-Age=600"));
+        Assert.assertArrayEquals(new long[] { 60, 0, 0 },
+                ClientCacheResponseCache.lifetimes("public, s-maxage=60, proxy-revalidate, stale-while-revalidate=15, stale-if-error=60"));
+    }
+
+    @Test
+    public void testNotStored() {
+        Assert.assertNull(ClientCacheResponseCache.lifetimes(null));
+        Assert.assertNull(ClientCacheResponseCache.lifetimes("private, no-cache, no-store, must-revalidate, proxy-revalidate, max-age=0"));
+        Assert.assertNull(ClientCacheResponseCache.lifetimes("public, s-maxage=60, private"));
+        Assert.assertNull(ClientCacheResponseCache.lifetimes("public, no-cache, s-maxage=60"));
+        Assert.assertNull(ClientCacheResponseCache.lifetimes("public, s-maxage=0, max-age=60"));
+        Assert.assertNull(ClientCacheResponseCache.lifetimes("s-maxage=60"));
+    }
+
+    @Test
+    public void testStoreAndServe() throws IOException {
+        ClientCacheResponseCache cache = cache(100000, new ClientCacheMetrics());
+        MockRequest request = new MockRequest("GET", "/cms/render/live/en/home.html");
+        request.query = "page=2";
+        request.headers.put(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        String key = cache.key(request.proxy());
+        Assert.assertEquals("localhost/cms/render/live/en/home.html?page=2\ngzip", key);
+        ClientCacheResponseCache.Entry entry = store(cache, request, "hello", response -> response.setHeader(HttpHeaders.ETAG, "\"v1\""));
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertSame(entry, cache.lookup(key));
+        MockResponse served = new MockResponse();
+        cache.serve(entry, request.proxy(), served.proxy());
+        Assert.assertEquals("hello", served.body());
+        Assert.assertEquals(HttpServletResponse.SC_OK, served.status);
+        Assert.assertEquals("text/html", served.contentType);
+        Assert.assertEquals(PUBLIC, served.header(HttpHeaders.CACHE_CONTROL));
+        Assert.assertEquals("0", served.header(HttpHeaders.AGE));
+        request.headers.put(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        served = new MockResponse();
+        cache.serve(entry, request.proxy(), served.proxy());
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, served.status);
+        Assert.assertEquals("", served.body());
+    }
+
+    @Test
+    public void testConditionalAnswerKeepsEntry() throws IOException {
+        ClientCacheResponseCache cache = cache(100000, new ClientCacheMetrics());
+        MockRequest request = new MockRequest("GET", "/home.html");
+        ClientCacheResponseCache.Entry entry = store(cache, request, "hello", response -> { });
+        Assert.assertNotNull(entry);
+        // A revalidation answered by the chain tells nothing about the stored response
+        Assert.assertNull(store(cache, request, "", response -> response.setStatus(HttpServletResponse.SC_NOT_MODIFIED)));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertSame(entry, cache.lookupLastGood(cache.key(request.proxy())));
+    }
+
+    @Test
+    public void testExclusions() throws IOException {
+        ClientCacheResponseCache cache = cache(100000, new ClientCacheMetrics());
+        MockRequest request = new MockRequest("GET", "/home.html");
+        request.headers.put(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpwd2Q=");
+        Assert.assertNull(cache.key(request.proxy()));
+        request = new MockRequest("GET", "/home.html");
+        request.sessionId = "0123456789";
+        Assert.assertNull(cache.key(request.proxy()));
+        Assert.assertNull(cache.key(new MockRequest("POST", "/home.html").proxy()));
+
+        Assert.assertNotNull(store(cache, "/home.html", "hello"));
+        Assert.assertEquals(1, cache.size());
+        // A response that can no longer be stored drops the stored one
+        Assert.assertNull(store(cache, new MockRequest("GET", "/home.html"), "hello", response -> response.addHeader("Set-Cookie", "a=b")));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(store(cache, new MockRequest("GET", "/home.html"), "hello", response -> response.setHeader(HttpHeaders.VARY, "Cookie")));
+        Assert.assertNull(store(cache, new MockRequest("GET", "/home.html"), "hello", response -> response.setStatus(HttpServletResponse.SC_NOT_FOUND)));
+        Assert.assertNull(store(cache, new MockRequest("GET", "/home.html"), "hello",
+                response -> response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache")));
+        MockRequest privateRequest = new MockRequest("GET", "/home.html");
+        privateRequest.attributes.put(ClientCacheFilter.CC_PRIVATE_ATTR, Boolean.TRUE);
+        Assert.assertNull(store(cache, privateRequest, "hello", response -> { }));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNotNull(store(cache, new MockRequest("GET", "/home.html"), "hello",
+                response -> response.setHeader(HttpHeaders.VARY, "accept-encoding")));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testStaleWindows() throws IOException {
+        ClientCacheMetrics metrics = new ClientCacheMetrics();
+        ClientCacheResponseCache cache = cache(100000, metrics);
+        ClientCacheResponseCache.Entry entry = store(cache, "/home.html", "hello");
+        String key = cache.key(new MockRequest("GET", "/home.html").proxy());
+        long storedAt = entry.getStoredAt();
+        Assert.assertSame(entry, cache.lookup(key, storedAt + 59000));
+        // Within stale-while-revalidate, a single request refreshes the entry while the others get the stale copy
+        Assert.assertNull(cache.lookup(key, storedAt + 61000));
+        Assert.assertSame(entry, cache.lookup(key, storedAt + 61000));
+        Assert.assertSame(entry, cache.lookup(key, storedAt + 61000));
+        cache.abort(key);
+        Assert.assertNull(cache.lookup(key, storedAt + 61000));
+        Assert.assertNull(cache.lookup(key, storedAt + 91000));
+        Assert.assertNull(cache.lookup(key, storedAt + 91000));
+        // Then kept as last-good copy within stale-if-error
+        Assert.assertSame(entry, cache.lookupLastGood(key, storedAt + 91000));
+        Assert.assertNull(cache.lookupLastGood(key, storedAt + 661000));
+        Assert.assertEquals(1, metrics.getResponseCacheHitCount());
+        Assert.assertEquals(2, metrics.getResponseCacheStaleHitCount());
+        Assert.assertEquals(4, metrics.getResponseCacheMissCount());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        String body = "x".repeat(1000);
+        ClientCacheResponseCache cache = cache(3000, new ClientCacheMetrics());
+        store(cache, "/one.html", body);
+        store(cache, "/two.html", body);
+        Assert.assertEquals(2, cache.size());
+        // Referenced entries get a second chance
+        Assert.assertNotNull(cache.lookup(cache.key(new MockRequest("GET", "/one.html").proxy())));
+        store(cache, "/three.html", body);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.getWeight() <= 3000);
+        Assert.assertNotNull(cache.lookup(cache.key(new MockRequest("GET", "/one.html").proxy())));
+        Assert.assertNull(cache.lookup(cache.key(new MockRequest("GET", "/two.html").proxy())));
+        Assert.assertNotNull(cache.lookup(cache.key(new MockRequest("GET", "/three.html").proxy())));
+        // An entry larger than the whole cache is not stored
+        Assert.assertNotNull(store(cache, "/large.html", "x".repeat(4000)));
+        Assert.assertNull(cache.lookup(cache.key(new MockRequest("GET", "/large.html").proxy())));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal servlet request and response backed by plain state, the methods that are not implemented fail the test.
+ *
+ * @author Jerome Blanchard
+ */
+final class ClientCacheServletMocks {
+
+    private ClientCacheServletMocks() {
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ClientCacheServletMocks.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    static final class MockRequest implements InvocationHandler {
+
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final Map<String, Object> attributes = new HashMap<>();
+        String method;
+        String uri;
+        String query;
+        String sessionId;
+        boolean asyncStarted;
+
+        MockRequest(String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        HttpServletRequest proxy() {
+            return ClientCacheServletMocks.proxy(HttpServletRequest.class, this);
+        }
+
+        @Override public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "getMethod":
+                    return method;
+                case "getRequestURI":
+                    return uri;
+                case "getQueryString":
+                    return query;
+                case "getServerName":
+                    return "localhost";
+                case "getRequestedSessionId":
+                    return sessionId;
+                case "isAsyncStarted":
+                    return asyncStarted;
+                case "getHeader":
+                    return headers.get((String) args[0]);
+                case "getAttribute":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    attributes.remove((String) args[0]);
+                    return null;
+                case "toString":
+                    return method + " " + uri;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException("HttpServletRequest." + m.getName());
+            }
+        }
+    }
+
+    static final class MockResponse implements InvocationHandler {
+
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int status = HttpServletResponse.SC_OK;
+        String contentType;
+        boolean committed;
+        private PrintWriter writer;
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override public void write(int b) {
+                body.write(b);
+            }
+
+            @Override public boolean isReady() {
+                return true;
+            }
+
+            @Override public void setWriteListener(WriteListener writeListener) {
+                // Blocking output only
+            }
+        };
+
+        HttpServletResponse proxy() {
+            return ClientCacheServletMocks.proxy(HttpServletResponse.class, this);
+        }
+
+        String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null ? null : values.get(0);
+        }
+
+        /**
+         * @return the body, once the container has flushed its own writer
+         */
+        String body() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "setHeader":
+                case "setDateHeader":
+                case "setIntHeader":
+                    headers.put((String) args[0], new ArrayList<>(List.of(String.valueOf(args[1]))));
+                    return null;
+                case "addHeader":
+                case "addDateHeader":
+                case "addIntHeader":
+                    headers.computeIfAbsent((String) args[0], name -> new ArrayList<>()).add(String.valueOf(args[1]));
+                    return null;
+                case "containsHeader":
+                    return headers.containsKey((String) args[0]);
+                case "getHeader":
+                    return header((String) args[0]);
+                case "getHeaders":
+                    return headers.getOrDefault((String) args[0], Collections.emptyList());
+                case "getHeaderNames":
+                    return new ArrayList<>(headers.keySet());
+                case "setStatus":
+                    status = (Integer) args[0];
+                    return null;
+                case "getStatus":
+                    return status;
+                case "sendError":
+                    status = (Integer) args[0];
+                    committed = true;
+                    return null;
+                case "setContentType":
+                    contentType = (String) args[0];
+                    return null;
+                case "getContentType":
+                    return contentType;
+                case "getCharacterEncoding":
+                    return StandardCharsets.UTF_8.name();
+                case "setContentLength":
+                case "setContentLengthLong":
+                case "setCharacterEncoding":
+                    return null;
+                case "getOutputStream":
+                    return outputStream;
+                case "getWriter":
+                    if (writer == null) {
+                        writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                    }
+                    return writer;
+                case "isCommitted":
+                    return committed;
+                case "flushBuffer":
+                    committed = true;
+                    return null;
+                case "reset":
+                    headers.clear();
+                    body.reset();
+                    status = HttpServletResponse.SC_OK;
+                    contentType = null;
+                    return null;
+                case "resetBuffer":
+                    body.reset();
+                    return null;
+                case "toString":
+                    return "MockResponse " + status;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException("HttpServletResponse." + m.getName());
+            }
+        }
+    }
+}
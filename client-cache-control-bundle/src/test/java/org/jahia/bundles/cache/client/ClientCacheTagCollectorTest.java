@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.render.ClientCacheTagCollector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheTagCollectorTest {
+
+    @Test
+    public void testDeduplicatedTags() {
+        ClientCacheTagCollector collector = new ClientCacheTagCollector(List.of("Surrogate-Key", "Cache-Tag"), 3, "digitall");
+        collector.add("a");
+        collector.add("b");
+        collector.add("a");
+        Assert.assertEquals("site-digitall a b", collector.getHeaderValue("Surrogate-Key"));
+        Assert.assertEquals("site-digitall,a,b", collector.getHeaderValue("Cache-Tag"));
+    }
+
+    @Test
+    public void testSiteTagFallback() {
+        ClientCacheTagCollector collector = new ClientCacheTagCollector(List.of("Cache-Tag"), 2, "digitall");
+        collector.add("a");
+        collector.add("b");
+        collector.add("c");
+        collector.add("d");
+        Assert.assertTrue(collector.isOverflow());
+        Assert.assertEquals("site-digitall", collector.getHeaderValue("Cache-Tag"));
+        collector = new ClientCacheTagCollector(List.of("Cache-Tag"), 0, null);
+        collector.add("a");
+        Assert.assertNull(collector.getHeaderValue("Cache-Tag"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client;
+
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
+import org.jahia.bundles.cache.client.api.ClientCacheTopUrl;
+import org.jahia.bundles.cache.client.impl.ClientCacheTopUrls;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ClientCacheTopUrlsTest {
+
+    @Test
+    public void testOutcome() {
+        Assert.assertEquals(ClientCacheOutcome.DEFAULT, ClientCacheTopUrls.outcome("public, max-age=60", true, "public, max-age=60"));
+        Assert.assertEquals(ClientCacheOutcome.PRIVATE, ClientCacheTopUrls.outcome("public, max-age=60", true, "private, no-cache"));
+        Assert.assertEquals(ClientCacheOutcome.PRIVATE, ClientCacheTopUrls.outcome("public, max-age=60", false, "no-store"));
+        Assert.assertEquals(ClientCacheOutcome.PUBLIC, ClientCacheTopUrls.outcome(null, false, "public, s-maxage=60"));
+        Assert.assertNull(ClientCacheTopUrls.outcome("public, max-age=60", false, null));
+    }
+
+    @Test
+    public void testHeavyHitters() {
+        long now = 0;
+        ClientCacheTopUrls topUrls = new ClientCacheTopUrls(32, 60000, now);
+        for (int i = 0; i < 10000; i++) {
+            topUrls.record(ClientCacheOutcome.PRIVATE, "GET", "/noise/" + i, now);
+            if (i % 4 == 0) {
+                topUrls.record(ClientCacheOutcome.PRIVATE, "GET", "/sites/digitall/home.html", now);
+            }
+            if (i % 8 == 0) {
+                topUrls.record(ClientCacheOutcome.PRIVATE, "POST", "/cms/login", now);
+            }
+        }
+        List<ClientCacheTopUrl> urls = topUrls.list(ClientCacheOutcome.PRIVATE, 2, (method, uri) -> uri.startsWith("/sites/") ? "rule" : null);
+        Assert.assertEquals(2, urls.size());
+        Assert.assertEquals("/sites/digitall/home.html", urls.get(0).getUri());
+        Assert.assertEquals("rule", urls.get(0).getRule());
+        Assert.assertTrue(urls.get(0).getCount() - urls.get(0).getError() <= 2500 && urls.get(0).getCount() >= 2500);
+        Assert.assertEquals("/cms/login", urls.get(1).getUri());
+        Assert.assertEquals("POST", urls.get(1).getMethod());
+        Assert.assertTrue(topUrls.list(ClientCacheOutcome.PUBLIC, 10, (method, uri) -> null).isEmpty());
+        long count = urls.get(0).getCount();
+        topUrls.record(ClientCacheOutcome.PUBLIC, "GET", "/modules/app.js", now + 60000);
+        Assert.assertEquals(count / 2, topUrls.list(ClientCacheOutcome.PRIVATE, 1, (method, uri) -> null).get(0).getCount());
+        // Counts are halved once per elapsed period, even without any request in between
+        topUrls.record(ClientCacheOutcome.PUBLIC, "GET", "/modules/app.js", now + 60000 * 4);
+        Assert.assertEquals(count / 16, topUrls.list(ClientCacheOutcome.PRIVATE, 1, (method, uri) -> null).get(0).getCount());
+    }
+
+    @Test
+    public void testMethods() {
+        ClientCacheTopUrls topUrls = new ClientCacheTopUrls(8, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            topUrls.record(ClientCacheOutcome.PRIVATE, "GET", "/cms/login", 0);
+            if (i % 2 == 0) {
+                topUrls.record(ClientCacheOutcome.PRIVATE, "POST", "/cms/login", 0);
+            }
+        }
+        List<ClientCacheTopUrl> urls = topUrls.list(ClientCacheOutcome.PRIVATE, 10, (method, uri) -> null);
+        Assert.assertEquals(2, urls.size());
+        Assert.assertEquals("GET", urls.get(0).getMethod());
+        Assert.assertEquals(10, urls.get(0).getCount());
+        Assert.assertEquals("POST", urls.get(1).getMethod());
+        Assert.assertEquals(5, urls.get(1).getCount());
+    }
+}
@@ -18,6 +18,7 @@ package org.jahia.bundles.cache.client.graphql;
 import graphql.annotations.annotationTypes.GraphQLDescription;
 import graphql.annotations.annotationTypes.GraphQLField;
 import graphql.annotations.annotationTypes.GraphQLName;
+import org.jahia.bundles.cache.client.api.ClientCacheOutcome;
 import org.jahia.bundles.cache.client.api.ClientCacheService;
 import org.jahia.modules.graphql.provider.dxm.osgi.annotations.GraphQLOsgiService;
 
@@ -43,6 +44,48 @@ public class GqlClientCacheControl {
         return service.getMode().name();
     }
 
+    @GraphQLField
+    @GraphQLName("loadStretchFactor")
+    @GraphQLDescription("Current factor applied to the intermediates cache durations of public templates, greater than 1 while the origin is under pressure")
+    public int loadStretchFactor() {
+        return service.getLoadStretchFactor();
+    }
+
+    @GraphQLField
+    @GraphQLName("stats")
+    @GraphQLDescription("Resolution and preset statistics since the service started, null if not available")
+    public GqlClientCacheStats stats() {
+        return service.getStatistics().map(GqlClientCacheStats::new).orElse(null);
+    }
+
+    @GraphQLField
+    @GraphQLName("decisions")
+    @GraphQLDescription("Recorded Cache-Control decisions of sampled requests, most recent first")
+    public List<GqlClientCacheDecision> listDecisions(@GraphQLName("uri") @GraphQLDescription("Regular expression the request URI must match") String uri) {
+        return service.listDecisions(uri).stream()
+                .map(GqlClientCacheDecision::new)
+                .collect(Collectors.toList());
+    }
+
+    @GraphQLField
+    @GraphQLName("overrides")
+    @GraphQLDescription("Cache headers changes made by other components on sampled requests, most frequent first")
+    public List<GqlClientCacheOverride> listOverrides() {
+        return service.listOverrides().stream()
+                .map(GqlClientCacheOverride::new)
+                .collect(Collectors.toList());
+    }
+
+    @GraphQLField
+    @GraphQLName("topUrls")
+    @GraphQLDescription("Most requested URLs whose final Cache-Control header has the given outcome, with the rule matching them")
+    public List<GqlClientCacheTopUrl> listTopUrls(@GraphQLName("outcome") @GraphQLDescription("PRIVATE (default), PUBLIC or DEFAULT") ClientCacheOutcome outcome,
+            @GraphQLName("limit") @GraphQLDescription("Maximum number of URLs, 20 by default") Integer limit) {
+        return service.listTopUrls(outcome != null ? outcome : ClientCacheOutcome.PRIVATE, limit != null ? limit : 20).stream()
+                .map(GqlClientCacheTopUrl::new)
+                .collect(Collectors.toList());
+    }
+
     @GraphQLField
     @GraphQLName("templates")
     @GraphQLDescription("list of header templates, or empty list if no templates exist")
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.graphql;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+
+/**
+ * @author Jerome Blanchard
+ */
+@GraphQLName("GqlClientCacheCounter")
+@GraphQLDescription("Client Cache-Control named counter")
+public class GqlClientCacheCounter {
+
+    private final String name;
+    private final long count;
+
+    public GqlClientCacheCounter(String name, long count) {
+        this.name = name;
+        this.count = count;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Counter name")
+    public String getName() {
+        return name;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Counter value")
+    public long getCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.graphql;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+import org.jahia.bundles.cache.client.api.ClientCacheDecision;
+
+/**
+ * @author Jerome Blanchard
+ */
+@GraphQLName("GqlClientCacheDecision")
+@GraphQLDescription("Client Cache-Control decision recorded for a sampled request")
+public class GqlClientCacheDecision {
+
+    private final ClientCacheDecision decision;
+
+    public GqlClientCacheDecision(ClientCacheDecision decision) {
+        this.decision = decision;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Request end time in milliseconds since epoch")
+    public long getTimestamp() {
+        return decision.getTimestamp();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Request method")
+    public String getMethod() {
+        return decision.getMethod();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Request URI")
+    public String getUri() {
+        return decision.getUri();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Matched rule (priority;methods;url;header), null if no rule matched")
+    public String getRule() {
+        return decision.getRule();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Matched rule priority")
+    public double getRulePriority() {
+        return decision.getRulePriority();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Cache-Control value preset by the filter, null if none")
+    public String getPresetValue() {
+        return decision.getPresetValue();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Cache-Control value of the response, null if none")
+    public String getFinalValue() {
+        return decision.getFinalValue();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("True if the preset Cache-Control value was overridden or removed")
+    public boolean isOverridden() {
+        return decision.isOverridden();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("True if a cache header was applied using the Force- prefix")
+    public boolean isForced() {
+        return decision.isForced();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Request processing time in nanoseconds")
+    public long getElapsed() {
+        return decision.getElapsed();
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.graphql;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+import org.jahia.bundles.cache.client.api.ClientCacheOverride;
+
+/**
+ * @author Jerome Blanchard
+ */
+@GraphQLName("GqlClientCacheOverride")
+@GraphQLDescription("Client cache header changes made by a component on sampled requests")
+public class GqlClientCacheOverride {
+
+    private final ClientCacheOverride override;
+
+    public GqlClientCacheOverride(ClientCacheOverride override) {
+        this.override = override;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("URL expression of the rule matching the requests, default for requests matching no rule")
+    public String getUrlPattern() {
+        return override.getUrlPattern();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Changed header name")
+    public String getHeader() {
+        return override.getHeader();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Frame that changed the header (class.method:line), unknown if not found")
+    public String getCaller() {
+        return override.getCaller();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of sampled changes")
+    public long getCount() {
+        return override.getCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("URI of the last sampled change")
+    public String getLastUri() {
+        return override.getLastUri();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Header value set by the last sampled change")
+    public String getLastValue() {
+        return override.getLastValue();
+    }
+
+}
@@ -48,7 +48,19 @@ public class GqlClientCacheRule {
     }
 
     @GraphQLField
-    @GraphQLDescription("URL regular expression")
+    @GraphQLDescription("URL match type (regex, prefix, exact or glob)")
+    public String getMatchType() {
+        return rule.getMatchType();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("URL expression, interpreted according to the match type")
+    public String getUrlExpression() {
+        return rule.getUrlExpression();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("URL regular expression (equivalent regular expression for non regex match types)")
     public String getUrlRegexp() {
         return rule.getUrlRegexp();
     }
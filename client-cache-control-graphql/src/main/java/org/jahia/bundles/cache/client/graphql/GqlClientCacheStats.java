@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.graphql;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+import org.jahia.bundles.cache.client.api.ClientCacheStatistics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * @author Jerome Blanchard
+ */
+@GraphQLName("GqlClientCacheStats")
+@GraphQLDescription("Client Cache-Control statistics, counted since the service started, latencies are in nanoseconds")
+public class GqlClientCacheStats {
+
+    private final ClientCacheStatistics statistics;
+
+    public GqlClientCacheStats(ClientCacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of Cache-Control header resolutions")
+    public long getResolutions() {
+        return statistics.getResolutionCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of resolutions answered by the resolution cache")
+    public long getCachedResolutions() {
+        return statistics.getCachedResolutionCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of resolutions for which no rule matched")
+    public long getNoMatch() {
+        return statistics.getNoMatchCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Average number of rules evaluated by resolutions not answered by the resolution cache")
+    public double getEvaluatedRulesAverage() {
+        return statistics.getEvaluatedRulesAverage();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of resolutions that exceeded the rule match budget")
+    public long getMatchBudgetExceeded() {
+        return statistics.getMatchBudgetExceededCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of responses preset with the default header")
+    public long getDefaultPresets() {
+        return statistics.getDefaultPresetCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of responses whose preset Cache-Control header was overridden by another component")
+    public long getOverrides() {
+        return statistics.getOverrideCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of responses whose preset Cache-Control header was overridden or removed whereas strict mode is configured")
+    public long getStrictViolations() {
+        return statistics.getStrictViolationCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of requests served with a fresh response of the origin response cache")
+    public long getResponseCacheHits() {
+        return statistics.getResponseCacheHitCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of requests served with a stale response of the origin response cache while another request refreshes it")
+    public long getResponseCacheStaleHits() {
+        return statistics.getResponseCacheStaleHitCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of requests that went through the chain to store or refresh a response of the origin response cache")
+    public long getResponseCacheMisses() {
+        return statistics.getResponseCacheMissCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of failed requests served with a last-good response within its stale-if-error window")
+    public long getStaleIfErrorHits() {
+        return statistics.getStaleIfErrorCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of requests served with the replay of an identical request in progress")
+    public long getCoalesced() {
+        return statistics.getCoalescedCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of coalesced requests that went through the chain after waiting for the request in progress")
+    public long getCoalescingTimeouts() {
+        return statistics.getCoalescingTimeoutCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Mean resolution latency")
+    public double getLatencyMean() {
+        return statistics.getResolutionLatencyMean();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Resolution latency at the given percentile, with a precision of 12.5%")
+    public long getLatency(@GraphQLName("percentile") @GraphQLDescription("Percentile, between 0 and 100") double percentile) {
+        return statistics.getResolutionLatency(percentile);
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of resolutions matching each rule, named priority;methods;url;header")
+    public List<GqlClientCacheCounter> getRuleHits() {
+        return counters(statistics.getRuleHits());
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Number of resolutions matching a rule using each template")
+    public List<GqlClientCacheCounter> getTemplateHits() {
+        return counters(statistics.getTemplateHits());
+    }
+
+    private static List<GqlClientCacheCounter> counters(Map<String, Long> counters) {
+        return counters.entrySet().stream().map(entry -> new GqlClientCacheCounter(entry.getKey(), entry.getValue())).collect(Collectors.toList());
+    }
+
+}
@@ -45,4 +45,16 @@ public class GqlClientCacheTemplate {
         return template.getTemplate();
     }
 
+    @GraphQLField
+    @GraphQLDescription("Surrogate-Control header value sent along with the template value, null if none")
+    public String getSurrogateControl() {
+        return template.getSurrogateControl();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("CDN-Cache-Control header value sent along with the template value, null if none")
+    public String getCdnCacheControl() {
+        return template.getCdnCacheControl();
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.bundles.cache.client.graphql;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+import org.jahia.bundles.cache.client.api.ClientCacheTopUrl;
+
+/**
+ * @author Jerome Blanchard
+ */
+@GraphQLName("GqlClientCacheTopUrl")
+@GraphQLDescription("URL among the most requested ones for an outcome of the final Cache-Control header")
+public class GqlClientCacheTopUrl {
+
+    private final ClientCacheTopUrl url;
+
+    public GqlClientCacheTopUrl(ClientCacheTopUrl url) {
+        this.url = url;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Method of the last request")
+    public String getMethod() {
+        return url.getMethod();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Request URI")
+    public String getUri() {
+        return url.getUri();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Estimated number of requests, halved every decay period")
+    public long getCount() {
+        return url.getCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Maximum overestimation of the count")
+    public long getError() {
+        return url.getError();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("Rule currently matching the request (priority;methods;url;header), null if none")
+    public String getRule() {
+        return url.getRule();
+    }
+
+}
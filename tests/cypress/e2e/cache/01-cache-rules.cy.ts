@@ -10,6 +10,7 @@ describe('Cache Control config tests', () => {
             expect(rules).to.not.be.empty;
             expect(rules.length).to.be.greaterThan(0);
             expect(rules[0].priority).to.be.equal('1.0');
+            expect(rules[0].matchType).to.be.equal('regex');
             expect(rules[0].urlRegexp).to.be.equal('(?:/[^/]+)?/cms/render/live/.*');
             expect(rules[8].priority).to.be.equal('8.9');
             expect(rules[8].header).to.be.equal('public, plop, tagada');
@@ -24,6 +25,7 @@ describe('Cache Control config tests', () => {
             expect(rules).to.not.be.empty;
             expect(rules.length).to.be.greaterThan(0);
             expect(rules[0].priority).to.be.equal(1);
+            expect(rules[0].matchType).to.be.equal('regex');
             expect(rules[0].urlRegexp).to.be.equal('(?:/[^/]+)?/cms/render/live/.*');
             expect(rules[8].priority).to.be.equal(8.9);
             expect(rules[8].header).to.be.equal('public, plop, tagada');